@@ -40,7 +40,7 @@ public class GenerateBankedSamplesFromDMPTest {
     @Before
     public void setUp() throws Exception {
         recordSaverSpy = new RecordSaverSpy();
-        generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP();
+        generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP(tumorTypeRetriever, dmpSamplesRetriever);
     }
 
     @Test
@@ -100,8 +100,9 @@ public class GenerateBankedSamplesFromDMPTest {
         List<String> trackingIds = Arrays.asList(trackingId1);
         when(dmpSamplesRetriever.retrieveTrackingIds(date)).thenReturn(trackingIds);
 
-        when(limsDataRetriever.getBankedSamples(any(), any(), any())).thenReturn(Arrays.asList(new BankedSample
-                ("someId")));
+        BankedSample processedBankedSample = new BankedSample("someId");
+        processedBankedSample.setDMPTrackingId(trackingId1);
+        when(limsDataRetriever.getBankedSamples(any(), any(), any())).thenReturn(Arrays.asList(processedBankedSample));
 
         List<DMPSample> tracking1DMPSamples = Arrays.asList(getDmpSample("id11", "i1"), getDmpSample("id12", "i2"),
                 getDmpSample("id13", "i3"));
@@ -153,10 +154,10 @@ public class GenerateBankedSamplesFromDMPTest {
         List<String> trackingIds = Arrays.asList(trackingId1, trackingId2);
         when(dmpSamplesRetriever.retrieveTrackingIds(date)).thenReturn(trackingIds);
 
-        when(limsDataRetriever.getBankedSamples(eq(String.format("%s = '%s'", BankedSample.DMP_TRACKING_ID,
-                trackingId1)), any(), any())).thenReturn(Collections.emptyList());
-        when(limsDataRetriever.getBankedSamples(eq(String.format("%s = '%s'", BankedSample.DMP_TRACKING_ID,
-                trackingId2)), any(), any())).thenReturn(Arrays.asList(new BankedSample("id")));
+        BankedSample processedBankedSample = new BankedSample("id");
+        processedBankedSample.setDMPTrackingId(trackingId2);
+        when(limsDataRetriever.getBankedSamples(eq(String.format("%s in ('%s','%s')", BankedSample.DMP_TRACKING_ID,
+                trackingId1, trackingId2)), any(), any())).thenReturn(Arrays.asList(processedBankedSample));
 
         List<DMPSample> tracking1DMPSamples = Arrays.asList(getDmpSample("id11", "i11"), getDmpSample("id12", "i12"),
                 getDmpSample("id13", "i13"));
@@ -243,5 +244,13 @@ public class GenerateBankedSamplesFromDMPTest {
         public void save(BankedSample bankedSample, DataRecordManager dataRecordManager, User user) {
             createdBankedSamples.put(bankedSample.getTransactionId(), bankedSample);
         }
+
+        @Override
+        public List<String> saveAll(List<BankedSample> bankedSamples, DataRecordManager dataRecordManager, User user) {
+            for (BankedSample bankedSample : bankedSamples) {
+                save(bankedSample, dataRecordManager, user);
+            }
+            return Collections.emptyList();
+        }
     }
 }
\ No newline at end of file
@@ -19,6 +19,7 @@ import org.mskcc.domain.sample.*;
 import org.mskcc.limsrest.service.PatientSamplesWithCmoInfoRetriever;
 import org.mskcc.limsrest.service.PromoteBanked;
 import org.mskcc.limsrest.service.cmoinfo.CorrectedCmoSampleIdGenerator;
+import org.mskcc.limsrest.service.cmoinfo.GeneratedCmoIdMetrics;
 import org.mskcc.limsrest.service.cmoinfo.SampleTypeCorrectedCmoSampleIdGenerator;
 import org.mskcc.limsrest.service.cmoinfo.cellline.CellLineCmoSampleIdFormatter;
 import org.mskcc.limsrest.service.cmoinfo.cellline.CellLineCmoSampleIdResolver;
@@ -868,13 +869,13 @@ public class PromoteBankedTest {
         PatientSamplesWithCmoInfoRetriever patientSamplesRetriever = new PatientSamplesWithCmoInfoRetriever
                 (sampleToCorrectedCmoIdConv, sampleRecordToSampleConverter);
 
-        return new SampleTypeCorrectedCmoSampleIdGenerator();
+        return new SampleTypeCorrectedCmoSampleIdGenerator(new GeneratedCmoIdMetrics());
     }
 
     private PromoteBanked getPromoteBanked() throws Exception {
         BankedSampleToCorrectedCmoSampleIdConverter bankedSampleToCorrectedCmoSampleIdConverter = new
                 BankedSampleToCorrectedCmoSampleIdConverter();
-        return new PromoteBanked();
+        return new PromoteBanked(new GeneratedCmoIdMetrics());
     }
 
     private String getResourceFile(String connectionFile) {
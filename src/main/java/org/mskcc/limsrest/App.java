@@ -1,7 +1,20 @@
 package org.mskcc.limsrest;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.service.AuditHistory;
+import org.mskcc.limsrest.service.DeliveryJournal;
+import org.mskcc.limsrest.service.FastqIndex;
+import org.mskcc.limsrest.service.RunPlanSnapshot;
+import org.mskcc.limsrest.service.SampleLineage;
+import org.mskcc.limsrest.service.cmoinfo.GeneratedCmoIdMetrics;
+import org.mskcc.limsrest.service.dmp.CachingTumorTypeRetriever;
+import org.mskcc.limsrest.service.dmp.OncotreeTumorTypeRetriever;
+import org.mskcc.limsrest.service.dmp.TumorTypeRetriever;
+import org.mskcc.limsrest.util.ConsentStatusCache;
+import org.mskcc.limsrest.util.OncotreeTumorTypeCache;
+import org.mskcc.limsrest.util.StatusTrackerConfig;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
@@ -20,7 +33,14 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
 
+import javax.annotation.PostConstruct;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @SpringBootApplication
 @EnableSwagger2
@@ -44,19 +64,34 @@ public class App extends SpringBootServletInitializer {
         SpringApplication.run(App.class, args);
     }
 
+    @PostConstruct
+    public void configureStatusTracker() {
+        long refreshMinutes = env.getProperty("workflow.stages.refreshMinutes", Long.class, 60L);
+        StatusTrackerConfig.setWorkflowRefreshMillis(TimeUnit.MINUTES.toMillis(refreshMinutes));
+    }
+
+    @Bean
+    public LatencyMetrics latencyMetrics() {
+        return new LatencyMetrics();
+    }
+
     @Bean(destroyMethod = "cleanup")
-    public ConnectionPoolLIMS connectionQueue() {
+    public ConnectionPoolLIMS connectionQueue(LatencyMetrics latencyMetrics) {
         String host = env.getProperty("lims.host");
         Integer port = Integer.parseInt(env.getProperty("lims.port"));
         String guid = env.getProperty("lims.guid");
 
-        String user1 = env.getProperty("lims.user1");
-        String pass1 = env.getProperty("lims.pword1");
-        String user2 = env.getProperty("lims.user2");
-        String pass2 = env.getProperty("lims.pword2");
+        // lims.user1/lims.pword1, lims.user2/lims.pword2, ... until the first missing user
+        List<String> users = new ArrayList<>();
+        List<String> passwords = new ArrayList<>();
+        for (int i = 1; env.containsProperty("lims.user" + i); i++) {
+            users.add(env.getProperty("lims.user" + i));
+            passwords.add(env.getProperty("lims.pword" + i));
+        }
+        int poolSize = env.getProperty("lims.pool.size", Integer.class, users.size());
 
-        log.info("Creating LIMS connection pool.");
-        return new ConnectionPoolLIMS(host, port, guid, user1, pass1, user2, pass2);
+        log.info("Creating LIMS connection pool of size: " + poolSize);
+        return new ConnectionPoolLIMS(host, port, guid, users, passwords, poolSize, latencyMetrics);
     }
 
     @Bean(destroyMethod = "close")
@@ -67,8 +102,103 @@ public class App extends SpringBootServletInitializer {
         String user2 = env.getProperty("lims.user2");
         String pass2 = env.getProperty("lims.pword2");
 
-        log.info("Creating LIMS connection");
-        return new ConnectionLIMS(host, port, guid, user2, pass2);
+        int size = env.getProperty("lims.connection.size", Integer.class, 1);
+        long waitSeconds = env.getProperty("lims.connection.waitSeconds", Long.class, 120L);
+
+        log.info("Creating LIMS connection with " + size + " sessions");
+        return new ConnectionLIMS(host, port, guid, user2, pass2, size, waitSeconds);
+    }
+
+    @Bean(destroyMethod = "close")
+    public HttpClientPool httpClientPool(LatencyMetrics latencyMetrics) {
+        int maxConnections = env.getProperty("http.maxConnections", Integer.class, 50);
+        int maxPerHost = env.getProperty("http.maxConnectionsPerHost", Integer.class, 10);
+        int connectTimeout = env.getProperty("http.connectTimeoutMillis", Integer.class, 5_000);
+        int readTimeout = env.getProperty("http.readTimeoutMillis", Integer.class, 60_000);
+        Set<String> selfSignedHosts = new HashSet<>(Arrays.asList(env.getProperty("http.selfSignedHosts", String[].class, new String[0])));
+
+        return new HttpClientPool(maxConnections, maxPerHost, connectTimeout, readTimeout, selfSignedHosts,
+                latencyMetrics);
+    }
+
+    @Bean
+    public OncotreeTumorTypeCache oncotreeTumorTypeCache(HttpClientPool httpClientPool) {
+        long ttlHours = env.getProperty("oncotree.cache.ttlHours", Long.class, 12L);
+
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(httpClientPool, TimeUnit.HOURS.toMillis(ttlHours));
+        cache.preload();
+        return cache;
+    }
+
+    @Bean
+    public TumorTypeRetriever dmpTumorTypeRetriever(HttpClientPool httpClientPool) {
+        long ttlHours = env.getProperty("oncotree.cache.ttlHours", Long.class, 12L);
+        return new CachingTumorTypeRetriever(new OncotreeTumorTypeRetriever(httpClientPool),
+                TimeUnit.HOURS.toMillis(ttlHours));
+    }
+
+    @Bean
+    public ConsentStatusCache consentStatusCache(HttpClientPool httpClientPool) {
+        long ttlMinutes = env.getProperty("consent.cache.ttlMinutes", Long.class, 60L);
+
+        ConsentStatusCache cache = new ConsentStatusCache(httpClientPool, TimeUnit.MINUTES.toMillis(ttlMinutes));
+        cache.preload();
+        return cache;
+    }
+
+    @Bean(destroyMethod = "close")
+    public FastqIndex fastqIndex(HttpClientPool httpClientPool) {
+        String delphiRestUrl = env.getProperty("delphiRestUrl");
+        long ttlMinutes = env.getProperty("fastq.index.ttlMinutes", Long.class, 30L);
+        int maxEntries = env.getProperty("fastq.index.maxEntries", Integer.class, 10_000);
+        int warmUpThreads = env.getProperty("fastq.index.warmUpThreads", Integer.class, 4);
+
+        return new FastqIndex(httpClientPool, delphiRestUrl, TimeUnit.MINUTES.toMillis(ttlMinutes), maxEntries, warmUpThreads);
+    }
+
+    @Bean
+    public RunPlanSnapshot runPlanSnapshot(ConnectionLIMS connection) {
+        long ttlSeconds = env.getProperty("runPlan.snapshot.ttlSeconds", Long.class, 60L);
+        return new RunPlanSnapshot(connection, TimeUnit.SECONDS.toMillis(ttlSeconds));
+    }
+
+    @Bean
+    public SampleLineage sampleLineage() {
+        int maxEntries = env.getProperty("lineage.cache.maxEntries", Integer.class, 100_000);
+        long ttlMinutes = env.getProperty("lineage.cache.ttlMinutes", Long.class, 60L);
+
+        return new SampleLineage(maxEntries, TimeUnit.MINUTES.toMillis(ttlMinutes));
+    }
+
+    @Bean
+    public GeneratedCmoIdMetrics generatedCmoIdMetrics() {
+        return new GeneratedCmoIdMetrics();
+    }
+
+    @Bean(destroyMethod = "close")
+    public AuditHistory auditHistory() {
+        int maxEntries = env.getProperty("audit.history.maxEntries", Integer.class, 200_000);
+        int chunkSize = env.getProperty("audit.history.chunkSize", Integer.class, 50);
+        int helpers = env.getProperty("audit.history.helpers", Integer.class, 2);
+
+        return new AuditHistory(maxEntries, chunkSize, helpers);
+    }
+
+    @Bean
+    public DeliveryJournal deliveryJournal(ConnectionPoolLIMS connectionQueue, AuditHistory auditHistory,
+                                           ObjectMapper objectMapper) {
+        String path = env.getProperty("deliveries.journal.path", "");
+        long refreshSeconds = env.getProperty("deliveries.journal.refreshSeconds", Long.class, 300L);
+        long bootstrapDays = env.getProperty("deliveries.journal.bootstrapDays", Long.class, 90L);
+        long overlapHours = env.getProperty("deliveries.journal.overlapHours", Long.class, 1L);
+        long retentionDays = env.getProperty("deliveries.journal.retentionDays", Long.class, 365L);
+
+        DeliveryJournal journal = new DeliveryJournal(connectionQueue, auditHistory, objectMapper,
+                path.isEmpty() ? null : Paths.get(path), TimeUnit.SECONDS.toMillis(refreshSeconds),
+                TimeUnit.DAYS.toMillis(bootstrapDays), TimeUnit.HOURS.toMillis(overlapHours),
+                TimeUnit.DAYS.toMillis(retentionDays));
+        journal.preload();
+        return journal;
     }
 
     @Bean
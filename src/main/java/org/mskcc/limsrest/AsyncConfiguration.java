@@ -0,0 +1,65 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timeout and threads of the asynchronous requests, i.e. the DeferredResult endpoints and the streamed sample
+ * manifests.
+ * <BR>
+ * Without it a streamed response runs on a new thread per request and is cut off by the container's default timeout
+ * while its worker keeps using LIMS sessions. A request that sets its own timeout, like the endpoint deadlines of
+ * {@link org.mskcc.limsrest.controller.DeferredLimsTask}, keeps it. Requests beyond the threads and the queue are
+ * rejected instead of waiting.
+ */
+@Configuration
+// after Spring Boot's own MVC configuration so these settings are the ones kept
+@Order(Ordered.LOWEST_PRECEDENCE)
+public class AsyncConfiguration implements WebMvcConfigurer {
+    private static Log log = LogFactory.getLog(AsyncConfiguration.class);
+
+    private final long timeoutMinutes;
+    private final int threads;
+    private final int queueCapacity;
+
+    /**
+     * @param timeoutMinutes time an asynchronous request may take before it fails
+     * @param threads        requests processed at once
+     * @param queueCapacity  requests waiting for a thread
+     */
+    public AsyncConfiguration(@Value("${async.requestTimeoutMinutes:30}") long timeoutMinutes,
+                              @Value("${async.threads:8}") int threads,
+                              @Value("${async.queueCapacity:32}") int queueCapacity) {
+        this.timeoutMinutes = timeoutMinutes;
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("mvc-async-");
+        log.info(String.format("Async requests run on %d threads with a queue of %d and time out after %d minutes.",
+                threads, queueCapacity, timeoutMinutes));
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        configurer.setTaskExecutor(mvcAsyncExecutor());
+    }
+}
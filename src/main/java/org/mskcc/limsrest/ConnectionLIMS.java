@@ -3,16 +3,59 @@ package org.mskcc.limsrest;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.web.context.request.RequestContextHolder;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * LIMS connections for the tasks which are called directly from the controllers instead of through the
+ * {@link ConnectionPoolLIMS} queue.
+ * <BR>
+ * Connections are leased, a thread calling {@link #getConnection()} is bound to one connection until
+ * {@link #releaseConnection()} is called, normally by {@link ConnectionLeaseInterceptor} when the web request
+ * completes. Code running outside of a web request thread should use {@link #lease()} with try-with-resources, or
+ * {@link #withConnection(Supplier)} to run tasks which call {@link #getConnection()} themselves.
+ * Waiting threads are served in arrival order.
+ */
 public class ConnectionLIMS {
     private static Log log = LogFactory.getLog(ConnectionLIMS.class);
 
-    private VeloxConnection conn1;
-    private VeloxConnection conn2;
-    private VeloxConnection inUse;
+    private static final long DEFAULT_WAIT_SECONDS = 120;
+
+    private final List<VeloxConnection> connections = new ArrayList<>();
+    private final BlockingQueue<VeloxConnection> idle;
+    private final long waitSeconds;
+    private final ThreadLocal<Lease> threadLease = new ThreadLocal<>();
+
+    private final AtomicInteger activeLeases = new AtomicInteger();
+    private final AtomicInteger waitingThreads = new AtomicInteger();
+    private final AtomicLong totalLeases = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+    private final AtomicLong leaseTimeouts = new AtomicLong();
 
     public ConnectionLIMS(String host, int port, String guid, String user1, String pass1) {
-        conn1 = new VeloxConnection(host, port, guid, user1, pass1);
+        this(host, port, guid, user1, pass1, 1, DEFAULT_WAIT_SECONDS);
+    }
+
+    /**
+     * @param size        maximum number of concurrent LIMS sessions
+     * @param waitSeconds how long a caller waits for a free connection before failing
+     */
+    public ConnectionLIMS(String host, int port, String guid, String user1, String pass1, int size, long waitSeconds) {
+        this(createConnections(host, port, guid, user1, pass1, size), waitSeconds);
+        // the first connection is opened eagerly so a bad configuration fails on startup
+        VeloxConnection conn1 = connections.get(0);
         try {
             log.info("Opening LIMS connection to host: " + host + guid);
             boolean status = conn1.open();
@@ -23,28 +66,165 @@ public class ConnectionLIMS {
             log.error("Connection error:" + e);
             throw new RuntimeException("Failed to open LIMS connection.");
         }
+    }
+
+    ConnectionLIMS(List<VeloxConnection> connections, long waitSeconds) {
+        this.connections.addAll(connections);
+        this.idle = new ArrayBlockingQueue<>(connections.size(), true, connections);
+        this.waitSeconds = waitSeconds;
+    }
+
+    private static List<VeloxConnection> createConnections(String host, int port, String guid, String user1,
+                                                           String pass1, int size) {
+        if (size < 1)
+            throw new IllegalArgumentException("LIMS connection count must be at least 1, was: " + size);
+        List<VeloxConnection> connections = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            connections.add(new VeloxConnection(host, port, guid, user1, pass1));
+        }
+        return connections;
+    }
+
+    /**
+     * Returns the number of LIMS sessions, i.e. how many callers can hold a connection at once.
+     */
+    public int getSize() {
+        return connections.size();
+    }
+
+    /**
+     * Returns the connection leased by the current thread, leasing one first if the thread does not hold one yet.
+     */
+    public VeloxConnection getConnection() {
+        Lease lease = threadLease.get();
+        if (lease == null) {
+            if (RequestContextHolder.getRequestAttributes() == null) {
+                log.warn("LIMS connection leased by " + Thread.currentThread().getName() + " outside of a web " +
+                        "request, it is held until releaseConnection() is called.");
+            }
+            lease = lease();
+            threadLease.set(lease);
+        }
+        return lease.getConnection();
+    }
+
+    /**
+     * Runs @action with a connection bound to the calling thread, {@link #getConnection()} called by it returns that
+     * connection. The connection is returned once the action ends unless the thread already held one before.
+     */
+    public <T> T withConnection(Supplier<T> action) {
+        if (threadLease.get() != null)
+            return action.get();
+        Lease lease = lease();
+        threadLease.set(lease);
+        try {
+            return action.get();
+        } finally {
+            threadLease.remove();
+            lease.close();
+        }
+    }
 
-        inUse = conn1;
+    /**
+     * Returns the connection held by the current thread, if any, to the pool.
+     */
+    public void releaseConnection() {
+        Lease lease = threadLease.get();
+        if (lease != null) {
+            threadLease.remove();
+            lease.close();
+        }
     }
 
-    public synchronized VeloxConnection getConnection() {
-        if (!inUse.isConnected()) {
+    /**
+     * Leases a connection which is not bound to the calling thread, the caller must close the lease.
+     */
+    public Lease lease() {
+        long start = System.currentTimeMillis();
+        VeloxConnection conn;
+        waitingThreads.incrementAndGet();
+        try {
+            conn = idle.poll(waitSeconds, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a LIMS connection.", e);
+        } finally {
+            waitingThreads.decrementAndGet();
+        }
+        long waited = System.currentTimeMillis() - start;
+        if (conn == null) {
+            leaseTimeouts.incrementAndGet();
+            log.error("No LIMS connection available after " + waited + "ms, active leases: " + activeLeases.get());
+            throw new IllegalStateException("Timed out waiting for a LIMS connection.");
+        }
+        totalLeases.incrementAndGet();
+        totalWaitMillis.addAndGet(waited);
+        maxWaitMillis.accumulateAndGet(waited, Math::max);
+        activeLeases.incrementAndGet();
+
+        if (!conn.isConnected()) {
             try {
-                boolean opened = inUse.open();
+                boolean opened = conn.open();
+                reconnects.incrementAndGet();
                 log.info("Attempt to re-open connection with result: " + opened);
             } catch (Exception e) {
                 log.error("Failed to re-open connection: " + e.getMessage());
             }
         }
+        return new Lease(conn);
+    }
 
-        return inUse;
+    private void giveBack(VeloxConnection conn) {
+        activeLeases.decrementAndGet();
+        idle.offer(conn);
+    }
+
+    public Map<String, Object> getMetrics() {
+        long leases = totalLeases.get();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("connections", connections.size());
+        metrics.put("activeLeases", activeLeases.get());
+        metrics.put("waitingThreads", waitingThreads.get());
+        metrics.put("totalLeases", leases);
+        metrics.put("averageWaitMillis", leases == 0 ? 0 : totalWaitMillis.get() / leases);
+        metrics.put("maxWaitMillis", maxWaitMillis.get());
+        metrics.put("leaseTimeouts", leaseTimeouts.get());
+        metrics.put("reconnects", reconnects.get());
+        return metrics;
     }
 
     public void close() {
-        if (conn1.isConnected()) {
-            try {
-                conn1.close();
-            } catch (Exception e) {
+        for (VeloxConnection conn : connections) {
+            if (conn.isConnected()) {
+                try {
+                    conn.close();
+                } catch (Exception e) {
+                }
+            }
+        }
+    }
+
+    /**
+     * A connection borrowed from the pool, closing the lease returns the connection.
+     */
+    public class Lease implements AutoCloseable {
+        private VeloxConnection conn;
+
+        private Lease(VeloxConnection conn) {
+            this.conn = conn;
+        }
+
+        public VeloxConnection getConnection() {
+            if (conn == null)
+                throw new IllegalStateException("LIMS connection lease already closed.");
+            return conn;
+        }
+
+        @Override
+        public void close() {
+            if (conn != null) {
+                giveBack(conn);
+                conn = null;
             }
         }
     }
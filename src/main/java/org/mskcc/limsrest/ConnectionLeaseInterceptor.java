@@ -0,0 +1,39 @@
+package org.mskcc.limsrest;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns the {@link ConnectionLIMS} connection leased by a request thread once the request completes, or once the
+ * thread hands an asynchronous request over and goes back to the container.
+ */
+@Configuration
+public class ConnectionLeaseInterceptor implements AsyncHandlerInterceptor, WebMvcConfigurer {
+    private final ConnectionLIMS conn;
+
+    public ConnectionLeaseInterceptor(ConnectionLIMS conn) {
+        this.conn = conn;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        conn.releaseConnection();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        conn.releaseConnection();
+    }
+}
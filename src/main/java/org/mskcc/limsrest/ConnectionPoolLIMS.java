@@ -1,34 +1,141 @@
 package org.mskcc.limsrest;
 
 import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.service.LimsTask;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 /**
  * LIMS connection pool with dedicated LIMS connections.
+ * <BR>
+ * Holds a fixed number of LIMS sessions which are borrowed by a {@link LimsTask} for the duration of its call and
+ * returned afterwards. The executor has one worker per session so tasks run concurrently up to the number of LIMS
+ * licenses configured and queue up after that.
  */
 public class ConnectionPoolLIMS {
-    private static final ExecutorService executor = Executors.newFixedThreadPool(1);
+    private static Log log = LogFactory.getLog(ConnectionPoolLIMS.class);
 
-    private final VeloxConnection conn1;
-    private final VeloxConnection conn2;
+    private final ExecutorService executor;
+    private final List<VeloxConnection> connections;
+    private final BlockingQueue<VeloxConnection> idle;
+    private final LatencyMetrics latencyMetrics;
 
-    public ConnectionPoolLIMS(String host, int port, String guid, String user1, String pass1, String user2, String pass2) {
-        conn1 = new VeloxConnection(host, port, guid, user1, pass1);
-        conn2 = new VeloxConnection(host, port, guid, user2, pass2);
+    public ConnectionPoolLIMS(String host, int port, String guid, String user1, String pass1, String user2, String pass2,
+                              LatencyMetrics latencyMetrics) {
+        this(host, port, guid, Arrays.asList(user1, user2), Arrays.asList(pass1, pass2), 2, latencyMetrics);
     }
 
-    public VeloxConnection getConnection() {
-        // use the connection that is not busy (current logic prefers conn1)
-        if (conn1.isConnected()) { // TODO check other connection is open or it must be since only 2 threads?
-            System.out.println("USING CONNECTION 2");
-            return conn2;
-        } else {
-            System.out.println("USING CONNECTION 1");
-            return conn1;
+    /**
+     * @param users          LIMS users, sessions are assigned to them round robin
+     * @param passwords      passwords in the same order as the users
+     * @param poolSize       number of LIMS sessions (and worker threads) in the pool
+     * @param latencyMetrics timers of the tasks run on the pool and of their LIMS calls
+     */
+    public ConnectionPoolLIMS(String host, int port, String guid, List<String> users, List<String> passwords,
+                              int poolSize, LatencyMetrics latencyMetrics) {
+        this(createConnections(host, port, guid, users, passwords, poolSize), latencyMetrics);
+        log.info("LIMS connection pool created with " + poolSize + " connections for " + users.size() + " users.");
+    }
+
+    /**
+     * Pool over sessions which are already created, they are opened when first borrowed.
+     */
+    public ConnectionPoolLIMS(List<VeloxConnection> conns, LatencyMetrics latencyMetrics) {
+        this.latencyMetrics = latencyMetrics;
+        connections = Collections.unmodifiableList(new ArrayList<>(conns));
+        idle = new ArrayBlockingQueue<>(conns.size(), true, conns);
+        executor = Executors.newFixedThreadPool(conns.size());
+    }
+
+    private static List<VeloxConnection> createConnections(String host, int port, String guid, List<String> users,
+                                                           List<String> passwords, int poolSize) {
+        if (users.isEmpty() || users.size() != passwords.size())
+            throw new IllegalArgumentException("Each LIMS pool user requires a password.");
+        if (poolSize < 1)
+            throw new IllegalArgumentException("LIMS pool size must be at least 1, was: " + poolSize);
+
+        List<VeloxConnection> conns = new ArrayList<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            int credential = i % users.size();
+            conns.add(new VeloxConnection(host, port, guid, users.get(credential), passwords.get(credential)));
+        }
+        return conns;
+    }
+
+    public LatencyMetrics getLatencyMetrics() {
+        return latencyMetrics;
+    }
+
+    public int getPoolSize() {
+        return connections.size();
+    }
+
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Blocks until a LIMS connection is free and returns it open. A connection that dropped since it was last used is
+     * re-opened before it is handed out.
+     */
+    public VeloxConnection borrowConnection() throws InterruptedException {
+        VeloxConnection conn = idle.take();
+        try {
+            if (!isHealthy(conn)) {
+                log.info("Re-opening LIMS connection.");
+                conn.open();
+            }
+        } catch (Exception e) {
+            idle.offer(conn);
+            throw new IllegalStateException("Failed to open LIMS connection: " + e.getMessage(), e);
+        }
+        return conn;
+    }
+
+    /**
+     * Returns an idle LIMS connection without waiting, null when all connections are in use or the idle connection
+     * can't be re-opened. Used to spread work of a running task over connections no other task needs.
+     */
+    public VeloxConnection tryBorrowConnection() {
+        VeloxConnection conn = idle.poll();
+        if (conn == null)
+            return null;
+        try {
+            if (!isHealthy(conn)) {
+                log.info("Re-opening LIMS connection.");
+                conn.open();
+            }
+        } catch (Exception e) {
+            idle.offer(conn);
+            log.warn("Failed to open idle LIMS connection: " + e.getMessage());
+            return null;
+        }
+        return conn;
+    }
+
+    /**
+     * Returns a borrowed connection to the pool. A connection which failed during the task is closed so the next
+     * borrower starts with a fresh session.
+     */
+    public void returnConnection(VeloxConnection conn, boolean broken) {
+        if (conn == null)
+            return;
+        if (broken)
+            closeQuietly(conn);
+        if (!idle.offer(conn)) {
+            log.error("LIMS connection returned to a full pool, closing it.");
+            closeQuietly(conn);
         }
     }
 
@@ -37,16 +144,50 @@ public class ConnectionPoolLIMS {
         return executor.submit(task);
     }
 
-    public void cleanup() {
-        executor.shutdown();
-        try {
-            if (conn1 != null && conn1.isConnected()) {
-                conn1.close();
+    /**
+     * Submits the task and returns a future completed with its result. Cancelling the returned future cancels the task,
+     * a task still waiting for a connection never runs and a running task is interrupted.
+     */
+    public CompletableFuture<Object> submitTaskAsync(LimsTask task) {
+        task.setConnectionPool(this);
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        Future<?> running = executor.submit(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
             }
-            if (conn2 != null && conn2.isConnected()) {
-                conn2.close();
+        });
+        result.whenComplete((r, e) -> {
+            if (result.isCancelled()) {
+                task.cancel();
+                running.cancel(true);
             }
+        });
+        return result;
+    }
+
+    private static boolean isHealthy(VeloxConnection conn) {
+        try {
+            return conn.isConnected() && conn.getUser() != null;
         } catch (Exception e) {
+            log.warn("LIMS connection health check failed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void closeQuietly(VeloxConnection conn) {
+        try {
+            if (conn.isConnected())
+                conn.close();
+        } catch (Exception e) {
+        }
+    }
+
+    public void cleanup() {
+        executor.shutdown();
+        for (VeloxConnection conn : connections) {
+            closeQuietly(conn);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,235 @@
+package org.mskcc.limsrest;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.LayeredConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.conn.ssl.TrustAllStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.ssl.SSLContexts;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared HTTP client for the calls to ngs-stats, oncotree, DMP and CVR.
+ * <BR>
+ * Connections are pooled and kept alive between calls, the number of concurrent connections to one host is capped and
+ * a caller waiting longer than the read timeout for a free connection fails. Latency and errors are counted per host.
+ */
+public class HttpClientPool {
+    private static Log log = LogFactory.getLog(HttpClientPool.class);
+
+    private static final long DEFAULT_KEEP_ALIVE_MILLIS = 30_000;
+    private static final long IDLE_EVICTION_SECONDS = 60;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final Map<String, HostMetrics> hostMetrics = new ConcurrentHashMap<>();
+    private final LatencyMetrics latencyMetrics;
+
+    public HttpClientPool(LatencyMetrics latencyMetrics) {
+        this(50, 10, 5_000, 60_000, Collections.emptySet(), latencyMetrics);
+    }
+
+    /**
+     * @param maxConnections        maximum number of open connections over all hosts
+     * @param maxConnectionsPerHost maximum number of concurrent connections to one host
+     * @param connectTimeoutMillis  time allowed to open a connection
+     * @param readTimeoutMillis     time allowed between two packets of a response and to wait for a pooled connection
+     * @param selfSignedHosts       hosts whose TLS certificate is accepted without verification
+     * @param latencyMetrics        timers of the calls by host
+     */
+    public HttpClientPool(int maxConnections, int maxConnectionsPerHost, int connectTimeoutMillis,
+                          int readTimeoutMillis, Set<String> selfSignedHosts, LatencyMetrics latencyMetrics) {
+        this.latencyMetrics = latencyMetrics;
+        connectionManager = new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", new PerHostSslSocketFactory(selfSignedHosts))
+                .build());
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        connectionManager.setValidateAfterInactivity(2_000);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMillis)
+                .setSocketTimeout(readTimeoutMillis)
+                .setConnectionRequestTimeout(readTimeoutMillis)
+                .build();
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return keepAlive > 0 ? keepAlive : DEFAULT_KEEP_ALIVE_MILLIS;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(IDLE_EVICTION_SECONDS, TimeUnit.SECONDS)
+                .build();
+
+        restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        restTemplate.getInterceptors().add(this::timed);
+        log.info(String.format("HTTP client pool created with %d connections, %d per host.", maxConnections,
+                maxConnectionsPerHost));
+    }
+
+    /**
+     * RestTemplate backed by the pool, it is thread safe and meant to be shared.
+     */
+    public RestTemplate getRestTemplate() {
+        return restTemplate;
+    }
+
+    /**
+     * GETs the body of @url as a String. The url is used as is, it must already be encoded.
+     */
+    public String getForString(String url) {
+        return restTemplate.getForObject(URI.create(url), String.class);
+    }
+
+    /**
+     * GETs @url with the request headers, used for conditional requests. A 304 Not Modified response is returned with
+     * no body, error responses throw as with {@link #getForString(String)}.
+     */
+    public ResponseEntity<String> getForEntity(String url, HttpHeaders headers) {
+        return restTemplate.exchange(URI.create(url), HttpMethod.GET, new HttpEntity<>(headers), String.class);
+    }
+
+    private ClientHttpResponse timed(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String host = request.getURI().getHost();
+        HostMetrics metrics = hostMetrics.computeIfAbsent(host, h -> new HostMetrics());
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            failed = response.getRawStatusCode() >= 400;
+            return response;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.record(elapsed, failed);
+            latencyMetrics.record(LatencyMetrics.Family.HTTP_CLIENT, host, elapsed);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        PoolStats total = connectionManager.getTotalStats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("maxConnections", total.getMax());
+        metrics.put("leasedConnections", total.getLeased());
+        metrics.put("idleConnections", total.getAvailable());
+        metrics.put("pendingRequests", total.getPending());
+
+        Map<String, Object> hosts = new TreeMap<>();
+        hostMetrics.forEach((host, m) -> hosts.put(host, m.toMap()));
+        metrics.put("hosts", hosts);
+        return metrics;
+    }
+
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.error("Failed to close HTTP client: " + e.getMessage());
+        }
+    }
+
+    private static class HostMetrics {
+        private final AtomicLong calls = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong totalMicros = new AtomicLong();
+        private final AtomicLong maxMicros = new AtomicLong();
+
+        void record(long nanos, boolean failed) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            calls.incrementAndGet();
+            totalMicros.addAndGet(micros);
+            maxMicros.accumulateAndGet(micros, Math::max);
+            if (failed)
+                errors.incrementAndGet();
+        }
+
+        Map<String, Object> toMap() {
+            long n = calls.get();
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("calls", n);
+            map.put("errors", errors.get());
+            map.put("averageMillis", n == 0 ? 0 : totalMicros.get() / n / 1000.0);
+            map.put("maxMillis", maxMicros.get() / 1000.0);
+            return map;
+        }
+    }
+
+    /**
+     * Verifies TLS certificates as usual except for the configured self signed hosts, e.g. the CVR server.
+     */
+    private static class PerHostSslSocketFactory implements LayeredConnectionSocketFactory {
+        private final Set<String> selfSignedHosts;
+        private final SSLConnectionSocketFactory verifying = SSLConnectionSocketFactory.getSocketFactory();
+        private final SSLConnectionSocketFactory trusting;
+
+        PerHostSslSocketFactory(Set<String> selfSignedHosts) {
+            this.selfSignedHosts = selfSignedHosts;
+            try {
+                trusting = new SSLConnectionSocketFactory(
+                        SSLContexts.custom().loadTrustMaterial(null, TrustAllStrategy.INSTANCE).build(),
+                        NoopHostnameVerifier.INSTANCE);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to create SSL context: " + e.getMessage(), e);
+            }
+        }
+
+        private SSLConnectionSocketFactory forHost(String host) {
+            return selfSignedHosts.contains(host) ? trusting : verifying;
+        }
+
+        @Override
+        public Socket createSocket(HttpContext context) throws IOException {
+            return verifying.createSocket(context);
+        }
+
+        @Override
+        public Socket connectSocket(int connectTimeout, Socket sock, HttpHost host, InetSocketAddress remoteAddress,
+                                    InetSocketAddress localAddress, HttpContext context) throws IOException {
+            return forHost(host.getHostName())
+                    .connectSocket(connectTimeout, sock, host, remoteAddress, localAddress, context);
+        }
+
+        @Override
+        public Socket createLayeredSocket(Socket socket, String target, int port, HttpContext context)
+                throws IOException {
+            return forHost(target).createLayeredSocket(socket, target, port, context);
+        }
+    }
+}
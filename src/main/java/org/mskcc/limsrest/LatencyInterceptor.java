@@ -0,0 +1,49 @@
+package org.mskcc.limsrest;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Times each request by the endpoint pattern it was mapped to, see {@link LatencyMetrics}.
+ */
+@Configuration
+public class LatencyInterceptor implements HandlerInterceptor, WebMvcConfigurer {
+    private static final String START_ATTRIBUTE = LatencyInterceptor.class.getName() + ".start";
+
+    private final LatencyMetrics latencyMetrics;
+
+    public LatencyInterceptor(LatencyMetrics latencyMetrics) {
+        this.latencyMetrics = latencyMetrics;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(this);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // kept when an asynchronous request is dispatched again to complete, so its time counts from the first dispatch
+        if (request.getAttribute(START_ATTRIBUTE) == null)
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object start = request.getAttribute(START_ATTRIBUTE);
+        if (start == null)
+            return;
+        // the pattern rather than the uri so path variables don't create a timer per value
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = request.getMethod() + " " + (pattern == null ? "unmapped" : pattern);
+        latencyMetrics.record(LatencyMetrics.Family.ENDPOINT, endpoint, System.nanoTime() - (Long) start);
+    }
+}
@@ -0,0 +1,168 @@
+package org.mskcc.limsrest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency timers of the endpoints, LIMS tasks, LIMS calls and outbound HTTP calls.
+ * <BR>
+ * Each timer counts calls, total and maximum time and the calls per latency bucket so percentiles can be estimated.
+ * Timers are read as JSON by /getLatencyMetrics and in the Prometheus text format by /getPrometheusMetrics.
+ */
+public class LatencyMetrics {
+    // upper bounds of the latency buckets in milliseconds, the last bucket counts all calls
+    private static final long[] BUCKET_MILLIS = {5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000};
+
+    private final Map<Family, Map<String, Timer>> timers = new ConcurrentHashMap<>();
+
+    public enum Family {
+        ENDPOINT("limsrest_endpoint_seconds", "endpoint", "Time spent handling requests by endpoint."),
+        TASK("limsrest_lims_task_seconds", "task", "Time spent running LIMS tasks including the wait for a connection."),
+        LIMS_CALL("limsrest_lims_call_seconds", "method", "Time spent in DataRecordManager calls made by LIMS tasks."),
+        HTTP_CLIENT("limsrest_http_client_seconds", "host", "Time spent in outbound HTTP calls by host.");
+
+        private final String metricName;
+        private final String label;
+        private final String help;
+
+        Family(String metricName, String label, String help) {
+            this.metricName = metricName;
+            this.label = label;
+            this.help = help;
+        }
+    }
+
+    public void record(Family family, String name, long elapsedNanos) {
+        timers.computeIfAbsent(family, f -> new ConcurrentHashMap<>())
+                .computeIfAbsent(name, n -> new Timer())
+                .record(elapsedNanos);
+    }
+
+    /**
+     * Returns the object with each call to a method of the interface timed as a {@link Family#LIMS_CALL} named after
+     * the method. Objects of classes which are not interfaces are returned as they are.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T timed(Class<T> type, T target) {
+        if (target == null || !type.isInterface())
+            return target;
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class)
+                return method.invoke(target, args);
+            long start = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                record(Family.LIMS_CALL, method.getName(), System.nanoTime() - start);
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Family family : Family.values()) {
+            Map<String, Object> byName = new TreeMap<>();
+            timers.getOrDefault(family, new ConcurrentHashMap<>()).forEach((name, timer) -> byName.put(name, timer.toMap()));
+            metrics.put(family.label, byName);
+        }
+        return metrics;
+    }
+
+    /**
+     * Writes all timers as Prometheus histograms.
+     */
+    public String toPrometheus() {
+        StringBuilder text = new StringBuilder();
+        for (Family family : Family.values()) {
+            Map<String, Timer> familyTimers = timers.get(family);
+            if (familyTimers == null || familyTimers.isEmpty())
+                continue;
+            text.append("# HELP ").append(family.metricName).append(' ').append(family.help).append('\n');
+            text.append("# TYPE ").append(family.metricName).append(" histogram\n");
+            for (Map.Entry<String, Timer> timer : new TreeMap<>(familyTimers).entrySet()) {
+                String label = family.label + "=\"" + escape(timer.getKey()) + "\"";
+                long[] buckets = timer.getValue().cumulativeBuckets();
+                for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+                    text.append(family.metricName).append("_bucket{").append(label).append(",le=\"")
+                            .append(BUCKET_MILLIS[i] / 1000.0).append("\"} ").append(buckets[i]).append('\n');
+                }
+                text.append(family.metricName).append("_bucket{").append(label).append(",le=\"+Inf\"} ")
+                        .append(buckets[BUCKET_MILLIS.length]).append('\n');
+                text.append(family.metricName).append("_sum{").append(label).append("} ")
+                        .append(timer.getValue().totalNanos.get() / 1e9).append('\n');
+                text.append(family.metricName).append("_count{").append(label).append("} ")
+                        .append(buckets[BUCKET_MILLIS.length]).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static String escape(String labelValue) {
+        return labelValue.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static class Timer {
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_MILLIS.length + 1);
+
+        void record(long nanos) {
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            // rounded up so a call is never counted in a bucket below its latency
+            long millis = TimeUnit.NANOSECONDS.toMillis(nanos + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+            int bucket = Arrays.binarySearch(BUCKET_MILLIS, millis);
+            buckets.incrementAndGet(bucket >= 0 ? bucket : -bucket - 1);
+        }
+
+        long[] cumulativeBuckets() {
+            long[] cumulative = new long[buckets.length()];
+            long count = 0;
+            for (int i = 0; i < cumulative.length; i++) {
+                count += buckets.get(i);
+                cumulative[i] = count;
+            }
+            return cumulative;
+        }
+
+        Map<String, Object> toMap() {
+            long[] cumulative = cumulativeBuckets();
+            long count = cumulative[cumulative.length - 1];
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("averageMillis", count == 0 ? 0 : totalNanos.get() / count / 1e6);
+            map.put("maxMillis", maxNanos.get() / 1e6);
+            map.put("p50Millis", percentile(cumulative, 0.5));
+            map.put("p95Millis", percentile(cumulative, 0.95));
+            map.put("p99Millis", percentile(cumulative, 0.99));
+            return map;
+        }
+
+        /**
+         * Upper bound of the bucket holding the percentile, the maximum for calls above the last bucket.
+         */
+        private Object percentile(long[] cumulative, double percentile) {
+            long count = cumulative[cumulative.length - 1];
+            if (count == 0)
+                return 0;
+            long rank = (long) Math.ceil(count * percentile);
+            for (int i = 0; i < BUCKET_MILLIS.length; i++) {
+                if (cumulative[i] >= rank)
+                    return BUCKET_MILLIS[i];
+            }
+            return maxNanos.get() / 1e6;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.AddPoolToLane;
+import org.mskcc.limsrest.service.RunPlanSnapshot;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -18,10 +19,11 @@ import java.util.concurrent.Future;
 public class AddPoolToFlowcellLane{
     private static Log log = LogFactory.getLog(AddPoolToFlowcellLane.class);
     private final ConnectionPoolLIMS conn;
-    private final AddPoolToLane task = new AddPoolToLane();
+    private final RunPlanSnapshot runPlanSnapshot;
    
-    public AddPoolToFlowcellLane( ConnectionPoolLIMS conn){
+    public AddPoolToFlowcellLane( ConnectionPoolLIMS conn, RunPlanSnapshot runPlanSnapshot){
         this.conn = conn;
+        this.runPlanSnapshot = runPlanSnapshot;
     }
 
     @GetMapping("/addPoolToFlowcellLane")
@@ -44,11 +46,13 @@ public class AddPoolToFlowcellLane{
        if(force.toUpperCase().equals("TRUE")){
             isForce = true;
        }
+       AddPoolToLane task = new AddPoolToLane();
        task.init(flowcell, sample, removeSample, igoUser, Long.parseLong(lane), isForce);
        Future<Object> result = conn.submitTask(task);
        String returnCode = "";
        try{
          returnCode = "Record Id:" + result.get();
+         runPlanSnapshot.invalidate();
        } catch(Exception e){
           StringWriter sw = new StringWriter();
           PrintWriter pw = new PrintWriter(sw);
@@ -3,9 +3,14 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.HttpClientPool;
+import org.mskcc.limsrest.service.dmp.DMPSamplesRetriever;
 import org.mskcc.limsrest.service.dmp.DateRetriever;
 import org.mskcc.limsrest.service.dmp.DefaultTodayDateRetriever;
 import org.mskcc.limsrest.service.dmp.GenerateBankedSamplesFromDMP;
+import org.mskcc.limsrest.service.dmp.TumorTypeRetriever;
+import org.mskcc.limsrest.service.dmp.WebServiceDMPSamplesRetriever;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -21,11 +26,20 @@ public class CreateBankedSamplesFromDMP {
     private static final Log log = LogFactory.getLog(CreateBankedSamplesFromDMP.class);
 
     private final ConnectionPoolLIMS conn;
-    private final GenerateBankedSamplesFromDMP task = new GenerateBankedSamplesFromDMP();
+    private final TumorTypeRetriever tumorTypeRetriever;
+    private final DMPSamplesRetriever dmpSamplesRetriever;
     private final DateRetriever dateRetriever = new DefaultTodayDateRetriever();
+    @Value("${dmp.bankedSamples.commitChunkSize:0}")
+    private int commitChunkSize;
+    @Value("${dmp.fetchThreads:4}")
+    private int fetchThreads;
 
-    public CreateBankedSamplesFromDMP(ConnectionPoolLIMS conn) {
+    public CreateBankedSamplesFromDMP(ConnectionPoolLIMS conn, TumorTypeRetriever tumorTypeRetriever,
+                                      HttpClientPool httpClient) {
         this.conn = conn;
+        this.tumorTypeRetriever = tumorTypeRetriever;
+        //TODO set string normally
+        this.dmpSamplesRetriever = new WebServiceDMPSamplesRetriever("http://plvpathhydra1.mskcc.org:8001/", httpClient);
     }
 
     @RequestMapping("/createBankedSamplesFromDMP")
@@ -36,7 +50,10 @@ public class CreateBankedSamplesFromDMP {
             log.info(String.format("Starting to create banked samples from DMP samples for date: %s", localDate));
             log.info("Creating task");
 
+            GenerateBankedSamplesFromDMP task = new GenerateBankedSamplesFromDMP(tumorTypeRetriever, dmpSamplesRetriever);
             task.setDate(localDate);
+            task.setCommitChunkSize(commitChunkSize);
+            task.setFetchThreads(fetchThreads);
 
             log.info("Getting result");
             Future<Object> result = conn.submitTask(task);
@@ -0,0 +1,72 @@
+package org.mskcc.limsrest.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.service.LimsTask;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Runs a {@link LimsTask} without holding the servlet thread while the LIMS works on it.
+ * <BR>
+ * If the task is not done within the endpoint's deadline the caller gets a 503 with a Retry-After header and the task
+ * is cancelled.
+ */
+public class DeferredLimsTask {
+    private static Log log = LogFactory.getLog(DeferredLimsTask.class);
+
+    public static final String RETRY_AFTER_SECONDS = "30";
+
+    private DeferredLimsTask() {
+    }
+
+    /**
+     * @param onResult converts the task result into the response
+     * @param onError  converts the exception thrown by the task into the response
+     */
+    public static <T> DeferredResult<ResponseEntity<T>> submit(ConnectionPoolLIMS conn, LimsTask task,
+                                                               long deadlineSeconds,
+                                                               Function<Object, ResponseEntity<T>> onResult,
+                                                               Function<Throwable, ResponseEntity<T>> onError) {
+        DeferredResult<ResponseEntity<T>> deferred = new DeferredResult<>(deadlineSeconds * 1000,
+                serviceUnavailable());
+        CompletableFuture<Object> result = conn.submitTaskAsync(task);
+
+        deferred.onTimeout(() -> {
+            log.warn(task.getClass().getSimpleName() + " did not finish within " + deadlineSeconds + "s, cancelling.");
+            result.cancel(true);
+        });
+        result.whenComplete((value, e) -> {
+            if (result.isCancelled())
+                return;
+            if (e == null) {
+                deferred.setResult(onResult.apply(value));
+            } else {
+                deferred.setResult(onError.apply(e instanceof CompletionException ? e.getCause() : e));
+            }
+        });
+        return deferred;
+    }
+
+    /**
+     * Returns a result which is already set, for requests rejected before a task is submitted.
+     */
+    public static <T> DeferredResult<ResponseEntity<T>> completed(ResponseEntity<T> response) {
+        DeferredResult<ResponseEntity<T>> deferred = new DeferredResult<>();
+        deferred.setResult(response);
+        return deferred;
+    }
+
+    public static <T> ResponseEntity<T> serviceUnavailable() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
+}
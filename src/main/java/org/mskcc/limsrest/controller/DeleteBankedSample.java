@@ -24,7 +24,6 @@ public class DeleteBankedSample {
     private static Log log = LogFactory.getLog(DeleteBankedSample.class);
 
     private final ConnectionPoolLIMS conn;
-    private final DeleteBanked task = new DeleteBanked();
    
     public DeleteBankedSample( ConnectionPoolLIMS conn){
         this.conn = conn;
@@ -40,6 +39,7 @@ public class DeleteBankedSample {
          return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("serviceId is not using a valid igo ilabs request");
        
        log.info("Creating task");
+       DeleteBanked task = new DeleteBanked();
        task.init(userId, serviceId); 
        log.info("Getting result");
        Future<Object> result = conn.submitTask(task);
@@ -70,6 +70,7 @@ public class DeleteBankedSample {
          return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("serviceId is not using a valid igo ilabs request");
 
        log.info("Creating task");
+       DeleteBanked task = new DeleteBanked();
        task.init(serviceId);
        log.info("Getting result");
        Future<Object> result = conn.submitTask(task);
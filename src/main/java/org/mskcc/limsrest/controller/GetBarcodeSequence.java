@@ -16,7 +16,6 @@ import java.util.concurrent.Future;
 public class GetBarcodeSequence {
     private static Log log = LogFactory.getLog(GetBarcodeSequence.class);
     private final ConnectionPoolLIMS conn;
-    private final FindBarcodeSequence task = new FindBarcodeSequence();
 
     public GetBarcodeSequence(ConnectionPoolLIMS conn) {
         this.conn = conn;
@@ -28,6 +27,7 @@ public class GetBarcodeSequence {
         if (!Whitelists.textMatches(barcodeId))
             return "FAILURE: flowcell is not using a valid format";
 
+        FindBarcodeSequence task = new FindBarcodeSequence();
         task.init(barcodeId);
         log.info("Starting get barcode sequence " + barcodeId);
         Future<Object> result = conn.submitTask(task);
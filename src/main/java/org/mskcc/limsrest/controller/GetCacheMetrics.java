@@ -0,0 +1,57 @@
+package org.mskcc.limsrest.controller;
+
+import org.mskcc.limsrest.service.AuditHistory;
+import org.mskcc.limsrest.service.DeliveryJournal;
+import org.mskcc.limsrest.service.FastqIndex;
+import org.mskcc.limsrest.service.RunPlanSnapshot;
+import org.mskcc.limsrest.service.SampleLineage;
+import org.mskcc.limsrest.service.cmoinfo.GeneratedCmoIdMetrics;
+import org.mskcc.limsrest.util.ConsentStatusCache;
+import org.mskcc.limsrest.util.StatusTrackerConfig;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size and hit counts of the in-memory caches in front of the LIMS and the external services.
+ */
+@RestController
+@RequestMapping("/")
+public class GetCacheMetrics {
+    private final FastqIndex fastqIndex;
+    private final RunPlanSnapshot runPlanSnapshot;
+    private final SampleLineage sampleLineage;
+    private final AuditHistory auditHistory;
+    private final DeliveryJournal deliveryJournal;
+    private final ConsentStatusCache consentStatusCache;
+    private final GeneratedCmoIdMetrics generatedCmoIdMetrics;
+
+    public GetCacheMetrics(FastqIndex fastqIndex, RunPlanSnapshot runPlanSnapshot, SampleLineage sampleLineage,
+                           AuditHistory auditHistory, DeliveryJournal deliveryJournal,
+                           ConsentStatusCache consentStatusCache, GeneratedCmoIdMetrics generatedCmoIdMetrics) {
+        this.fastqIndex = fastqIndex;
+        this.runPlanSnapshot = runPlanSnapshot;
+        this.sampleLineage = sampleLineage;
+        this.auditHistory = auditHistory;
+        this.deliveryJournal = deliveryJournal;
+        this.consentStatusCache = consentStatusCache;
+        this.generatedCmoIdMetrics = generatedCmoIdMetrics;
+    }
+
+    @GetMapping("/getCacheMetrics")
+    public Map<String, Object> getContent() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("fastqIndex", fastqIndex.getMetrics());
+        metrics.put("workflowStages", StatusTrackerConfig.getWorkflowMapMetrics());
+        metrics.put("runPlan", runPlanSnapshot.getMetrics());
+        metrics.put("sampleLineage", sampleLineage.getMetrics());
+        metrics.put("auditHistory", auditHistory.getMetrics());
+        metrics.put("deliveryJournal", deliveryJournal.getMetrics());
+        metrics.put("consentStatus", consentStatusCache.getMetrics());
+        metrics.put("generatedCmoIds", generatedCmoIdMetrics.getMetrics());
+        return metrics;
+    }
+}
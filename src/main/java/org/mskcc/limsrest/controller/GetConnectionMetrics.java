@@ -0,0 +1,35 @@
+package org.mskcc.limsrest.controller;
+
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Lease statistics of the LIMS connections, used to see if requests are waiting on a connection, and per host
+ * latency of the outbound HTTP calls.
+ */
+@RestController
+@RequestMapping("/")
+public class GetConnectionMetrics {
+    private final ConnectionLIMS conn;
+    private final HttpClientPool httpClient;
+
+    public GetConnectionMetrics(ConnectionLIMS conn, HttpClientPool httpClient) {
+        this.conn = conn;
+        this.httpClient = httpClient;
+    }
+
+    @GetMapping("/getConnectionMetrics")
+    public Map<String, Object> getContent() {
+        return conn.getMetrics();
+    }
+
+    @GetMapping("/getHttpMetrics")
+    public Map<String, Object> getHttpMetrics() {
+        return httpClient.getMetrics();
+    }
+}
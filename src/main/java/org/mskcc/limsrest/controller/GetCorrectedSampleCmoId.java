@@ -8,14 +8,17 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.domain.sample.*;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.GenerateSampleCmoIdTask;
+import org.mskcc.limsrest.service.cmoinfo.GeneratedCmoIdMetrics;
 import org.mskcc.limsrest.service.cmoinfo.SampleTypeCorrectedCmoSampleIdGenerator;
 import org.mskcc.limsrest.util.Constants;
 import org.mskcc.limsrest.util.Utils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.Collection;
 import java.util.HashMap;
@@ -28,9 +31,14 @@ public class GetCorrectedSampleCmoId {
     private static Log log = LogFactory.getLog(GetCorrectedSampleCmoId.class);
     private final static String DMP_SUFFIX = "Z";
     private final ConnectionPoolLIMS conn;
+    private final GeneratedCmoIdMetrics generatedCmoIdMetrics;
 
-    public GetCorrectedSampleCmoId(ConnectionPoolLIMS conn) {
+    @Value("${deadline.getSampleCmoId:60}")
+    private long deadlineSeconds = 60;
+
+    public GetCorrectedSampleCmoId(ConnectionPoolLIMS conn, GeneratedCmoIdMetrics generatedCmoIdMetrics) {
         this.conn = conn;
+        this.generatedCmoIdMetrics = generatedCmoIdMetrics;
     }
 
     /**
@@ -40,30 +48,25 @@ public class GetCorrectedSampleCmoId {
      * @return CMO Sample Id
      */
     @GetMapping("/getSampleCmoId")
-    public ResponseEntity<String> getSampleCmoIdByIgoId(@RequestParam(value = "sampleIgoId") String sampleIgoId) {
+    public DeferredResult<ResponseEntity<String>> getSampleCmoIdByIgoId(@RequestParam(value = "sampleIgoId") String sampleIgoId) {
         try {
             validateSampleId(sampleIgoId);
 
             log.info(String.format("Starting to generate sample cmo id for sample igo id: %s", sampleIgoId));
 
-            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask();
+            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask(generatedCmoIdMetrics);
             task.init(sampleIgoId);
 
             log.info("Getting result of Generate sample cmo id task");
-            Future<Object> result = conn.submitTask(task);
-
-            String correctedSampleCmoId = (String) result.get();
-
-            log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
-            return ResponseEntity.ok(correctedSampleCmoId);
+            return DeferredLimsTask.submit(conn, task, deadlineSeconds,
+                    result -> {
+                        String correctedSampleCmoId = (String) result;
+                        log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
+                        return ResponseEntity.ok(correctedSampleCmoId);
+                    },
+                    e -> errorResponse(Constants.ERRORS, sampleIgoId, e));
         } catch (Exception e) {
-            log.error(String.format("Error while generating CMO Sample Id for sample: %s", sampleIgoId), e);
-
-            MultiValueMap<String, String> headers = new HttpHeaders();
-            headers.add(Constants.ERRORS, String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
-                    "%s", sampleIgoId, ExceptionUtils.getRootCauseMessage(e)));
-
-            return new ResponseEntity<>(headers, HttpStatus.OK);
+            return DeferredLimsTask.completed(errorResponse(Constants.ERRORS, sampleIgoId, e));
         }
     }
 
@@ -81,7 +84,7 @@ public class GetCorrectedSampleCmoId {
      * @return CMO Sample Id for DMP Samples
      */
     @RequestMapping("/getDmpSampleCmoId")
-    public ResponseEntity<String> getDMPSampleCmoIdByCmoSampleView(
+    public DeferredResult<ResponseEntity<String>> getDMPSampleCmoIdByCmoSampleView(
             @RequestParam String sampleId,
             @RequestParam(required = false) String requestId,
             @RequestParam String patientId,
@@ -107,29 +110,34 @@ public class GetCorrectedSampleCmoId {
             log.info(String.format("Starting to generate sample cmo id for cmo sample: %s", correctedCmoSampleView));
 
             log.info("Creating Generate sample cmo id task");
-            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask();
+            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask(generatedCmoIdMetrics);
             task.init(correctedCmoSampleView);
 
             log.info("Getting result of Generate sample cmo id task");
-            Future<Object> result = conn.submitTask(task);
-
-            String correctedSampleCmoId = (String) result.get();
-            log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
+            return DeferredLimsTask.submit(conn, task, deadlineSeconds,
+                    result -> {
+                        String correctedSampleCmoId = (String) result;
+                        log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
 
-            String dmpCmoId = String.format("%s%s", correctedSampleCmoId, DMP_SUFFIX);
-            log.info(String.format("Formatted DMP CMO Sample ID: %s", dmpCmoId));
+                        String dmpCmoId = String.format("%s%s", correctedSampleCmoId, DMP_SUFFIX);
+                        log.info(String.format("Formatted DMP CMO Sample ID: %s", dmpCmoId));
 
-            return ResponseEntity.ok(dmpCmoId);
+                        return ResponseEntity.ok(dmpCmoId);
+                    },
+                    e -> errorResponse(Constants.ERRORS, correctedCmoSampleView, e));
         } catch (Exception e) {
-            log.error(String.format("Error while generating CMO Sample Id for cmo sample view: %s",
-                    correctedCmoSampleView), e);
+            return DeferredLimsTask.completed(errorResponse(Constants.ERRORS, correctedCmoSampleView, e));
+        }
+    }
 
-            MultiValueMap<String, String> headers = new HttpHeaders();
-            headers.add(Constants.ERRORS, String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
-                    "%s", correctedCmoSampleView, ExceptionUtils.getRootCauseMessage(e)));
+    private ResponseEntity<String> errorResponse(String header, Object sample, Throwable e) {
+        log.error(String.format("Error while generating CMO Sample Id for sample: %s", sample), e);
 
-            return new ResponseEntity<>(headers, HttpStatus.OK);
-        }
+        MultiValueMap<String, String> headers = new HttpHeaders();
+        headers.add(header, String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
+                "%s", sample, ExceptionUtils.getRootCauseMessage(e)));
+
+        return new ResponseEntity<>(headers, HttpStatus.OK);
     }
 
     private void validateSampleId(String sampleIgoId) {
@@ -155,7 +163,7 @@ public class GetCorrectedSampleCmoId {
      * @return CMO Sample Id
      */
     @RequestMapping("/getSampleCmoIdFromParams")
-    public ResponseEntity<String> getSampleCmoIdByCmoSampleView(
+    public DeferredResult<ResponseEntity<String>> getSampleCmoIdByCmoSampleView(
             @RequestParam String igoId,
             @RequestParam String userSampleId,
             @RequestParam(required = false) String requestId,
@@ -184,25 +192,20 @@ public class GetCorrectedSampleCmoId {
             log.info(String.format("Starting to generate sample cmo id for sample: %s", correctedCmoSampleView));
 
             log.info("Creating Generate sample cmo id task");
-            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask();
+            GenerateSampleCmoIdTask task = new GenerateSampleCmoIdTask(generatedCmoIdMetrics);
             task.init(correctedCmoSampleView);
 
             log.info("Getting result of Generate sample cmo id task");
-            Future<Object> result = conn.submitTask(task);
-
-            String correctedSampleCmoId = (String) result.get();
-            log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
-
-            return ResponseEntity.ok(correctedSampleCmoId);
+            return DeferredLimsTask.submit(conn, task, deadlineSeconds,
+                    result -> {
+                        String correctedSampleCmoId = (String) result;
+                        log.info(String.format("Generated CMO Sample ID: %s", correctedSampleCmoId));
+
+                        return ResponseEntity.ok(correctedSampleCmoId);
+                    },
+                    e -> errorResponse("ERRORS", correctedCmoSampleView, e));
         } catch (Exception e) {
-            log.error(String.format("Error while generating CMO Sample Id for cmo sample view: %s",
-                    correctedCmoSampleView), e);
-
-            MultiValueMap<String, String> headers = new HttpHeaders();
-            headers.add("ERRORS", String.format("Error while generating CMO Sample Id for sample: %s. Cause: " +
-                    "%s", correctedCmoSampleView, ExceptionUtils.getRootCauseMessage(e)));
-
-            return new ResponseEntity<>(headers, HttpStatus.OK);
+            return DeferredLimsTask.completed(errorResponse("ERRORS", correctedCmoSampleView, e));
         }
     }
 
@@ -218,7 +221,7 @@ public class GetCorrectedSampleCmoId {
         Map<String, String> cmoSampleIds = new HashMap<>();
         try {
             validate(correctedCmoSampleViews);
-            SampleTypeCorrectedCmoSampleIdGenerator x = new SampleTypeCorrectedCmoSampleIdGenerator();
+            SampleTypeCorrectedCmoSampleIdGenerator x = new SampleTypeCorrectedCmoSampleIdGenerator(generatedCmoIdMetrics);
             for (CorrectedCmoSampleView correctedCmoSampleView : correctedCmoSampleViews) {
                 log.info(String.format("Starting to generate sample cmo id for sample: %s", correctedCmoSampleViews.toString()));
 
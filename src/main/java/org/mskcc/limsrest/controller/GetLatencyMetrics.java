@@ -0,0 +1,34 @@
+package org.mskcc.limsrest.controller;
+
+import org.mskcc.limsrest.LatencyMetrics;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Latency of the endpoints, LIMS tasks, LIMS calls and outbound HTTP calls since the service started.
+ */
+@RestController
+@RequestMapping("/")
+public class GetLatencyMetrics {
+    private final LatencyMetrics latencyMetrics;
+
+    public GetLatencyMetrics(LatencyMetrics latencyMetrics) {
+        this.latencyMetrics = latencyMetrics;
+    }
+
+    @GetMapping("/getLatencyMetrics")
+    public Map<String, Object> getContent() {
+        return latencyMetrics.getMetrics();
+    }
+
+    /**
+     * Same timers as histograms in the Prometheus text exposition format, for scraping.
+     */
+    @GetMapping(value = "/getPrometheusMetrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public String getPrometheusMetrics() {
+        return latencyMetrics.toPrometheus();
+    }
+}
@@ -5,40 +5,43 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.GetProjectDetails;
 import org.mskcc.limsrest.service.ProjectSummary;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-
-import java.util.concurrent.Future;
+import org.springframework.web.context.request.async.DeferredResult;
 
 @RestController
 @RequestMapping("/")
 public class GetProjectDetailed {
     private static Log log = LogFactory.getLog(GetProjectDetailed.class);
     private final ConnectionPoolLIMS conn;
-    private final GetProjectDetails task = new GetProjectDetails();
+
+    @Value("${deadline.getProjectDetailed:60}")
+    private long deadlineSeconds = 60;
    
     public GetProjectDetailed(ConnectionPoolLIMS conn){
         this.conn = conn;
     }
 
     @GetMapping("/getProjectDetailed")
-    public ProjectSummary getContent(@RequestParam(value="project") String project) {
+    public DeferredResult<ResponseEntity<ProjectSummary>> getContent(@RequestParam(value="project") String project) {
        if (!Whitelists.requestMatches(project)){
               ProjectSummary eSum = new ProjectSummary();
               eSum.setRestStatus( "FAILURE: project is not using a valid format");
-                return eSum;
+              return DeferredLimsTask.completed(ResponseEntity.ok(eSum));
        }
        log.info("Getting project detailed for " + project);
+       GetProjectDetails task = new GetProjectDetails();
        task.init(project);
-       Future<Object> result = conn.submitTask(task);
-       ProjectSummary ps = new ProjectSummary();
-       try{
-         ps = (ProjectSummary)result.get();
-       } catch(Exception e){
-         ps.setCmoProjectId(e.getMessage());
-       }
-       return ps;
+       return DeferredLimsTask.submit(conn, task, deadlineSeconds,
+               result -> ResponseEntity.ok((ProjectSummary) result),
+               e -> {
+                   ProjectSummary ps = new ProjectSummary();
+                   ps.setCmoProjectId(e.getMessage());
+                   return ResponseEntity.ok(ps);
+               });
    }
-}
\ No newline at end of file
+}
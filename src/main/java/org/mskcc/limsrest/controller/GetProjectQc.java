@@ -4,8 +4,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.service.GetSampleQc;
 import org.mskcc.limsrest.service.RequestSummary;
+import org.mskcc.limsrest.service.SampleLineage;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -21,9 +23,13 @@ import java.util.concurrent.Future;
 public class GetProjectQc {
     private static Log log = LogFactory.getLog(GetProjectQc.class);
     private final ConnectionLIMS conn;
+    private final HttpClientPool httpClient;
+    private final SampleLineage sampleLineage;
 
-    public GetProjectQc(ConnectionLIMS conn){
+    public GetProjectQc(ConnectionLIMS conn, HttpClientPool httpClient, SampleLineage sampleLineage){
         this.conn = conn;
+        this.httpClient = httpClient;
+        this.sampleLineage = sampleLineage;
     }
 
     @GetMapping("/getProjectQc")
@@ -40,7 +46,7 @@ public class GetProjectQc {
             }
         }
 
-        GetSampleQc task = new GetSampleQc(project, conn);
+        GetSampleQc task = new GetSampleQc(project, conn, httpClient, sampleLineage);
         List<RequestSummary> rss = new LinkedList<>();
         try {
             rss = task.execute();
@@ -3,6 +3,8 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.service.AuditHistory;
+import org.mskcc.limsrest.service.DeliveryJournal;
 import org.mskcc.limsrest.service.GetDelivered;
 import org.mskcc.limsrest.service.RequestSummary;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -24,18 +26,33 @@ import java.util.concurrent.Future;
 public class GetRecentDeliveries {
     private static Log log = LogFactory.getLog(GetRecentDeliveries.class);
     private final ConnectionPoolLIMS conn;
+    private final DeliveryJournal deliveryJournal;
+    private final AuditHistory auditHistory;
 
-    public GetRecentDeliveries(ConnectionPoolLIMS conn) {
+    public GetRecentDeliveries(ConnectionPoolLIMS conn, DeliveryJournal deliveryJournal, AuditHistory auditHistory) {
         this.conn = conn;
+        this.deliveryJournal = deliveryJournal;
+        this.auditHistory = auditHistory;
     }
 
     @GetMapping("/getRecentDeliveries")
-    public List<RequestSummary> getContent(@RequestParam(value = "time", defaultValue = "NULL") String time,
-                                           @RequestParam(value = "units", defaultValue = "NULL") String units,
-                                           @RequestParam(value = "investigator", defaultValue = "NULL") String investigator,
-                                           HttpServletRequest request) {
+    public List<?> getContent(@RequestParam(value = "time", defaultValue = "NULL") String time,
+                              @RequestParam(value = "units", defaultValue = "NULL") String units,
+                              @RequestParam(value = "investigator", defaultValue = "NULL") String investigator,
+                              HttpServletRequest request) {
         log.info("Starting /getRecentDeliveries?time=" + time + "&units=" + units + " client IP:" + request.getRemoteAddr());
-        GetDelivered task = new GetDelivered();
+        if (!time.equals("NULL") || !investigator.equals("NULL")) {
+            // delivered requests are answered by the journal when it covers the time frame
+            int timeFrame = time.equals("NULL") ? 2 : Integer.parseInt(time);
+            String timeUnits = time.equals("NULL") ? "w" : units;
+            if (timeFrame >= 0) {
+                long searchPoint = GetDelivered.getSearchPoint(System.currentTimeMillis(), timeFrame, timeUnits);
+                List<?> journaled = deliveryJournal.getDeliveredSince(searchPoint, investigator);
+                if (journaled != null)
+                    return journaled;
+            }
+        }
+        GetDelivered task = new GetDelivered(auditHistory);
 
         if (!time.equals("NULL") && !investigator.equals("NULL")) {
             // Request Projects: investigator & timeframe
@@ -53,7 +70,7 @@ public class GetRecentDeliveries {
 
         Future<Object> result = conn.submitTask(task);
         try {
-            return (List<RequestSummary>) result.get();
+            return (List<?>) result.get();
         } catch (Exception e) {
             List<RequestSummary> values = new LinkedList<>();
             values.add(new RequestSummary("ERROR: " + e.getMessage()));
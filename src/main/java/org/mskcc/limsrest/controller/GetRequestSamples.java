@@ -3,6 +3,7 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.service.GetRequestSamplesTask;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -19,9 +20,11 @@ public class GetRequestSamples {
     private final static Log log = LogFactory.getLog(GetRequestSamples.class);
 
     private final ConnectionLIMS conn;
+    private final HttpClientPool httpClient;
 
-    public GetRequestSamples(ConnectionLIMS conn) {
+    public GetRequestSamples(ConnectionLIMS conn, HttpClientPool httpClient) {
         this.conn = conn;
+        this.httpClient = httpClient;
     }
 
     @GetMapping("/api/getRequestSamples")
@@ -34,7 +37,7 @@ public class GetRequestSamples {
         }
 
         try {
-            GetRequestSamplesTask t = new GetRequestSamplesTask(requestId, conn);
+            GetRequestSamplesTask t = new GetRequestSamplesTask(requestId, conn, httpClient);
             GetRequestSamplesTask.RequestSampleList sl = t.execute();
             if ("NOT_FOUND".equals(sl.requestId)) {
                 throw new ResponseStatusException(HttpStatus.NOT_FOUND, requestId + " Request Not Found");
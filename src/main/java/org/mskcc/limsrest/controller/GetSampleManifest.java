@@ -1,34 +1,58 @@
 package org.mskcc.limsrest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
+import org.mskcc.limsrest.service.FastqIndex;
+import org.mskcc.limsrest.service.GetRequestSamplesTask;
 import org.mskcc.limsrest.service.GetSampleManifestTask;
 import org.mskcc.limsrest.service.SampleManifest;
+import org.mskcc.limsrest.util.Constants;
 import org.mskcc.limsrest.util.IGOTools;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/")
 public class GetSampleManifest {
     private static Log log = LogFactory.getLog(GetSampleManifest.class);
+    private static final int MAX_STREAMED_SAMPLES = 1000;
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final ConnectionLIMS conn;
+    private final HttpClientPool httpClient;
+    private final FastqIndex fastqIndex;
+    private final ObjectMapper objectMapper;
 
-    public GetSampleManifest(ConnectionLIMS conn) {
+    public GetSampleManifest(ConnectionLIMS conn, HttpClientPool httpClient, FastqIndex fastqIndex,
+                             ObjectMapper objectMapper) {
         this.conn = conn;
+        this.httpClient = httpClient;
+        this.fastqIndex = fastqIndex;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/api/getSampleManifest")
-    public List<SampleManifest> getContent(@RequestParam(value="igoSampleId") String[] igoIds, HttpServletRequest request) {
+    public ResponseEntity<List<SampleManifest>> getContent(@RequestParam(value="igoSampleId") String[] igoIds, HttpServletRequest request) {
         log.info("/api/getSampleManifest:" + Arrays.toString(igoIds) + " IP:" + request.getRemoteAddr());
 
         if (igoIds.length > 10) {
@@ -39,17 +63,98 @@ public class GetSampleManifest {
                 throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid IGO Sample ID: " + igoId);
         }
 
-        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn);
+        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn, fastqIndex);
         GetSampleManifestTask.SampleManifestResult result = sampleManifest.execute();
         if (result == null) {
             log.error("Sample Manifest generation failed for: " + Arrays.toString(igoIds));
             throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR);
         } else if (result.error == null) {
             log.info("Returning n rows: " + result.smList.size());
-            return result.smList;
+            if (!result.sampleErrors.isEmpty()) {
+                log.error("Sample Manifest generation failed for samples: " + result.sampleErrors);
+                if (result.smList.isEmpty())
+                    throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, result.sampleErrors.toString());
+                // the failed samples are missing from the body and listed in the header
+                return ResponseEntity.ok().header(Constants.ERRORS, result.sampleErrors.toString()).body(result.smList);
+            }
+            return ResponseEntity.ok(result.smList);
         } else {
             log.error("Sample Manifest generation failed with error: " + result.error);
             throw new ResponseStatusException(HttpStatus.NOT_FOUND, result.error);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Streams the manifests as newline delimited JSON, one SampleManifest per line written as soon as it is built. A
+     * sample whose manifest fails is written as a line with its igoId and the error.
+     */
+    @GetMapping("/api/getSampleManifestStream")
+    public ResponseEntity<StreamingResponseBody> getContentStream(@RequestParam(value="igoSampleId") String[] igoIds, HttpServletRequest request) {
+        log.info("/api/getSampleManifestStream: " + igoIds.length + " samples, IP:" + request.getRemoteAddr());
+
+        if (igoIds.length > MAX_STREAMED_SAMPLES) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Maximum " + MAX_STREAMED_SAMPLES + " samples per query, you sent:" + igoIds.length);
+        }
+        for (String igoId : igoIds) {
+            if (!IGOTools.isValidIGOSampleId(igoId))
+                throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Invalid IGO Sample ID: " + igoId);
+        }
+
+        GetSampleManifestTask sampleManifest = new GetSampleManifestTask(igoIds, conn, fastqIndex);
+        StreamingResponseBody body = out -> {
+            try {
+                sampleManifest.stream(
+                        manifest -> writeLine(out, manifest),
+                        (igoId, error) -> {
+                            Map<String, String> failed = new LinkedHashMap<>();
+                            failed.put("igoId", igoId);
+                            failed.put("error", error);
+                            writeLine(out, failed);
+                        });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.error("Sample Manifest stream interrupted for: " + igoIds.length + " samples");
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /**
+     * Looks up the fastqs of all samples in the request in the background so the manifests requested next are served
+     * from the fastq index.
+     */
+    @GetMapping("/api/warmSampleManifestFastqs")
+    public Map<String, Object> warmFastqs(@RequestParam(value="request") String requestId, HttpServletRequest request) {
+        log.info("/api/warmSampleManifestFastqs for request:" + requestId + " IP:" + request.getRemoteAddr());
+
+        if (!Whitelists.requestMatches(requestId))
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "FAILURE: requestId is not using a valid format.");
+
+        GetRequestSamplesTask.RequestSampleList sampleList = new GetRequestSamplesTask(requestId, conn, httpClient).execute();
+        if (sampleList == null)
+            throw new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Failed to query samples of " + requestId);
+        if ("NOT_FOUND".equals(sampleList.requestId))
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, requestId + " Request Not Found");
+
+        List<String> igoIds = new ArrayList<>();
+        for (GetRequestSamplesTask.RequestSample sample : sampleList.samples) {
+            igoIds.add(sample.getIgoSampleId());
+        }
+        fastqIndex.warmUp(igoIds);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("requestId", requestId);
+        response.put("samples", igoIds.size());
+        return response;
+    }
+
+    private void writeLine(OutputStream out, Object value) {
+        try {
+            out.write(objectMapper.writeValueAsBytes(value));
+            out.write('\n');
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.GetSampleMetadataTask;
 import org.mskcc.limsrest.service.samplemetadata.SampleMetadata;
+import org.mskcc.limsrest.util.OncotreeTumorTypeCache;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -19,11 +20,13 @@ import java.util.concurrent.TimeUnit;
 public class GetSampleMetadata {
     private Log log = LogFactory.getLog(org.mskcc.limsrest.controller.GetSampleMetadata.class);
     private ConnectionLIMS conn;
+    private OncotreeTumorTypeCache oncotree;
     private String timestamp;
     private String projectId;
 
-    private GetSampleMetadata(ConnectionLIMS conn) {
+    private GetSampleMetadata(ConnectionLIMS conn, OncotreeTumorTypeCache oncotree) {
         this.conn = conn;
+        this.oncotree = oncotree;
     }
     String defaultTimeStamp = String.valueOf(new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(25)));
 
@@ -38,7 +41,7 @@ public class GetSampleMetadata {
         if (projectId==null || projectId.equalsIgnoreCase("null")){
             projectId=null;
         }
-        GetSampleMetadataTask task = new GetSampleMetadataTask(timestamp, projectId, conn);
+        GetSampleMetadataTask task = new GetSampleMetadataTask(timestamp, projectId, conn, oncotree);
         try {
             return task.execute();
         } catch (Exception e) {
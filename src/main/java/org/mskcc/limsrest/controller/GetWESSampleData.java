@@ -3,8 +3,13 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.service.GetWESSampleDataTask;
+import org.mskcc.limsrest.service.SampleLineage;
 import org.mskcc.limsrest.service.sampletracker.WESSampleData;
+import org.mskcc.limsrest.util.ConsentStatusCache;
+import org.mskcc.limsrest.util.OncotreeTumorTypeCache;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -16,15 +21,27 @@ import java.util.List;
 public class GetWESSampleData {
     private Log log = LogFactory.getLog(GetWESSampleData.class);
     private ConnectionLIMS conn;
+    private HttpClientPool httpClient;
+    private OncotreeTumorTypeCache oncotree;
+    private ConsentStatusCache consentStatus;
+    private SampleLineage sampleLineage;
+    @Value("${wes.cvrFetchThreads:4}")
+    private int cvrFetchThreads;
 
-    public GetWESSampleData(ConnectionLIMS conn) {
+    public GetWESSampleData(ConnectionLIMS conn, HttpClientPool httpClient, OncotreeTumorTypeCache oncotree,
+                            ConsentStatusCache consentStatus, SampleLineage sampleLineage) {
         this.conn = conn;
+        this.httpClient = httpClient;
+        this.oncotree = oncotree;
+        this.consentStatus = consentStatus;
+        this.sampleLineage = sampleLineage;
     }
 
     @RequestMapping("/getWESSampleData")
     public List<WESSampleData> getContent(@RequestParam(value="timestamp") String timestamp) {
         log.info("Starting /getWESSampleData using timestamp " + timestamp);
-        GetWESSampleDataTask task = new GetWESSampleDataTask(timestamp, conn);
+        GetWESSampleDataTask task = new GetWESSampleDataTask(timestamp, conn, httpClient, oncotree, consentStatus, sampleLineage);
+        task.setCvrFetchThreads(cvrFetchThreads);
         try {
             return task.execute();
         } catch (Exception e) {
@@ -0,0 +1,36 @@
+package org.mskcc.limsrest.controller;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.util.StatusTrackerConfig;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+
+/**
+ * Reloads the LIMS workflow to stage map used by the request tracker, e.g. after a workflow was added in LIMS.
+ */
+@RestController
+@RequestMapping("/")
+public class RefreshWorkflowStages {
+    private static Log log = LogFactory.getLog(RefreshWorkflowStages.class);
+
+    private final ConnectionLIMS conn;
+
+    public RefreshWorkflowStages(ConnectionLIMS conn) {
+        this.conn = conn;
+    }
+
+    @RequestMapping("/api/refreshWorkflowStages")
+    public Map<String, Object> refresh() {
+        log.info("Starting /api/refreshWorkflowStages");
+        if (!StatusTrackerConfig.refreshWorkflowMap(conn)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Failed to reload workflow stages from LIMS");
+        }
+        return StatusTrackerConfig.getWorkflowMapMetrics();
+    }
+}
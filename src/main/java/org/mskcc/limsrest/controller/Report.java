@@ -4,8 +4,9 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.GetHiseq;
-import org.mskcc.limsrest.service.GetReadyForIllumina;
+import org.mskcc.limsrest.service.RunPlanSnapshot;
 import org.mskcc.limsrest.service.RunSummary;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -15,15 +16,20 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/")
 public class Report {
     private final static Log log = LogFactory.getLog(Report.class);
+    private final static int DEFAULT_HISEQ_LIST_DAYS = 30;
+    private final static int MAX_HISEQ_LIST_DAYS = 366;
     private ConnectionLIMS conn;
+    private final RunPlanSnapshot runPlanSnapshot;
    
-    public Report(ConnectionLIMS conn){
+    public Report(ConnectionLIMS conn, RunPlanSnapshot runPlanSnapshot){
         this.conn = conn;
+        this.runPlanSnapshot = runPlanSnapshot;
     }
 
     @GetMapping("/getHiseq")
@@ -66,13 +72,31 @@ public class Report {
         return runSums;
     }
 
+    /**
+     * Lists the runs newest first. Without paging parameters all runs are returned as before, otherwise one page of
+     * days at a time (30 by default). The cursor of the next page is returned in the X-Next-Cursor header until the
+     * last page, which is the page reaching since or without since the creation of the first run in the LIMS.
+     */
     @GetMapping("/getHiseqList")
-    public List<RunSummary> getContent() {
-        log.info("Starting get Hiseq List");
-        GetHiseq task = new GetHiseq("", conn);
+    public ResponseEntity<List<RunSummary>> getContent(@RequestParam(value = "since", required = false) Long since,
+                                                       @RequestParam(value = "until", required = false) Long until,
+                                                       @RequestParam(value = "cursor", required = false) Long cursor,
+                                                       @RequestParam(value = "days", required = false) Integer days) {
+        log.info("Starting get Hiseq List since " + since + " until " + until + " before " + cursor);
         List<RunSummary> runSums = new LinkedList<>();
+        boolean paged = since != null || until != null || cursor != null || days != null;
+        if (days == null)
+            days = DEFAULT_HISEQ_LIST_DAYS;
+        if (days < 1 || days > MAX_HISEQ_LIST_DAYS) {
+            log.info("FAILURE: days is not valid");
+            runSums.add(new RunSummary("BLANK_RUN", "BLANK_REQUEST"));
+            return ResponseEntity.ok(runSums);
+        }
+        GetHiseq task = new GetHiseq(since, until, cursor, paged ? TimeUnit.DAYS.toMillis(days) : 0, conn);
         try {
             runSums = task.execute();
+            if (task.getNextCursor() != null)
+                return ResponseEntity.ok().header("X-Next-Cursor", task.getNextCursor().toString()).body(runSums);
         } catch (Exception e) {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
@@ -81,17 +105,22 @@ public class Report {
             rs.setInvestigator(e.getMessage() + " TRACE: " + sw.toString());
             runSums.add(rs);
         }
-        return runSums;
+        return ResponseEntity.ok(runSums);
     }
 
     /**
      * Endpoint for the IGO-Run-Planner application.
+     * The samples are served from the shared run plan snapshot, its age is returned in the X-Snapshot-Age-Seconds header.
      */
     @GetMapping("/planRuns")
-    public List<RunSummary> getPlan(@RequestParam(value = "user") String user) {
+    public ResponseEntity<List<RunSummary>> getPlan(@RequestParam(value = "user") String user) {
         log.info("Starting plan Runs for user " + user);
         try {
-            return new GetReadyForIllumina(conn).execute();
+            RunPlanSnapshot.Snapshot snapshot = runPlanSnapshot.get();
+            return ResponseEntity.ok()
+                    .header("X-Snapshot-Computed-At", String.valueOf(snapshot.getComputedAt()))
+                    .header("X-Snapshot-Age-Seconds", String.valueOf(snapshot.getAgeMillis() / 1000))
+                    .body(snapshot.getRunSummaries());
         } catch (Exception e) {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
@@ -100,7 +129,7 @@ public class Report {
             rs.setInvestigator(e.getMessage() + " TRACE: " + sw.toString());
             List<RunSummary> runSums = new LinkedList<>();
             runSums.add(rs);
-            return runSums;
+            return ResponseEntity.ok(runSums);
         }
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package org.mskcc.limsrest.controller;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.service.RunPlanSnapshot;
 import org.mskcc.limsrest.service.SetRequestStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -20,9 +21,11 @@ import java.util.concurrent.Future;
 public class SetStatuses {
     private final static Log log = LogFactory.getLog(SetStatuses.class);
     private final ConnectionPoolLIMS conn;
+    private final RunPlanSnapshot runPlanSnapshot;
 
-    public SetStatuses(ConnectionPoolLIMS conn) {
+    public SetStatuses(ConnectionPoolLIMS conn, RunPlanSnapshot runPlanSnapshot) {
         this.conn = conn;
+        this.runPlanSnapshot = runPlanSnapshot;
     }
 
     @GetMapping("/setRequestStatuses")
@@ -33,6 +36,7 @@ public class SetStatuses {
         List<String> values = new LinkedList<>();
         try {
             values = (List<String>) result.get();
+            runPlanSnapshot.invalidate();
         } catch (Exception e) {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
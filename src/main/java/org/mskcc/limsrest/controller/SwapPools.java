@@ -4,6 +4,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
 import org.mskcc.limsrest.service.AddSampleToPool;
+import org.mskcc.limsrest.service.RunPlanSnapshot;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -16,20 +17,24 @@ import java.util.concurrent.Future;
 public class SwapPools {
     private final static Log log = LogFactory.getLog(SwapPools.class);
     private final ConnectionPoolLIMS conn;
-    private final AddSampleToPool task = new AddSampleToPool();
+    private final RunPlanSnapshot runPlanSnapshot;
 
-    public SwapPools(ConnectionPoolLIMS conn) {
+    public SwapPools(ConnectionPoolLIMS conn, RunPlanSnapshot runPlanSnapshot) {
         this.conn = conn;
+        this.runPlanSnapshot = runPlanSnapshot;
     }
 
     @GetMapping("/swapPools")
     public String getContent(@RequestParam(value = "sample") String sample, @RequestParam(value = "removePool", defaultValue = "NULL") String removePool, @RequestParam(value = "pool", defaultValue = "NULL") String pool, @RequestParam(value = "igoUser") String igoUser) {
         log.info("Swapping sample " + sample + " from pool " + removePool + " to pool " + pool + " by user " + igoUser);
 
+        AddSampleToPool task = new AddSampleToPool();
         task.init(pool, sample, removePool, igoUser);
         Future<Object> result = conn.submitTask(task);
         try {
-            return "Record Id:" + result.get();
+            Object recordId = result.get();
+            runPlanSnapshot.invalidate();
+            return "Record Id:" + recordId;
         } catch (Exception e) {
             log.error(e.getMessage(), e);
             return "ERROR IN SWAPPING POOL: " + e.getMessage();
@@ -0,0 +1,225 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.AuditLogEntry;
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Audit log history of records, read in chunks and kept in memory.
+ * <BR>
+ * Audit entries never change once written, new entries are only added when a record is modified. The history of a
+ * record is therefore kept together with the DateModified of the record it was read for and reused until the record
+ * is modified again. The least recently used records are evicted above the maximum size.
+ * <BR>
+ * Records not cached are split in chunks. The calling task reads chunks on its own connection while helpers read the
+ * remaining chunks on idle pool connections, a helper never waits for a connection so tasks holding pool connections
+ * cannot block each other.
+ */
+public class AuditHistory {
+    private static Log log = LogFactory.getLog(AuditHistory.class);
+
+    private final int chunkSize;
+    private final int helpers;
+    private final Map<Long, Entry> entries;
+    private final ExecutorService helperExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong chunks = new AtomicLong();
+    private final AtomicLong helperChunks = new AtomicLong();
+
+    /**
+     * @param maxEntries maximum number of records kept
+     * @param chunkSize  number of records read by a helper or the calling task at a time
+     * @param helpers    maximum number of pool connections borrowed by one call
+     */
+    public AuditHistory(int maxEntries, int chunkSize, int helpers) {
+        this.chunkSize = Math.max(1, chunkSize);
+        this.helpers = Math.max(0, helpers);
+        this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.helperExecutor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "audit-history");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns the audit log history of each record by record id.
+     *
+     * @param datesModified DateModified of each record as read by the caller, a record without one is not cached
+     * @param user          the user of the connection held by the calling task
+     * @param pool          pool to borrow idle connections from, null to read all chunks on the calling task's connection
+     */
+    public Map<Long, List<AuditLogEntry>> getHistories(List<DataRecord> records, List<Long> datesModified, User user,
+                                                       ConnectionPoolLIMS pool) throws RemoteException {
+        Map<Long, List<AuditLogEntry>> result = new HashMap<>();
+        Map<Long, Long> modifiedById = new HashMap<>();
+        List<DataRecord> toRead = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            DataRecord record = records.get(i);
+            long recordId = record.getRecordId();
+            if (modifiedById.containsKey(recordId))
+                continue;
+            Long dateModified = datesModified.get(i);
+            modifiedById.put(recordId, dateModified);
+            List<AuditLogEntry> history = get(recordId, dateModified);
+            if (history != null) {
+                hits.incrementAndGet();
+                result.put(recordId, history);
+            } else {
+                misses.incrementAndGet();
+                toRead.add(record);
+            }
+        }
+        if (toRead.isEmpty())
+            return result;
+
+        ConcurrentLinkedQueue<List<DataRecord>> queue = new ConcurrentLinkedQueue<>();
+        for (int i = 0; i < toRead.size(); i += chunkSize) {
+            queue.add(toRead.subList(i, Math.min(i + chunkSize, toRead.size())));
+        }
+        log.info(String.format("Reading audit history of %d records in %d chunks", toRead.size(), queue.size()));
+
+        Map<Long, List<AuditLogEntry>> read = new ConcurrentHashMap<>();
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; pool != null && i < Math.min(helpers, queue.size() - 1); i++) {
+            VeloxConnection conn = pool.tryBorrowConnection();
+            if (conn == null)
+                break;
+            running.add(helperExecutor.submit(() -> help(conn, pool, queue, read)));
+        }
+
+        readChunks(queue, user, read);
+        for (Future<?> helper : running) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading audit history.", e);
+            } catch (ExecutionException e) {
+                log.warn("Audit history helper failed: " + e.getCause());
+            }
+        }
+        // chunks a failed helper put back
+        readChunks(queue, user, read);
+
+        for (Map.Entry<Long, List<AuditLogEntry>> history : read.entrySet()) {
+            put(history.getKey(), modifiedById.get(history.getKey()), history.getValue());
+            result.put(history.getKey(), history.getValue());
+        }
+        return result;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (entries) {
+            metrics.put("entries", entries.size());
+        }
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("evictions", evictions.get());
+        metrics.put("chunks", chunks.get());
+        metrics.put("helperChunks", helperChunks.get());
+        return metrics;
+    }
+
+    public void close() {
+        helperExecutor.shutdownNow();
+    }
+
+    private void help(VeloxConnection conn, ConnectionPoolLIMS pool, ConcurrentLinkedQueue<List<DataRecord>> queue,
+                      Map<Long, List<AuditLogEntry>> read) {
+        boolean broken = false;
+        try {
+            User user = conn.getUser();
+            List<DataRecord> chunk;
+            while ((chunk = queue.poll()) != null) {
+                try {
+                    readChunk(chunk, user, read);
+                    helperChunks.incrementAndGet();
+                } catch (Exception e) {
+                    queue.add(chunk);
+                    broken = e instanceof RemoteException;
+                    log.warn("Failed to read audit history chunk on a pool connection: " + e.getMessage());
+                    return;
+                }
+            }
+        } finally {
+            pool.returnConnection(conn, broken);
+        }
+    }
+
+    private void readChunks(ConcurrentLinkedQueue<List<DataRecord>> queue, User user,
+                            Map<Long, List<AuditLogEntry>> read) throws RemoteException {
+        List<DataRecord> chunk;
+        while ((chunk = queue.poll()) != null) {
+            readChunk(chunk, user, read);
+        }
+    }
+
+    private void readChunk(List<DataRecord> chunk, User user, Map<Long, List<AuditLogEntry>> read)
+            throws RemoteException {
+        for (DataRecord record : chunk) {
+            List<AuditLogEntry> history = user.getAuditLog().getAuditLogHistory(record, false, user);
+            read.put(record.getRecordId(), Collections.unmodifiableList(new ArrayList<>(history)));
+        }
+        chunks.incrementAndGet();
+    }
+
+    private List<AuditLogEntry> get(long recordId, Long dateModified) {
+        if (dateModified == null)
+            return null;
+        synchronized (entries) {
+            Entry entry = entries.get(recordId);
+            return entry != null && entry.dateModified == dateModified ? entry.history : null;
+        }
+    }
+
+    private void put(long recordId, Long dateModified, List<AuditLogEntry> history) {
+        if (dateModified == null)
+            return;
+        synchronized (entries) {
+            entries.put(recordId, new Entry(dateModified, history));
+        }
+    }
+
+    private static class Entry {
+        private final long dateModified;
+        private final List<AuditLogEntry> history;
+
+        Entry(long dateModified, List<AuditLogEntry> history) {
+            this.dateModified = dateModified;
+            this.history = history;
+        }
+    }
+}
@@ -0,0 +1,395 @@
+package org.mskcc.limsrest.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Local journal of request deliveries answering /getRecentDeliveries without walking the LIMS.
+ * <BR>
+ * The journal is an append only file of JSON lines. The first line records the time the journal covers deliveries
+ * from, each following line a delivery: the request id, its RecentDeliveryDate, the emails used to filter by
+ * investigator and the request summary as computed by {@link GetDelivered} at the time of the delivery. A delivered
+ * request is journaled again when its RecentDeliveryDate changes, the latest line of a request wins.
+ * <BR>
+ * Searches are answered from an immutable snapshot of the journal and never wait for the LIMS. The journal is
+ * bootstrapped by {@link #preload()} on startup and once the refresh interval passed a search starts a background
+ * read of the requests delivered since the high-water mark (the latest delivery date journaled), answers may
+ * therefore miss the deliveries of the last refresh interval. The overlap re-reads the last deliveries before the
+ * mark so delivery dates entered slightly back in time are picked up, deliveries entered further back are not.
+ * <BR>
+ * Deliveries older than the retention are dropped and the file is rewritten with only the latest line of each request
+ * once it holds more than twice as many lines. Searches starting before the journal covers deliveries, or made before
+ * the bootstrap or while the LIMS can't be read, return null and are answered by the LIMS as before.
+ */
+public class DeliveryJournal {
+    private static Log log = LogFactory.getLog(DeliveryJournal.class);
+
+    private final Function<Long, List<Delivery>> loader;
+    private final ObjectMapper mapper;
+    private final Path path;
+    private final long refreshMillis;
+    private final long bootstrapMillis;
+    private final long overlapMillis;
+    private final long retentionMillis;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "delivery-journal-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile Snapshot snapshot = new Snapshot(null, Collections.emptyMap());
+    private volatile long lastAttempt;
+    private volatile boolean failing;
+    // written by the refresh only
+    private long fileLines;
+    private boolean needsNewline;
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong appended = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong answered = new AtomicLong();
+
+    public DeliveryJournal(ConnectionPoolLIMS pool, AuditHistory auditHistory, ObjectMapper mapper, Path path,
+                           long refreshMillis, long bootstrapMillis, long overlapMillis, long retentionMillis) {
+        this(since -> loadDelivered(pool, auditHistory, mapper, since), mapper, path, refreshMillis, bootstrapMillis,
+                overlapMillis, retentionMillis);
+    }
+
+    /**
+     * @param loader          finds the requests delivered after the time
+     * @param path            journal file, null disables the journal
+     * @param refreshMillis   time after which new deliveries are read in the background
+     * @param bootstrapMillis deliveries read when the journal is created, older searches are answered by the LIMS
+     * @param overlapMillis   deliveries before the high-water mark read again on each refresh
+     * @param retentionMillis age after which deliveries are dropped, older searches are answered by the LIMS
+     */
+    public DeliveryJournal(Function<Long, List<Delivery>> loader, ObjectMapper mapper, Path path, long refreshMillis,
+                           long bootstrapMillis, long overlapMillis, long retentionMillis) {
+        this.loader = loader;
+        this.mapper = mapper;
+        this.path = path;
+        this.refreshMillis = refreshMillis;
+        this.bootstrapMillis = bootstrapMillis;
+        this.overlapMillis = overlapMillis;
+        this.retentionMillis = retentionMillis;
+        if (path != null)
+            load();
+    }
+
+    public boolean isEnabled() {
+        return path != null;
+    }
+
+    /**
+     * Reads the deliveries in the background, used to bootstrap the journal on startup.
+     */
+    public void preload() {
+        if (isEnabled())
+            refreshInBackground();
+    }
+
+    /**
+     * Returns the summaries of the requests delivered after the search point, investigator "NULL" for all requests.
+     * Returns null when the journal can't answer the search.
+     */
+    public List<JsonNode> getDeliveredSince(long searchPoint, String investigator) {
+        if (!isEnabled())
+            return null;
+        if (System.currentTimeMillis() - lastAttempt > refreshMillis)
+            refreshInBackground();
+        Snapshot current = snapshot;
+        if (failing || current.coveredFrom == null || searchPoint < current.coveredFrom)
+            return null;
+
+        List<JsonNode> summaries = new ArrayList<>();
+        for (List<Delivery> deliveries : current.byDeliveryDate.tailMap(searchPoint, false).values()) {
+            for (Delivery delivery : deliveries) {
+                if ("NULL".equals(investigator) || investigator.equalsIgnoreCase(delivery.investigatorEmail)
+                        || investigator.equalsIgnoreCase(delivery.labHeadEmail))
+                    summaries.add(delivery.summary);
+            }
+        }
+        answered.incrementAndGet();
+        return summaries;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Snapshot current = snapshot;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        metrics.put("requests", current.latestByRequestId.size());
+        metrics.put("coveredFrom", current.coveredFrom);
+        metrics.put("highWater", current.highWater);
+        metrics.put("refreshes", refreshes.get());
+        metrics.put("failures", failures.get());
+        metrics.put("appended", appended.get());
+        metrics.put("compactions", compactions.get());
+        metrics.put("answered", answered.get());
+        return metrics;
+    }
+
+    /**
+     * Reads and journals the deliveries made since the high-water mark, false if they can't be read. The LIMS is read
+     * and the file written without blocking the searches, the new snapshot replaces the previous one once written.
+     */
+    public synchronized boolean refresh() {
+        long now = System.currentTimeMillis();
+        lastAttempt = now;
+        Snapshot current = snapshot;
+        boolean bootstrap = current.coveredFrom == null;
+        long since = bootstrap ? now - bootstrapMillis
+                : Math.max(current.coveredFrom, current.highWater - overlapMillis);
+        List<Delivery> deliveries;
+        try {
+            deliveries = loader.apply(since);
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            failing = true;
+            log.error("Failed to read deliveries since " + since + ": " + e.getMessage(), e);
+            return false;
+        }
+
+        long coveredFrom = Math.max(bootstrap ? since : current.coveredFrom, now - retentionMillis);
+        Map<String, Delivery> latest = new HashMap<>(current.latestByRequestId);
+        List<String> lines = new ArrayList<>();
+        if (bootstrap)
+            lines.add(coverageLine(coveredFrom));
+        int added = 0;
+        for (Delivery delivery : deliveries) {
+            if (delivery.deliveryDate < coveredFrom)
+                continue;
+            Delivery previous = latest.get(delivery.requestId);
+            if (previous == null || previous.deliveryDate != delivery.deliveryDate) {
+                latest.put(delivery.requestId, delivery);
+                lines.add(deliveryLine(delivery));
+                added++;
+            }
+        }
+        latest.values().removeIf(delivery -> delivery.deliveryDate < coveredFrom);
+        try {
+            if (fileLines + lines.size() > 2 * (latest.size() + 1))
+                rewrite(coveredFrom, latest);
+            else
+                append(lines);
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            failing = true;
+            log.error("Failed to write delivery journal " + path + ": " + e.getMessage(), e);
+            return false;
+        }
+        snapshot = new Snapshot(coveredFrom, latest);
+        failing = false;
+        appended.addAndGet(added);
+        refreshes.incrementAndGet();
+        log.info(String.format("Journaled %d of %d deliveries since %d", added, deliveries.size(), since));
+        return true;
+    }
+
+    private void refreshInBackground() {
+        if (refreshing.compareAndSet(false, true)) {
+            refresher.submit(() -> {
+                try {
+                    refresh();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    private synchronized void load() {
+        if (!Files.exists(path))
+            return;
+        Long coveredFrom = null;
+        Map<String, Delivery> latest = new HashMap<>();
+        long lines = 0;
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty())
+                    continue;
+                lines++;
+                try {
+                    JsonNode event = mapper.readTree(line);
+                    if ("coverage".equals(event.path("type").asText())) {
+                        long from = event.get("from").asLong();
+                        coveredFrom = coveredFrom == null ? from : Math.min(coveredFrom, from);
+                    } else {
+                        latest.put(event.get("requestId").asText(), new Delivery(event.get("requestId").asText(),
+                                event.get("deliveryDate").asLong(), event.path("investigatorEmail").asText(null),
+                                event.path("labHeadEmail").asText(null), event.get("summary")));
+                    }
+                } catch (Exception e) {
+                    // a line cut short when the service stopped while writing it
+                    skipped++;
+                }
+            }
+            try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+                if (file.length() > 0) {
+                    file.seek(file.length() - 1);
+                    needsNewline = file.read() != '\n';
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to read delivery journal " + path + ", deliveries are read from the LIMS: " + e.getMessage());
+            return;
+        }
+        if (coveredFrom != null) {
+            long retainedFrom = Math.max(coveredFrom, System.currentTimeMillis() - retentionMillis);
+            latest.values().removeIf(delivery -> delivery.deliveryDate < retainedFrom);
+            coveredFrom = retainedFrom;
+        }
+        fileLines = lines;
+        snapshot = new Snapshot(coveredFrom, latest);
+        log.info(String.format("Loaded delivery journal %s with %d requests, %d lines, %d unreadable lines", path,
+                latest.size(), lines, skipped));
+    }
+
+    private void append(List<String> lines) throws IOException {
+        if (lines.isEmpty())
+            return;
+        StringBuilder text = new StringBuilder();
+        if (needsNewline)
+            text.append('\n');
+        for (String line : lines) {
+            text.append(line).append('\n');
+        }
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+        Files.write(path, text.toString().getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        needsNewline = false;
+        fileLines += lines.size();
+    }
+
+    /**
+     * Replaces the file with the coverage and the latest line of each retained request. The new file is written next
+     * to the journal and moved over it, so a stop while writing leaves the previous journal.
+     */
+    private void rewrite(long coveredFrom, Map<String, Delivery> latest) throws IOException {
+        StringBuilder text = new StringBuilder(coverageLine(coveredFrom)).append('\n');
+        for (Delivery delivery : latest.values()) {
+            text.append(deliveryLine(delivery)).append('\n');
+        }
+        if (path.getParent() != null)
+            Files.createDirectories(path.getParent());
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacted");
+        Files.write(compacted, text.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        needsNewline = false;
+        fileLines = latest.size() + 1;
+        compactions.incrementAndGet();
+        log.info(String.format("Compacted delivery journal %s to %d requests", path, latest.size()));
+    }
+
+    private String coverageLine(long from) {
+        ObjectNode event = mapper.createObjectNode();
+        event.put("type", "coverage");
+        event.put("from", from);
+        return event.toString();
+    }
+
+    private String deliveryLine(Delivery delivery) {
+        ObjectNode event = mapper.createObjectNode();
+        event.put("type", "delivery");
+        event.put("requestId", delivery.requestId);
+        event.put("deliveryDate", delivery.deliveryDate);
+        event.put("investigatorEmail", delivery.investigatorEmail);
+        event.put("labHeadEmail", delivery.labHeadEmail);
+        event.set("summary", delivery.summary);
+        return event.toString();
+    }
+
+    private static List<Delivery> loadDelivered(ConnectionPoolLIMS pool, AuditHistory auditHistory, ObjectMapper mapper,
+                                                long since) {
+        GetDelivered task = new GetDelivered(auditHistory);
+        task.initSince(since);
+        List<RequestSummary> summaries;
+        try {
+            summaries = (List<RequestSummary>) pool.submitTask(task).get();
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to find requests delivered since " + since, e);
+        }
+        if (task.getFailure() != null)
+            throw new IllegalStateException("Failed to find requests delivered since " + since, task.getFailure());
+
+        List<Delivery> deliveries = new ArrayList<>();
+        for (RequestSummary summary : summaries) {
+            Map<String, Object> fields = task.getRequestFields(summary.getRequestId());
+            if (fields == null || fields.get("RecentDeliveryDate") == null)
+                continue;
+            deliveries.add(new Delivery(summary.getRequestId(), (Long) fields.get("RecentDeliveryDate"),
+                    (String) fields.get("Investigatoremail"), (String) fields.get("LabHeadEmail"),
+                    mapper.valueToTree(summary)));
+        }
+        return deliveries;
+    }
+
+    /**
+     * One immutable state of the journal, the searches read it without locking.
+     */
+    private static class Snapshot {
+        private final Long coveredFrom;
+        private final long highWater;
+        // RequestId -> latest delivery, deliveries by delivery date for the searches
+        private final Map<String, Delivery> latestByRequestId;
+        private final NavigableMap<Long, List<Delivery>> byDeliveryDate = new TreeMap<>();
+
+        Snapshot(Long coveredFrom, Map<String, Delivery> latestByRequestId) {
+            this.coveredFrom = coveredFrom;
+            this.latestByRequestId = latestByRequestId;
+            long latestDate = 0;
+            for (Delivery delivery : latestByRequestId.values()) {
+                byDeliveryDate.computeIfAbsent(delivery.deliveryDate, d -> new ArrayList<>()).add(delivery);
+                latestDate = Math.max(latestDate, delivery.deliveryDate);
+            }
+            this.highWater = latestDate;
+        }
+    }
+
+    public static class Delivery {
+        private final String requestId;
+        private final long deliveryDate;
+        private final String investigatorEmail;
+        private final String labHeadEmail;
+        private final JsonNode summary;
+
+        public Delivery(String requestId, long deliveryDate, String investigatorEmail, String labHeadEmail,
+                        JsonNode summary) {
+            this.requestId = requestId;
+            this.deliveryDate = deliveryDate;
+            this.investigatorEmail = investigatorEmail;
+            this.labHeadEmail = labHeadEmail;
+            this.summary = summary;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package org.mskcc.limsrest.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.HttpClientPool;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the ngs-stats fastq database lookups made while building sample manifests.
+ * <BR>
+ * Entries are kept per IGO ID (or sample name for pre-2016 fastqs) and hold the fastqs of the IGO ID along with the
+ * most recent fastqs found for each run searched. An entry expires after the TTL and the least recently used entries
+ * are evicted when more than the maximum number of IGO IDs are cached. Lookups which find no fastqs are not cached so
+ * fastqs written after a lookup are found on the next one.
+ */
+public class FastqIndex {
+    private static Log log = LogFactory.getLog(FastqIndex.class);
+
+    private static final String FASTQS_BY_IGO_ID = "ngs-stats/rundone/fastqsbyigoid/";
+    private static final String MOST_RECENT_FASTQS = "ngs-stats/rundone/search/most/recent/fastqpath/";
+    private static final ParameterizedTypeReference<List<ArchivedFastq>> FASTQ_LIST =
+            new ParameterizedTypeReference<List<ArchivedFastq>>() {};
+
+    private final HttpClientPool httpClient;
+    private final String ngsStatsUrl;
+    private final long ttlMillis;
+    private final Map<String, Entry> entries;
+    private final ExecutorService warmUpExecutor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param ngsStatsUrl   base url of the delphi services, for example http://delphi.mskcc.org:8080/
+     * @param ttlMillis     age after which an IGO ID is looked up again
+     * @param maxEntries    maximum number of IGO IDs kept
+     * @param warmUpThreads number of concurrent lookups made by {@link #warmUp(Collection)}
+     */
+    public FastqIndex(HttpClientPool httpClient, String ngsStatsUrl, long ttlMillis, int maxEntries, int warmUpThreads) {
+        this.httpClient = httpClient;
+        this.ngsStatsUrl = ngsStatsUrl;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.warmUpExecutor = Executors.newFixedThreadPool(warmUpThreads, r -> {
+            Thread t = new Thread(r, "fastq-index-warm-up");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns all fastqs archived for the IGO ID as returned by ngs-stats.
+     */
+    public List<ArchivedFastq> getFastqsByIgoId(String igoId) {
+        Entry entry = entry(igoId);
+        List<ArchivedFastq> fastqs = entry.allFastqs;
+        if (fastqs != null) {
+            hits.incrementAndGet();
+            return fastqs;
+        }
+        misses.incrementAndGet();
+        fastqs = fetch(ngsStatsUrl + FASTQS_BY_IGO_ID + igoId);
+        if (fastqs != null && !fastqs.isEmpty())
+            entry.allFastqs = fastqs;
+        return fastqs;
+    }
+
+    /**
+     * Returns the most recent fastqs of the sample on the run as returned by ngs-stats.
+     *
+     * @param sampleKey sampleName_IGO_igoId or for fastqs prior to Jan. 2016 the sample name
+     */
+    public List<ArchivedFastq> getMostRecentFastqs(String run, String sampleKey) {
+        Entry entry = entry(sampleKey);
+        List<ArchivedFastq> fastqs = entry.fastqsByRun.get(run);
+        if (fastqs != null) {
+            hits.incrementAndGet();
+            return fastqs;
+        }
+        misses.incrementAndGet();
+        fastqs = fetch(ngsStatsUrl + MOST_RECENT_FASTQS + run + "/" + sampleKey);
+        if (fastqs != null && !fastqs.isEmpty())
+            entry.fastqsByRun.put(run, fastqs);
+        return fastqs;
+    }
+
+    /**
+     * Looks up the fastqs of the IGO IDs in the background, for example for all samples of a request before their
+     * manifests are requested. The most recent fastqs are looked up for each run and sample the fastqs of an IGO ID
+     * were found on, as the manifests of sequenced samples search them by run.
+     *
+     * @return completed once all IGO IDs were looked up
+     */
+    public CompletableFuture<Void> warmUp(Collection<String> igoIds) {
+        log.info("Warming up fastq index for " + igoIds.size() + " IGO IDs");
+        List<CompletableFuture<Void>> lookups = new ArrayList<>();
+        for (String igoId : igoIds) {
+            lookups.add(CompletableFuture.runAsync(() -> warmUp(igoId), warmUpExecutor));
+        }
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0]));
+    }
+
+    private void warmUp(String igoId) {
+        List<ArchivedFastq> fastqs = getFastqsByIgoId(igoId);
+        if (fastqs == null)
+            return;
+        Set<List<String>> runSamples = new LinkedHashSet<>();
+        for (ArchivedFastq fastq : fastqs) {
+            if (fastq.getRun() != null && fastq.getRun().contains("_") && fastq.getSample() != null)
+                runSamples.add(Arrays.asList(fastq.getRunId(), fastq.getSample()));
+        }
+        for (List<String> runSample : runSamples) {
+            getMostRecentFastqs(runSample.get(0), runSample.get(1));
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (entries) {
+            metrics.put("entries", entries.size());
+        }
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+
+    public void close() {
+        warmUpExecutor.shutdownNow();
+    }
+
+    private Entry entry(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry == null || now - entry.createdAt > ttlMillis) {
+                entry = new Entry(now);
+                entries.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    private List<ArchivedFastq> fetch(String url) {
+        log.info("Finding fastqs in fastq DB for: " + url);
+        List<ArchivedFastq> fastqs = httpClient.getRestTemplate()
+                .exchange(url, HttpMethod.GET, null, FASTQ_LIST)
+                .getBody();
+        return fastqs == null ? null : Collections.unmodifiableList(fastqs);
+    }
+
+    private static class Entry {
+        private final long createdAt;
+        private volatile List<ArchivedFastq> allFastqs;
+        private final Map<String, List<ArchivedFastq>> fastqsByRun = new ConcurrentHashMap<>();
+
+        Entry(long createdAt) {
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the flow cell and sequencing run (IlluminaSeqExperiment) of flow cell lanes.
+ * <BR>
+ * All lanes are resolved together, one parents query for the flow cells of the lanes and one for the runs of the flow
+ * cells. Flow cells and runs already found for earlier lanes are remembered so lanes sharing them are not queried
+ * again. One instance is meant to be used by one task.
+ */
+public class FlowCellLineage {
+    private static Log log = LogFactory.getLog(FlowCellLineage.class);
+
+    private final DataRecordManager dataRecordManager;
+    private final User user;
+    // record id -> parent record, a missing parent is kept as null so it is not queried again
+    private final Map<Long, DataRecord> flowCellByLaneId = new HashMap<>();
+    private final Map<Long, DataRecord> runByFlowCellId = new HashMap<>();
+
+    public FlowCellLineage(DataRecordManager dataRecordManager, User user) {
+        this.dataRecordManager = dataRecordManager;
+        this.user = user;
+    }
+
+    /**
+     * Returns the runs the lanes were sequenced on, each run once in the order of its first lane. Lanes without a flow
+     * cell or flow cells without a run are skipped.
+     */
+    public List<DataRecord> getRuns(List<DataRecord> lanes) throws RemoteException {
+        List<DataRecord> flowCells = getParents(lanes, "FlowCell", flowCellByLaneId);
+        List<DataRecord> runs = getParents(flowCells, "IlluminaSeqExperiment", runByFlowCellId);
+
+        Map<Long, DataRecord> uniqueRuns = new LinkedHashMap<>();
+        for (DataRecord run : runs) {
+            uniqueRuns.putIfAbsent(run.getRecordId(), run);
+        }
+        return new ArrayList<>(uniqueRuns.values());
+    }
+
+    /**
+     * Returns the first parent of the data type of each record, the records not seen before are queried together.
+     */
+    private List<DataRecord> getParents(List<DataRecord> records, String parentDataType, Map<Long, DataRecord> parentById)
+            throws RemoteException {
+        Map<Long, DataRecord> unresolved = new LinkedHashMap<>();
+        for (DataRecord record : records) {
+            if (!parentById.containsKey(record.getRecordId()))
+                unresolved.putIfAbsent(record.getRecordId(), record);
+        }
+        if (!unresolved.isEmpty()) {
+            List<DataRecord> toQuery = new ArrayList<>(unresolved.values());
+            log.info(String.format("Getting %s parents of %d records", parentDataType, toQuery.size()));
+            List<List<DataRecord>> parents = dataRecordManager.getParentsOfType(toQuery, parentDataType, user);
+            for (int i = 0; i < toQuery.size(); i++) {
+                List<DataRecord> recordParents = parents.get(i);
+                parentById.put(toQuery.get(i).getRecordId(), recordParents.isEmpty() ? null : recordParents.get(0));
+            }
+        }
+
+        List<DataRecord> result = new ArrayList<>();
+        for (DataRecord record : records) {
+            DataRecord parent = parentById.get(record.getRecordId());
+            if (parent != null)
+                result.add(parent);
+        }
+        return result;
+    }
+}
@@ -6,6 +6,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.domain.sample.CorrectedCmoSampleView;
 import org.mskcc.domain.sample.Sample;
+import org.mskcc.limsrest.service.cmoinfo.GeneratedCmoIdMetrics;
 import org.mskcc.limsrest.service.cmoinfo.SampleTypeCorrectedCmoSampleIdGenerator;
 import org.mskcc.limsrest.service.cmoinfo.converter.CorrectedCmoIdConverter;
 import org.mskcc.limsrest.service.cmoinfo.converter.SampleToCorrectedCmoIdConverter;
@@ -25,8 +26,8 @@ public class GenerateSampleCmoIdTask extends LimsTask {
     private String sampleIgoId;
     private CorrectedCmoSampleView correctedCmoSampleView;
 
-    public GenerateSampleCmoIdTask() {
-        this.correctedCmoSampleIdGenerator = new SampleTypeCorrectedCmoSampleIdGenerator();
+    public GenerateSampleCmoIdTask(GeneratedCmoIdMetrics generatedCmoIdMetrics) {
+        this.correctedCmoSampleIdGenerator = new SampleTypeCorrectedCmoSampleIdGenerator(generatedCmoIdMetrics);
     }
 
     public GenerateSampleCmoIdTask(SampleTypeCorrectedCmoSampleIdGenerator x) {
@@ -5,7 +5,6 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.stereotype.Service;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -17,7 +16,7 @@ import java.util.List;
  * 
  * @author Aaron Gabow, Zheng Zeng
  */
-@Service @Deprecated // code started but not completed or used?
+@Deprecated // code started but not completed or used?
 public class GetBillingReport extends LimsTask {
     private static Log log = LogFactory.getLog(GetBillingReport.class);
 
@@ -40,66 +39,60 @@ public class GetBillingReport extends LimsTask {
             }
             List<DataRecord> runList = new LinkedList<DataRecord>();
             List<DataRecord> queriedRequests = dataRecordManager.queryDataRecords("Request", "RequestId = '" + project + "'", user);
-            for (DataRecord req : queriedRequests) {
+            List<List<DataRecord>> lanesOfRequests = queriedRequests.isEmpty() ? new LinkedList<>() : dataRecordManager.getDescendantsOfType(queriedRequests, "FlowCellLane", user);
+            FlowCellLineage flowCellLineage = new FlowCellLineage(dataRecordManager, user);
+            for (int i = 0; i < queriedRequests.size(); i++) {
+                DataRecord req = queriedRequests.get(i);
                 log.info("Getting a record " + project);
-                List<DataRecord> reqLanes = req.getDescendantsOfType("FlowCellLane", user);
-                for (DataRecord lane : reqLanes) {
-                    log.info("Getting a flow cell lane");
-                    List<DataRecord> flowcell = lane.getParentsOfType("FlowCell", user);
-                    if (flowcell.size() > 0) {
-                        log.info("Getting a flow cell");
-                        List<DataRecord> possibleRun = flowcell.get(0).getParentsOfType("IlluminaSeqExperiment", user);
-                        if (possibleRun.size() > 0) {
-                            log.info("Getting a run");
-                            if (!runList.contains(possibleRun.get(0))) {
-                                runList.add(possibleRun.get(0));
+                for (DataRecord possibleRun : flowCellLineage.getRuns(lanesOfRequests.get(i))) {
+                    log.info("Getting a run");
+                    if (!runList.contains(possibleRun)) {
+                        runList.add(possibleRun);
 
-                                String run = "";
-                                try {
-                                    String[] runFolderElements = possibleRun.get(0).getStringVal("SequencerRunFolder", user).split("/");
-                                    run = runFolderElements[runFolderElements.length - 1];
-                                } catch (NullPointerException npe) {
-                                }
-
-                                String requestId = "";
-                                try {
-                                    requestId = req.getStringVal("RequestId", user);
-                                } catch (NullPointerException npe) {
-                                }
+                        String run = "";
+                        try {
+                            String[] runFolderElements = possibleRun.getStringVal("SequencerRunFolder", user).split("/");
+                            run = runFolderElements[runFolderElements.length - 1];
+                        } catch (NullPointerException npe) {
+                        }
 
-                                String labHead = "";
-                                try {
-                                    labHead = req.getStringVal("LaboratoryHead", user);
-                                } catch (NullPointerException npe) {
-                                }
+                        String requestId = "";
+                        try {
+                            requestId = req.getStringVal("RequestId", user);
+                        } catch (NullPointerException npe) {
+                        }
 
-                                String investigator = "";
-                                try {
-                                    investigator = req.getStringVal("Investigator", user);
-                                } catch (NullPointerException npe) {
-                                }
+                        String labHead = "";
+                        try {
+                            labHead = req.getStringVal("LaboratoryHead", user);
+                        } catch (NullPointerException npe) {
+                        }
 
-                                long dateRequested = 0;
-                                try {
-                                    dateRequested = req.getDateVal("RequestStartDate", user);
-                                } catch (NullPointerException npe) {
-                                }
+                        String investigator = "";
+                        try {
+                            investigator = req.getStringVal("Investigator", user);
+                        } catch (NullPointerException npe) {
+                        }
 
-                                long dateRunReceived = 0;
-                                try {
-                                    dateRunReceived = possibleRun.get(0).getDateVal("DateCreated", user);
-                                } catch (NullPointerException npe) {
-                                }
+                        long dateRequested = 0;
+                        try {
+                            dateRequested = req.getDateVal("RequestStartDate", user);
+                        } catch (NullPointerException npe) {
+                        }
 
-                                RunSummary summary = new RunSummary(run, "");
-                                summary.setRequestId(requestId);
-                                summary.setLabHead(labHead);
-                                summary.setInvestigator(investigator);
-                                summary.setStartDate(dateRequested);
-                                summary.setReceivedDate(dateRunReceived);
-                                runResults.add(summary);
-                            }
+                        long dateRunReceived = 0;
+                        try {
+                            dateRunReceived = possibleRun.getDateVal("DateCreated", user);
+                        } catch (NullPointerException npe) {
                         }
+
+                        RunSummary summary = new RunSummary(run, "");
+                        summary.setRequestId(requestId);
+                        summary.setLabHead(labHead);
+                        summary.setInvestigator(investigator);
+                        summary.setStartDate(dateRequested);
+                        summary.setReceivedDate(dateRunReceived);
+                        runResults.add(summary);
                     }
                 }
             }
@@ -1,6 +1,5 @@
 package org.mskcc.limsrest.service;
 
-import com.velox.api.datarecord.AuditLog;
 import com.velox.api.datarecord.AuditLogEntry;
 import com.velox.api.datarecord.DataRecord;
 import com.velox.sapioutils.client.standalone.VeloxConnection;
@@ -12,6 +11,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,6 +32,15 @@ public class GetDelivered extends LimsTask {
     int time = 0;
     String units = "";
     String investigator = "";
+    Long since;
+    // RequestId -> fields of the delivered request, read by the delivery journal
+    private final Map<String, Map<String, Object>> requestFieldsById = new HashMap<>();
+    private final AuditHistory auditHistory;
+    private Throwable failure;
+
+    public GetDelivered(AuditHistory auditHistory) {
+        this.auditHistory = auditHistory;
+    }
 
     public void init(int time, String units) {
         this.time = time;
@@ -56,10 +65,37 @@ public class GetDelivered extends LimsTask {
         units = "w";
     }
 
-    @PreAuthorize("hasRole('READ')")
-    @Override
-    public Object execute(VeloxConnection conn) {
-        long now = System.currentTimeMillis();
+    /**
+     * Finds the requests delivered after the time, used to update the delivery journal.
+     */
+    public void initSince(long since) {
+        this.since = since;
+        investigator = "NULL";
+    }
+
+    public Map<String, Object> getRequestFields(String requestId) {
+        return requestFieldsById.get(requestId);
+    }
+
+    /**
+     * Error which ended the task, the summaries returned are incomplete if not null.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Returns the time after which requests delivered within the time frame ending now were delivered.
+     */
+    public static long getSearchPoint(long now, int time, String units) {
+        long searchPoint = now - getOffsetMillis(time, units);
+        if (searchPoint < 1) {
+            searchPoint = 1l;
+        }
+        return searchPoint;
+    }
+
+    private static long getOffsetMillis(int time, String units) {
         long offset = (long) time;
         if (units.equals("m")) {
             offset *= 60l * 1000;
@@ -70,14 +106,18 @@ public class GetDelivered extends LimsTask {
         } else { //don't worry about anything exotic and just assume it's days
             offset *= 24l * 60 * 60 * 1000;
         }
-        long searchPoint = now - offset;
-        if (searchPoint < 1) {
-            searchPoint = 1l;
-        }
+        return offset;
+    }
+
+    @PreAuthorize("hasRole('READ')")
+    @Override
+    public Object execute(VeloxConnection conn) {
+        long now = System.currentTimeMillis();
+        long offset = getOffsetMillis(time, units);
+        long searchPoint = since != null ? since : getSearchPoint(now, time, units);
         //find all runs
         List<RequestSummary> delivered = new LinkedList<>();
         try {
-            AuditLog auditlog = user.getAuditLog();
             List<DataRecord> recentDeliveries = null;
             if (time == -1) {
                 searchPoint = now + offset;
@@ -107,21 +147,13 @@ public class GetDelivered extends LimsTask {
             }
             List<List<DataRecord>> childSamples = dataRecordManager.getChildrenOfType(recentDeliveries, "Sample", user);
             List<List<DataRecord>> childPlates = dataRecordManager.getChildrenOfType(recentDeliveries, "Plate", user);
+            // samples and QCs of all requests are found first so the audit history of all of them is read together
+            List<Map<String, Object>> requestFieldsList = dataRecordManager.getFieldsForRecords(recentDeliveries, user);
+            List<List<DataRecord>> samplesOfRequests = new ArrayList<>();
+            List<List<List<DataRecord>>> qcsOfRequests = new ArrayList<>();
+            List<DataRecord> qcRecords = new ArrayList<>();
             for (int i = 0; i < recentDeliveries.size(); i++) {
-                DataRecord request = recentDeliveries.get(i);
-                Map<String, Object> requestFields = request.getFields(user);
-                String requestId = (String) requestFields.get("RequestId");
-                RequestSummary rs = new RequestSummary(requestId);
-
-                rs.setInvestigator(getRecordStringValue(request, RequestModel.INVESTIGATOR, user));
-                rs.setPi(getRecordStringValue(request, RequestModel.LABORATORY_HEAD, user));
-                rs.setAnalysisRequested(getRecordBooleanValue(request, RequestModel.BICANALYSIS, user));
-                rs.setAnalysisType(getRecordStringValue(request, "AnalysisType", user));
-                rs.setRequestType(getRecordStringValue(request, RequestModel.REQUEST_NAME, user));
-                rs.setProjectManager(getRecordStringValue(request, RequestModel.PROJECT_MANAGER, user));
-                rs.setSampleNumber(getRecordShortValue(request, RequestModel.SAMPLE_NUMBER, user));
-                rs.setReceivedDate(getRecordLongValue(request, RequestModel.RECEIVED_DATE, user));
-
+                String requestId = (String) requestFieldsList.get(i).get("RequestId");
                 List<DataRecord> childrenOfRequest = childSamples.get(i);
                 List<DataRecord> childrenPlatesOfRequest = childPlates.get(i);
                 List<List<DataRecord>> childPlateSamples = dataRecordManager.getChildrenOfType(childrenPlatesOfRequest, "Sample", user);
@@ -138,8 +170,54 @@ public class GetDelivered extends LimsTask {
                 }
 
                 List<List<DataRecord>> sampleQcs = dataRecordManager.getDescendantsOfType(childrenOfRequest, "SeqAnalysisSampleQC", user);
+                for (List<DataRecord> qcs : sampleQcs) {
+                    qcRecords.addAll(qcs);
+                }
+                samplesOfRequests.add(childrenOfRequest);
+                qcsOfRequests.add(sampleQcs);
+            }
+            // fields of the QCs of all requests are read with one call, the audit history is cached by the
+            // DateModified read with the fields
+            Map<Long, Map<String, Object>> qcFieldsById = new HashMap<>();
+            List<DataRecord> audited = new ArrayList<>(recentDeliveries);
+            List<Long> auditedDatesModified = new ArrayList<>();
+            for (Map<String, Object> requestFields : requestFieldsList) {
+                auditedDatesModified.add((Long) requestFields.get("DateModified"));
+            }
+            if (!qcRecords.isEmpty()) {
+                List<Map<String, Object>> qcFieldsList = dataRecordManager.getFieldsForRecords(qcRecords, user);
+                for (int i = 0; i < qcRecords.size(); i++) {
+                    Map<String, Object> qcFields = qcFieldsList.get(i);
+                    qcFieldsById.put(qcRecords.get(i).getRecordId(), qcFields);
+                    if (qcFields.get("SeqQCStatus") != null) {
+                        audited.add(qcRecords.get(i));
+                        auditedDatesModified.add((Long) qcFields.get("DateModified"));
+                    }
+                }
+            }
+            Map<Long, List<AuditLogEntry>> histories = auditHistory.getHistories(audited, auditedDatesModified, user,
+                    getConnectionPool());
+
+            for (int i = 0; i < recentDeliveries.size(); i++) {
+                DataRecord request = recentDeliveries.get(i);
+                Map<String, Object> requestFields = requestFieldsList.get(i);
+                String requestId = (String) requestFields.get("RequestId");
+                RequestSummary rs = new RequestSummary(requestId);
+                requestFieldsById.put(requestId, requestFields);
+
+                rs.setInvestigator(getRecordStringValue(request, RequestModel.INVESTIGATOR, user));
+                rs.setPi(getRecordStringValue(request, RequestModel.LABORATORY_HEAD, user));
+                rs.setAnalysisRequested(getRecordBooleanValue(request, RequestModel.BICANALYSIS, user));
+                rs.setAnalysisType(getRecordStringValue(request, "AnalysisType", user));
+                rs.setRequestType(getRecordStringValue(request, RequestModel.REQUEST_NAME, user));
+                rs.setProjectManager(getRecordStringValue(request, RequestModel.PROJECT_MANAGER, user));
+                rs.setSampleNumber(getRecordShortValue(request, RequestModel.SAMPLE_NUMBER, user));
+                rs.setReceivedDate(getRecordLongValue(request, RequestModel.RECEIVED_DATE, user));
+
+                List<DataRecord> childrenOfRequest = samplesOfRequests.get(i);
+                List<List<DataRecord>> sampleQcs = qcsOfRequests.get(i);
                 List<List<Map<String, Object>>> allCorrectedFields = dataRecordManager.getFieldsForChildrenOfType(childrenOfRequest, "SampleCMOInfoRecords", user);
-                List<AuditLogEntry> reqHistory = auditlog.getAuditLogHistory(request, false, user);
+                List<AuditLogEntry> reqHistory = histories.get(request.getRecordId());
                 for (AuditLogEntry logline : reqHistory) {
                     if (logline.dataFieldName.equals("RecentDeliveryDate")) {
                         rs.addDeliveryDate(logline.timestamp);
@@ -186,7 +264,7 @@ public class GetDelivered extends LimsTask {
                     for (int k = 0; k < sampleQcsForSample.size(); k++) {
                         DataRecord qc = sampleQcsForSample.get(k);
 
-                        Map<String, Object> qcFields = qc.getFields(user);
+                        Map<String, Object> qcFields = qcFieldsById.get(qc.getRecordId());
                         String qcRequestId = "";
                         try {
                             qcRequestId = (String) qcFields.get("Request");
@@ -214,7 +292,7 @@ public class GetDelivered extends LimsTask {
                             String qcStatus = (String) qcFields.get("SeqQCStatus");
                             if (qcStatus != null) {
                                 qcSummary.setQcStatus(qcStatus);
-                                List<AuditLogEntry> qcHistory = auditlog.getAuditLogHistory(qc, false, user);
+                                List<AuditLogEntry> qcHistory = histories.get(qc.getRecordId());
                                 for (AuditLogEntry logline : qcHistory) {
                                     if (logline.dataFieldName.equals("SeqQCStatus")) {
                                         qcSummary.putStatusEvent(logline.timestamp, logline.newValue);
@@ -231,6 +309,7 @@ public class GetDelivered extends LimsTask {
                 }
             }
         } catch (Throwable e) {
+            failure = e;
             log.info(e.getMessage());
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
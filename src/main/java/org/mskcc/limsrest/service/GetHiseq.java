@@ -11,11 +11,14 @@ import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A queued task that takes a request id and returns the hiseq run info 
@@ -24,9 +27,19 @@ import java.util.Map;
  */
 public class GetHiseq {
     private static Log log = LogFactory.getLog(GetHiseq.class);
+    // no run is created before the LIMS went live, listing stops here without since
+    private static final long EARLIEST_RUN_CREATED = 1262304000000L; // 2010-01-01
+    // window of the queries reading all runs, so no query scans the whole run table
+    private static final long ALL_RUNS_WINDOW_MILLIS = TimeUnit.DAYS.toMillis(366);
     protected String run;
     protected String[] projects;
     private ConnectionLIMS conn;
+    // page of the run list, runs are listed newest first
+    private Long since;
+    private Long until;
+    private Long cursor;
+    private long windowMillis;
+    private Long nextCursor;
 
     public GetHiseq(String run, ConnectionLIMS conn) {
         this.run = run;
@@ -39,6 +52,32 @@ public class GetHiseq {
         this.conn = conn;
     }
 
+    /**
+     * Lists one page of all runs, newest first. A page holds the runs created in a time window which ends where the
+     * previous page started, so each page is read with one bounded DateCreated query.
+     *
+     * @param since        only runs created at or after this time (ms), null for all runs
+     * @param until        only runs created before this time (ms), null for no upper bound
+     * @param cursor       {@link #getNextCursor()} of the previous page, null for the first page
+     * @param windowMillis time covered by the page, 0 to list all runs in one page
+     */
+    public GetHiseq(Long since, Long until, Long cursor, long windowMillis, ConnectionLIMS conn) {
+        this.run = "";
+        this.since = since;
+        this.until = until;
+        this.cursor = cursor;
+        this.windowMillis = windowMillis;
+        this.conn = conn;
+    }
+
+    /**
+     * Cursor of the page following the listed runs, the start of the page's window. Null once the window reaches
+     * since, or without since the creation of the first run in the LIMS.
+     */
+    public Long getNextCursor() {
+        return nextCursor;
+    }
+
 
     @PreAuthorize("hasRole('READ')")
     public List<RunSummary> execute() {
@@ -57,31 +96,34 @@ public class GetHiseq {
             }
             List<DataRecord> runList = null;
             if (projects != null && projects.length > 0) {
-                runList = new LinkedList<DataRecord>();
+                List<DataRecord> requests = new LinkedList<>();
                 for (int i = 0; i < projects.length; i++) {
                     List<DataRecord> queriedRequests = dataRecordManager.queryDataRecords("Request", "RequestId = '" + projects[i] + "'", user);
                     projectsSearchable.add(projects[i]);
-                    for (DataRecord req : queriedRequests) {
-                        log.info("Getting a record " + projects[i]);
-                        List<DataRecord> reqLanes = req.getDescendantsOfType("FlowCellLane", user);
-                        for (DataRecord lane : reqLanes) {
-                            log.info("Getting a flow cell lane");
-                            List<DataRecord> flowcell = lane.getParentsOfType("FlowCell", user);
-                            if (flowcell.size() > 0) {
-                                log.info("Getting a flow cell");
-                                List<DataRecord> possibleRun = flowcell.get(0).getParentsOfType("IlluminaSeqExperiment", user);
-                                if (possibleRun.size() > 0) {
-                                    log.info("Getting a run");
-                                    if (!runList.contains(possibleRun.get(0))) {
-                                        runList.add(possibleRun.get(0));
-                                    }
-                                }
-                            }
-                        }
+                    requests.addAll(queriedRequests);
+                }
+                // lanes of all requests, then flow cells and runs of all lanes are each fetched with one query
+                List<DataRecord> lanes = new LinkedList<>();
+                if (!requests.isEmpty()) {
+                    for (List<DataRecord> reqLanes : dataRecordManager.getDescendantsOfType(requests, "FlowCellLane", user)) {
+                        lanes.addAll(reqLanes);
                     }
                 }
+                log.info("Getting the runs of " + lanes.size() + " flow cell lanes");
+                runList = new FlowCellLineage(dataRecordManager, user).getRuns(lanes);
             } else if (run.equals("")) {
-                runList = dataRecordManager.queryDataRecords("IlluminaSeqExperiment", null, user);
+                long lowerBound = since != null ? since : EARLIEST_RUN_CREATED;
+                Long end = cursor != null ? cursor : until;
+                long window = windowMillis > 0 ? windowMillis : ALL_RUNS_WINDOW_MILLIS;
+                runList = new ArrayList<>();
+                long start;
+                do {
+                    start = Math.max((end != null ? end : System.currentTimeMillis()) - window, lowerBound);
+                    runList.addAll(getRunsCreated(dataRecordManager, user, start, end));
+                    end = start;
+                } while (windowMillis <= 0 && start > lowerBound);
+                if (start > lowerBound)
+                    nextCursor = start;
             } else {
                 runList = dataRecordManager.queryDataRecords("IlluminaSeqExperiment", "SequencerRunFolder like '%" + run + "%'", user);
             }
@@ -284,4 +326,25 @@ public class GetHiseq {
 
         return runResults;
     }
+
+    /**
+     * Runs created in the window newest first, a window ends where the next begins since the end is excluded. Only
+     * plain comparisons are used, the runs are sorted here rather than relying on ORDER BY or LIMIT support in the LIMS
+     * query.
+     */
+    private static List<DataRecord> getRunsCreated(DataRecordManager dataRecordManager, User user, long start, Long end)
+            throws Exception {
+        String query = "DateCreated >= " + start;
+        if (end != null)
+            query += " AND DateCreated < " + end;
+        List<DataRecord> runs = new ArrayList<>(dataRecordManager.queryDataRecords("IlluminaSeqExperiment", query,
+                user));
+        Map<Long, Long> createdByRecordId = new HashMap<>();
+        for (DataRecord r : runs) {
+            createdByRecordId.put(r.getRecordId(), r.getDateVal("DateCreated", user));
+        }
+        runs.sort(Comparator.comparing((DataRecord r) -> createdByRecordId.get(r.getRecordId()))
+                .thenComparing(DataRecord::getRecordId).reversed());
+        return runs;
+    }
 }
\ No newline at end of file
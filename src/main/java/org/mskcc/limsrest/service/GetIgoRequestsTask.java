@@ -8,6 +8,7 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.util.RecordSnapshot;
 import org.springframework.security.access.prepost.PreAuthorize;
 
 import java.rmi.RemoteException;
@@ -15,7 +16,6 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.mskcc.limsrest.util.StatusTrackerConfig.isIgoComplete;
-import static org.mskcc.limsrest.util.Utils.*;
 
 public class GetIgoRequestsTask extends LimsTask {
     private static Log log = LogFactory.getLog(GetIgoRequestsTask.class);
@@ -69,9 +69,11 @@ public class GetIgoRequestsTask extends LimsTask {
     public List<RequestSummary> execute(VeloxConnection conn) {
         User user = conn.getUser();
         String query = getQuery();
-        List<DataRecord> records = new ArrayList<>();
+        List<RecordSnapshot> records = new ArrayList<>();
         try {
-            records = conn.getDataRecordManager().queryDataRecords(RequestModel.DATA_TYPE_NAME, query, user);
+            List<DataRecord> requestRecords = conn.getDataRecordManager().queryDataRecords(RequestModel.DATA_TYPE_NAME, query, user);
+            // Fields of all requests in one call instead of a call per field of each request
+            records = RecordSnapshot.of(requestRecords, conn.getDataRecordManager(), user);
         } catch (IoError | RemoteException | NotFound e) {
             log.error(String.format("Failed to query DataRecords w/ query: %s", query));
             return new ArrayList<>();
@@ -80,20 +82,20 @@ public class GetIgoRequestsTask extends LimsTask {
         // Transform requests into a redacted API response
         List<RequestSummary> requests = new ArrayList<>();
 
-        for (DataRecord request : records) {
-            String requestId = getRecordStringValue(request, RequestModel.REQUEST_ID, user);
+        for (RecordSnapshot request : records) {
+            String requestId = request.getStringValue(RequestModel.REQUEST_ID);
             RequestSummary rs = new RequestSummary(requestId);
-            rs.setIsCmoRequest(getRecordBooleanValue(request, "IsCmoRequest", user));
-            rs.setInvestigator(getRecordStringValue(request, RequestModel.INVESTIGATOR, user));
-            rs.setPi(getRecordStringValue(request, RequestModel.LABORATORY_HEAD, user));
-            rs.setRequestType(getRecordStringValue(request, RequestModel.REQUEST_NAME, user));
-            rs.setReceivedDate(getRecordLongValue(request, RequestModel.RECEIVED_DATE, user));
-            rs.setRecentDeliveryDate(getRecordLongValue(request, RequestModel.RECENT_DELIVERY_DATE, user));
-            rs.setCompletedDate(getRecordLongValue(request, RequestModel.COMPLETED_DATE, user));
-            rs.setIsIgoComplete(isIgoComplete(request, user));
-            rs.setQcAccessEmail(getRecordStringValue(request, "QcAccessEmails", user));
-            rs.setDataAccessEmails(getRecordStringValue(request, "DataAccessEmails", user));
-            rs.setDueDate(getRecordLongValue(request, "DueDate", user));
+            rs.setIsCmoRequest(request.getBooleanVal("IsCmoRequest"));
+            rs.setInvestigator(request.getStringValue(RequestModel.INVESTIGATOR));
+            rs.setPi(request.getStringValue(RequestModel.LABORATORY_HEAD));
+            rs.setRequestType(request.getStringValue(RequestModel.REQUEST_NAME));
+            rs.setReceivedDate(request.getLongVal(RequestModel.RECEIVED_DATE));
+            rs.setRecentDeliveryDate(request.getLongVal(RequestModel.RECENT_DELIVERY_DATE));
+            rs.setCompletedDate(request.getLongVal(RequestModel.COMPLETED_DATE));
+            rs.setIsIgoComplete(isIgoComplete(request));
+            rs.setQcAccessEmail(request.getStringValue("QcAccessEmails"));
+            rs.setDataAccessEmails(request.getStringValue("DataAccessEmails"));
+            rs.setDueDate(request.getLongVal("DueDate"));
             requests.add(rs);
         }
 
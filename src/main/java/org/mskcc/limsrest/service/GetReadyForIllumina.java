@@ -44,32 +44,45 @@ public class GetReadyForIllumina {
             log.info("Number of samples to pool: " + samplesToPool.size());
 
             if (samplesToPool.size() > 0){
-                for (DataRecord sample: samplesToPool){
-                    String sampleId = sample.getStringVal("SampleId", user);
-                    List<DataRecord> requestRecords = sample.getAncestorsOfType("Request", user);
-                    String requestName = "";
-                    if (!requestRecords.isEmpty()) {
-                        requestName = requestRecords.get(0).getStringVal("RequestName", user);
-                    }
-                    if (sampleId.toLowerCase().startsWith("pool-")) {
-                        // if sample is pool then get all the Library samples in the pool which live as parents of the pool.
-                        List<DataRecord> parentLibrarySamplesForPool = getNearestParentLibrarySamplesForPool(sample, user);
+                // fields of all samples are read with one call
+                List<Map<String, Object>> sampleFields = dataRecordManager.getFieldsForRecords(samplesToPool, user);
+                List<DataRecord> pools = new ArrayList<>();
+                for (int i = 0; i < samplesToPool.size(); i++) {
+                    if (isPool(sampleFields.get(i)))
+                        pools.add(samplesToPool.get(i));
+                }
+                // if sample is pool then get all the Library samples in the pool which live as parents of the pool.
+                List<List<DataRecord>> librarySamplesForPools = getNearestParentLibrarySamplesForPools(pools, dataRecordManager, user);
+                Map<String, String> requestNamesById = getRequestNamesById(sampleFields, dataRecordManager, user);
+                log.info("Resolved library samples of " + pools.size() + " pools and " + requestNamesById.size() + " requests");
+
+                int poolIndex = 0;
+                for (int i = 0; i < samplesToPool.size(); i++) {
+                    DataRecord sample = samplesToPool.get(i);
+                    Map<String, Object> sampleFieldValues = sampleFields.get(i);
+                    String sampleId = (String) sampleFieldValues.get("SampleId");
+                    String requestName = getRequestName(sample, sampleFieldValues, requestNamesById, user);
+                    if (isPool(sampleFieldValues)) {
+                        List<DataRecord> parentLibrarySamplesForPool = librarySamplesForPools.get(poolIndex++);
                         for (DataRecord librarySample : parentLibrarySamplesForPool) {
                             RunSummary summary = new RunSummary("DEFAULT", "DEFAULT");
                             //set some of the pool level fields on the summary object like pool
                             summary.setPool(sampleId); //preset poolID
-                            summary.setConcentration(sample.getDoubleVal("Concentration", user)); //preset Pool Concentration
-                            summary.setStatus(sample.getStringVal("ExemplarSampleStatus", user)); //preset Pool Status
+                            Double concentration = (Double) sampleFieldValues.get("Concentration");
+                            if (concentration != null)
+                                summary.setConcentration(concentration); //preset Pool Concentration
+                            summary.setStatus((String) sampleFieldValues.get("ExemplarSampleStatus")); //preset Pool Status
                             summary.setRequestName(requestName);
-                            if (sample.getValue("Volume", user) == null) //preset pool volume in this if else block
+                            Object volume = sampleFieldValues.get("Volume");
+                            if (volume == null) //preset pool volume in this if else block
                                 summary.setVolume("null");
                             else
-                                summary.setVolume(sample.getValue("Volume", user).toString());
+                                summary.setVolume(volume.toString());
                             results.add(createRunSummaryForSampleInPool(librarySample, summary, user)); //pass the summary Object with preset pool level information "createRunSummaryForSampleInPool" method to add sample level information
                         }
                     } else {
                         try {
-                            results.add(createRunSummaryForNonPooledSamples(sample, requestName, user));
+                            results.add(createRunSummaryForNonPooledSamples(sample, sampleFieldValues, requestName, user));
                         } catch (IllegalStateException e){
                             // Continue processing remaining data records
                             log.error(e.getMessage());
@@ -86,33 +99,99 @@ public class GetReadyForIllumina {
     }
 
     /**
-     * If the sample is pool, get all the samples of type Library that are present in the pool.
-     * @param pooledSample
-     * @return List of Library samples in the pooled sample.
+     * For each pool, get all the samples of type Library that are present in the pool. Pools of pools are walked one
+     * level at a time for all pools together so each level takes a single parents query.
+     * @param pooledSamples
+     * @return List of Library samples for each pooled sample, in the order of the pooled samples.
      * @throws IoError
      * @throws RemoteException
      * @throws NotFound
      */
-    private List<DataRecord> getNearestParentLibrarySamplesForPool(DataRecord pooledSample, User user) throws IoError, RemoteException, NotFound {
-        List<DataRecord> parentLibrarySamplesForPool = new ArrayList<>();
-        Stack<DataRecord> sampleTrackingStack = new Stack<>();
-        sampleTrackingStack.add(pooledSample);
-        while (!sampleTrackingStack.isEmpty()) {
-            List<DataRecord> parentSamples = sampleTrackingStack.pop().getParentsOfType("Sample", user);
-            if (!parentSamples.isEmpty()) {
-                for (DataRecord sample : parentSamples) {
+    private List<List<DataRecord>> getNearestParentLibrarySamplesForPools(List<DataRecord> pooledSamples, DataRecordManager dataRecordManager, User user) throws IoError, RemoteException, NotFound {
+        List<List<DataRecord>> parentLibrarySamplesForPools = new ArrayList<>();
+        List<DataRecord> frontier = new ArrayList<>();
+        List<Integer> frontierPoolIndexes = new ArrayList<>(); // index of the pooled sample each frontier pool belongs to
+        for (int i = 0; i < pooledSamples.size(); i++) {
+            parentLibrarySamplesForPools.add(new ArrayList<>());
+            frontier.add(pooledSamples.get(i));
+            frontierPoolIndexes.add(i);
+        }
+        while (!frontier.isEmpty()) {
+            List<List<DataRecord>> parentSamples = dataRecordManager.getParentsOfType(frontier, "Sample", user);
+            List<DataRecord> nextFrontier = new ArrayList<>();
+            List<Integer> nextFrontierPoolIndexes = new ArrayList<>();
+            for (int i = 0; i < frontier.size(); i++) {
+                int poolIndex = frontierPoolIndexes.get(i);
+                for (DataRecord sample : parentSamples.get(i)) {
                     String sampleId = sample.getStringVal("SampleId", user);
                     log.info("Processing: " + sampleId);
                     if (sampleId.toLowerCase().startsWith("pool-")) {
-                        sampleTrackingStack.push(sample);
+                        nextFrontier.add(sample);
+                        nextFrontierPoolIndexes.add(poolIndex);
                     }
                     else {
-                        parentLibrarySamplesForPool.add(sample);
+                        parentLibrarySamplesForPools.get(poolIndex).add(sample);
                     }
                 }
             }
+            frontier = nextFrontier;
+            frontierPoolIndexes = nextFrontierPoolIndexes;
+        }
+        return parentLibrarySamplesForPools;
+    }
+
+    private static boolean isPool(Map<String, Object> sampleFieldValues) {
+        Object sampleId = sampleFieldValues.get("SampleId");
+        return sampleId != null && sampleId.toString().toLowerCase().startsWith("pool-");
+    }
+
+    /**
+     * Returns the request name of every request that is the only request of one of the samples, found with one query.
+     * @param sampleFields fields of the samples
+     * @return Map of RequestId to RequestName
+     */
+    private Map<String, String> getRequestNamesById(List<Map<String, Object>> sampleFields, DataRecordManager dataRecordManager, User user) throws IoError, RemoteException, NotFound {
+        Set<String> requestIds = new HashSet<>();
+        for (Map<String, Object> sampleFieldValues : sampleFields) {
+            String requestId = getSingleRequestId(sampleFieldValues);
+            if (!requestId.isEmpty())
+                requestIds.add(requestId);
         }
-        return parentLibrarySamplesForPool;
+        Map<String, String> requestNamesById = new HashMap<>();
+        if (requestIds.isEmpty())
+            return requestNamesById;
+        List<DataRecord> requests = dataRecordManager.queryDataRecords("Request", "RequestId in ('" + String.join("','", requestIds) + "')", user);
+        for (DataRecord request : requests) {
+            requestNamesById.put(request.getStringVal("RequestId", user), request.getStringVal("RequestName", user));
+        }
+        return requestNamesById;
+    }
+
+    /**
+     * Returns the name of the first Request ancestor of the sample. The only Request ancestor of a sample of one request
+     * is the request named by its RequestId, the ancestors are only searched for samples of several requests or when
+     * the RequestId does not name a request.
+     */
+    private String getRequestName(DataRecord sample, Map<String, Object> sampleFieldValues, Map<String, String> requestNamesById, User user) throws IoError, RemoteException, NotFound {
+        String requestId = getSingleRequestId(sampleFieldValues);
+        if (requestNamesById.containsKey(requestId))
+            return requestNamesById.get(requestId);
+        List<DataRecord> requestRecords = sample.getAncestorsOfType("Request", user);
+        if (!requestRecords.isEmpty()) {
+            return requestRecords.get(0).getStringVal("RequestName", user);
+        }
+        return "";
+    }
+
+    /**
+     * Returns the RequestId of a sample of one request, "" for pools of samples from several requests which have a comma
+     * separated RequestId.
+     */
+    private static String getSingleRequestId(Map<String, Object> sampleFieldValues) {
+        Object requestId = sampleFieldValues.get("RequestId");
+        if (requestId == null || requestId.toString().contains(","))
+            return "";
+        return requestId.toString().trim();
     }
 
     /**
@@ -217,6 +296,7 @@ public class GetReadyForIllumina {
     /**
      * This method will create the Summary Object for the sample not part of a pool.
      * @param unpooledSample
+     * @param sampleFieldValues fields of the sample
      * @param user
      * @return Run Summary for sample.
      * @throws NotFound
@@ -224,9 +304,8 @@ public class GetReadyForIllumina {
      * @throws IoError
      * @throws InvalidValue
      */
-    private RunSummary createRunSummaryForNonPooledSamples(DataRecord unpooledSample, String requestName, User user)
+    private RunSummary createRunSummaryForNonPooledSamples(DataRecord unpooledSample, Map<String, Object> sampleFieldValues, String requestName, User user)
             throws NotFound, RemoteException, IoError, InvalidValue {
-        Map<String, Object> sampleFieldValues = unpooledSample.getFields(user);
         String sampleId = (String) sampleFieldValues.get("SampleId");
         log.info("Creating run summary for " + sampleId);
         RunSummary summary = new RunSummary("DEFAULT", "DEFAULT"); // if sample is not pool, then it is Library sample and work with it.
@@ -10,10 +10,10 @@ import com.velox.sloan.cmo.recmodels.SampleModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -26,11 +26,13 @@ public class GetRequestSamplesTask {
     private static Log log = LogFactory.getLog(GetRequestSamplesTask.class);
 
     private ConnectionLIMS conn;
+    private HttpClientPool httpClient;
     private String requestId;
 
-    public GetRequestSamplesTask(String requestId, ConnectionLIMS conn) {
+    public GetRequestSamplesTask(String requestId, ConnectionLIMS conn, HttpClientPool httpClient) {
         this.requestId = requestId;
         this.conn = conn;
+        this.httpClient = httpClient;
     }
 
     public GetRequestSamplesTask.RequestSampleList execute() {
@@ -177,14 +179,13 @@ public class GetRequestSamplesTask {
     /*
     Finds all pooled normals included on any run for a given request.
      */
-    public static List<String> findPooledNormals(String request) {
+    public List<String> findPooledNormals(String request) {
         // TODO
         String url = "http://delphi.mskcc.org:8080/ngs-stats/rundone/getpoolednormals/" + request;
         log.info("Finding pooled normal fastqs in fastq DB for: " + url);
 
         try {
-            RestTemplate restTemplate = new RestTemplate();
-            ResponseEntity<List<ArchivedFastq>> response = restTemplate.exchange(
+            ResponseEntity<List<ArchivedFastq>> response = httpClient.getRestTemplate().exchange(
                     url,
                     HttpMethod.GET,
                     null,
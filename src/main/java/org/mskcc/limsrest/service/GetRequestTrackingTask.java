@@ -9,7 +9,6 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import com.velox.sloan.cmo.recmodels.BankedSampleModel;
 import com.velox.sloan.cmo.recmodels.RequestModel;
 import com.velox.sloan.cmo.recmodels.SampleModel;
-import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.platform.commons.util.StringUtils;
@@ -179,10 +178,14 @@ public class GetRequestTrackingTask {
         // Immediate samples of record represent physical samples. LIMS creates children of these in the workflow
         DataRecord[] samples = requestRecord.getChildrenOfType(SampleModel.DATA_TYPE_NAME, user);
 
+        // Load the sample trees of the whole request up front so traversal doesn't make a LIMS call per sample
+        DataRecordManager drm = conn.getConnection().getDataRecordManager();
+        SampleTreePrefetch prefetch = SampleTreePrefetch.load(Arrays.asList(samples), drm, user);
+
         // Create the tree of each ProjectSample aggregating per-sample status/stage information
         List<ProjectSample> projectSamples = new ArrayList<>();
         for (DataRecord sampleRecord : samples) {
-            ProjectSampleTree tree = createProjectSampleTree(requestRecord, sampleRecord, user);
+            ProjectSampleTree tree = createProjectSampleTree(requestRecord, sampleRecord, prefetch, user);
             ProjectSample projectSample = tree.evaluateProjectSample();
             projectSamples.add(projectSample);
         }
@@ -247,10 +250,7 @@ public class GetRequestTrackingTask {
         }
 
         // Search each child of the input
-        DataRecord[] children = new DataRecord[0];
-        try {
-            children = root.getRecord().getChildrenOfType(SampleModel.DATA_TYPE_NAME, tree.getUser());
-        } catch (IoError | RemoteException e) { /* Expected - No more children of the sample */ }
+        DataRecord[] children = tree.getPrefetch().getSampleChildren(root.getRecord());
 
         if (children.length == 0) {
             tree.updateTreeOnLeafStatus(root);
@@ -263,7 +263,7 @@ public class GetRequestTrackingTask {
             List<WorkflowSample> workflowChildren = new ArrayList<>();
             for (DataRecord record : children) {
                 if (isWorkflowSampleInProject(record, this.requestId, this.user)) {
-                    WorkflowSample sample = new WorkflowSample(record, this.conn);
+                    WorkflowSample sample = new WorkflowSample(record, this.conn, tree.getPrefetch());
 
                     // Children are related to the same Qc Records as their parents.
                     sample.addSeqAnalysisQcRecords(root.getSeqAnalysisQcRecords());
@@ -338,26 +338,23 @@ public class GetRequestTrackingTask {
      * Creates data model of the tree for the DataRecord corresponding to a ProjectSample
      *
      * @param record
+     * @param prefetch - Sample subtree of the request
      * @param user
      * @return
      */
-    private ProjectSampleTree createProjectSampleTree(DataRecord requestRecord, DataRecord record, User user) {
+    private ProjectSampleTree createProjectSampleTree(DataRecord requestRecord, DataRecord record,
+                                                      SampleTreePrefetch prefetch, User user) {
         // Initialize input
-        WorkflowSample root = new WorkflowSample(record, this.conn);
-        ProjectSampleTree rootTree = new ProjectSampleTree(root, user);
+        WorkflowSample root = new WorkflowSample(record, this.conn, prefetch);
+        ProjectSampleTree rootTree = new ProjectSampleTree(root, user, prefetch);
         rootTree.addSample(root);
 
         // Evaluate overall QcStatus of ProjectSample from all descending SeqAnalysisSampleQC entries b/c the rule is
         // simple - if there is an IGO-Complete SeqAnalysisSampleQC record, the projectSample is IgoComplete
-        try {
-            List<DataRecord> sampleQcRecords = record.getDescendantsOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
-            if (sampleQcRecords.size() > 0) {
-                String qcStatus = getDataQcStatus(sampleQcRecords, this.user);
-                rootTree.setDataQcStatus(qcStatus);
-            }
-        } catch (RemoteException e) {
-            log.error(String.format("Unable to query descending SeqAnalysisSampleQC DataRecords from Sample DataRecord: %d",
-                    record.getRecordId()));
+        List<DataRecord> sampleQcRecords = prefetch.getQcDescendants(record);
+        if (sampleQcRecords.size() > 0) {
+            String qcStatus = getDataQcStatus(sampleQcRecords, this.user);
+            rootTree.setDataQcStatus(qcStatus);
         }
 
         // Evaluate overall status of sample as complete or not
@@ -369,7 +366,7 @@ public class GetRequestTrackingTask {
         String sampleName = getRecordStringValue(record, Sample.OTHER_SAMPLE_ID, user);
         rootTree.setSampleName(sampleName);
         rootTree.setInvestigatorSampleId(investigatorSampleName);
-        DataRecord[] sampleCmoInfochildren = getChildrenofDataRecord(record, CmoSampleInfo.DATA_TYPE_NAME, user);
+        DataRecord[] sampleCmoInfochildren = prefetch.getCmoInfoChildren(record);
         if(sampleCmoInfochildren.length == 1){
             DataRecord sampleCmoInfoChild = sampleCmoInfochildren[0];
             String correctedCmoId = getRecordStringValue(sampleCmoInfoChild, CmoSampleInfo.USER_SAMPLE_ID, user);
@@ -14,14 +14,18 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.util.IGOTools;
 import org.mskcc.limsrest.util.Utils;
-import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestTemplate;
 
 import java.rmi.RemoteException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Traverse the LIMS & ngs_stats database to find all sample level metadata required for CMO pipelines.<BR>
@@ -32,17 +36,21 @@ public class GetSampleManifestTask {
     private static Log log = LogFactory.getLog(GetSampleManifestTask.class);
 
     private ConnectionLIMS conn;
+    private FastqIndex fastqIndex;
 
     protected String [] igoIds;
 
-    public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn) {
+    public GetSampleManifestTask(String [] igoIds, ConnectionLIMS conn, FastqIndex fastqIndex) {
         this.igoIds = igoIds;
         this.conn = conn;
+        this.fastqIndex = fastqIndex;
     }
 
     public static class SampleManifestResult {
         public List<SampleManifest> smList;
         public String error = null;
+        // IGO IDs whose manifest could not be built mapped to the cause, these samples are left out of smList
+        public Map<String, String> sampleErrors = new LinkedHashMap<>();
 
         public SampleManifestResult(List<SampleManifest> smList, String error) {
             this.smList = smList;
@@ -66,24 +74,89 @@ public class GetSampleManifestTask {
         return false;
     }
 
+    /**
+     * Builds the manifest of each sample in parallel, each sample on its own LIMS connection so the number of samples
+     * processed at once is limited by the LIMS connections available. Manifests are returned in the order of the input
+     * IGO IDs, a sample that fails does not fail the others and is only reported in
+     * {@link SampleManifestResult#sampleErrors}.
+     */
     public SampleManifestResult execute() {
         long startTime = System.currentTimeMillis();
 
-        VeloxConnection vConn = conn.getConnection();
-        User user = vConn.getUser();
-        DataRecordManager dataRecordManager = vConn.getDataRecordManager();
-
+        ExecutorService executor = newManifestExecutor();
         try {
-            List<SampleManifest> smList = new ArrayList<>();
+            List<Future<SampleManifest>> futures = new ArrayList<>();
             for (String igoId : igoIds) {
-                smList.add(getSampleManifest(igoId, user, dataRecordManager));
+                futures.add(executor.submit(() -> getSampleManifest(igoId)));
+            }
+
+            SampleManifestResult result = new SampleManifestResult(new ArrayList<>(), null);
+            for (int i = 0; i < igoIds.length; i++) {
+                try {
+                    result.smList.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    result.sampleErrors.put(igoIds[i], sampleError(igoIds[i], e));
+                }
             }
             log.info("Manifest generation time(ms):" + (System.currentTimeMillis() - startTime));
-            return new SampleManifestResult(smList, null);
-        } catch (Exception e) {
-            e.printStackTrace();
-            log.error(e.getMessage());
+            return result;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while generating Sample Manifests: " + e.getMessage());
             return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Builds the manifests like {@link #execute()} but hands each one to @onManifest as soon as it is ready instead of
+     * collecting them, so manifests arrive in completion order. Both callbacks are called from the calling thread.
+     *
+     * @param onManifest receives each manifest that was built
+     * @param onError    receives the IGO ID and cause of each sample whose manifest failed
+     */
+    public void stream(Consumer<SampleManifest> onManifest, BiConsumer<String, String> onError)
+            throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+
+        ExecutorService executor = newManifestExecutor();
+        try {
+            CompletionService<SampleManifest> completionService = new ExecutorCompletionService<>(executor);
+            Map<Future<SampleManifest>, String> igoIdByFuture = new HashMap<>();
+            for (String igoId : igoIds) {
+                igoIdByFuture.put(completionService.submit(() -> getSampleManifest(igoId)), igoId);
+            }
+
+            for (int i = 0; i < igoIds.length; i++) {
+                Future<SampleManifest> done = completionService.take();
+                String igoId = igoIdByFuture.remove(done);
+                try {
+                    onManifest.accept(done.get());
+                } catch (ExecutionException e) {
+                    onError.accept(igoId, sampleError(igoId, e));
+                }
+            }
+            log.info("Streamed manifest generation time(ms):" + (System.currentTimeMillis() - startTime));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private ExecutorService newManifestExecutor() {
+        int parallelism = Math.max(1, Math.min(igoIds.length, conn.getSize()));
+        return Executors.newFixedThreadPool(parallelism);
+    }
+
+    private static String sampleError(String igoId, ExecutionException e) {
+        log.error("Sample Manifest generation failed for: " + igoId, e.getCause());
+        return String.valueOf(e.getCause().getMessage()).replaceAll("\\s+", " ");
+    }
+
+    private SampleManifest getSampleManifest(String igoId) throws Exception {
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            VeloxConnection vConn = lease.getConnection();
+            return getSampleManifest(igoId, vConn.getUser(), vConn.getDataRecordManager());
         }
     }
 
@@ -281,10 +354,10 @@ public class GetSampleManifestTask {
                             runsMap.get(flowCellId).addLane(laneNum);
                         } else { // lookup fastq paths for this run, currently making extra queries for 06260_N_9 KIM & others
                             //06938_J_86 was demuxed by lane on 2017-06-16 16:49:08
-                            List<String> fastqs = FastQPathFinder.search(runId, origSampleName, sampleManifest.getIgoId(), true, runPassedQC);
+                            List<String> fastqs = FastQPathFinder.search(fastqIndex, runId, origSampleName, sampleManifest.getIgoId(), true, runPassedQC);
                             if (fastqs == null && aliquot.getLongVal("DateCreated", user) < 1455132132000L) { // try search again with pre-Jan 2016 naming convention, 06184_4
                                 log.info("Searching fastq database again for pre-Jan. 2016 sample.");
-                                fastqs = FastQPathFinder.search(runId, origSampleName, null, false, runPassedQC);
+                                fastqs = FastQPathFinder.search(fastqIndex, runId, origSampleName, null, false, runPassedQC);
                             }
 
                             if (fastqs != null) {
@@ -378,7 +451,7 @@ public class GetSampleManifestTask {
         if (runPassedQC.contains("JAX_0004_BH5GJYBBXX")) {
             String runID = "JAX_0004";
             SampleManifest.Run r = new SampleManifest.Run("", runID, "H5GJYBBXX", "", "2015-11-30");
-            r.fastqs = FastQPathFinder.search(runID, origSampleName, sampleManifest.getIgoId(), false, runPassedQC);
+            r.fastqs = FastQPathFinder.search(fastqIndex, runID, origSampleName, sampleManifest.getIgoId(), false, runPassedQC);
             if (r.fastqs != null) {
                 library.runs.add(r);
             }
@@ -446,7 +519,7 @@ public class GetSampleManifestTask {
     }
 
     protected SampleManifest fastqsOnlyManifest(SampleManifest sampleManifest, Set<String> runFailedQC) {
-        List<SampleManifest.Run> runs = FastQPathFinder.searchForFastqs(sampleManifest.getIgoId(), runFailedQC);
+        List<SampleManifest.Run> runs = FastQPathFinder.searchForFastqs(fastqIndex, sampleManifest.getIgoId(), runFailedQC);
 
         SampleManifest.Library library = new SampleManifest.Library();
         library.runs = runs;
@@ -572,17 +645,11 @@ public class GetSampleManifestTask {
      */
     public static class FastQPathFinder {
 
-        public static List<SampleManifest.Run> searchForFastqs(String igoId, Set<String> runFailedQC) {
-            String url = "http://delphi.mskcc.org:8080/ngs-stats/rundone/fastqsbyigoid/" + igoId;
+        public static List<SampleManifest.Run> searchForFastqs(FastqIndex fastqIndex, String igoId,
+                                                               Set<String> runFailedQC) {
             log.info("Finding fastqs for igoID: " + igoId);
             try {
-                RestTemplate restTemplate = new RestTemplate();
-                ResponseEntity<List<ArchivedFastq>> response = restTemplate.exchange(
-                        url,
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<ArchivedFastq>>() {});
-                List<ArchivedFastq> fastqList = response.getBody();
+                List<ArchivedFastq> fastqList = fastqIndex.getFastqsByIgoId(igoId);
                 if (fastqList == null) {
                     log.info("NO fastqs found for Igo ID: " + igoId);
                     return null;
@@ -623,8 +690,7 @@ public class GetSampleManifestTask {
             }
         }
 
-        // TODO url to properties & make interface for FastQPathFinder
-        public static List<String> search(String run,
+        public static List<String> search(FastqIndex fastqIndex, String run,
                                           String sampleName, String igoId,
                                           boolean returnOnlyTwo,
                                           Set<String> runPassedQC) {
@@ -634,20 +700,11 @@ public class GetSampleManifestTask {
             else
                 sample_IGO_igoid = sampleName + "_IGO_" + IGOTools.baseIgoSampleId(igoId);
 
-            String url = "http://delphi.mskcc.org:8080/ngs-stats/rundone/search/most/recent/fastqpath/" + run + "/" + sample_IGO_igoid;
-            log.info("Finding fastqs in fastq DB for: " + url);
-
             try {
                 // some fingerprinting samples like 08390_D_73 excluded here by searching for fastqs and failing to
                 // find any
 
-                RestTemplate restTemplate = new RestTemplate();
-                ResponseEntity<List<ArchivedFastq>> response = restTemplate.exchange(
-                        url,
-                        HttpMethod.GET,
-                        null,
-                        new ParameterizedTypeReference<List<ArchivedFastq>>() {});
-                List<ArchivedFastq> fastqList = response.getBody();
+                List<ArchivedFastq> fastqList = fastqIndex.getMostRecentFastqs(run, sample_IGO_igoid);
                 if (fastqList == null) {
                     log.info("NO fastqs found for run: " + run);
                     return null;
@@ -11,6 +11,8 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.controller.GetSampleMetadata;
 import org.mskcc.limsrest.service.samplemetadata.SampleMetadata;
+import org.mskcc.limsrest.util.OncotreeTumorTypeCache;
+import org.mskcc.limsrest.util.RecordSnapshot;
 
 import java.util.*;
 import static org.mskcc.limsrest.util.Utils.*;
@@ -21,13 +23,15 @@ public class GetSampleMetadataTask {
     private String timestamp;
     private String projectId;
     private ConnectionLIMS conn;
+    private OncotreeTumorTypeCache oncotree;
     private User user;
     private String baitSet = "";
 
-    public GetSampleMetadataTask(String timestamp, String projectId, ConnectionLIMS conn) {
+    public GetSampleMetadataTask(String timestamp, String projectId, ConnectionLIMS conn, OncotreeTumorTypeCache oncotree) {
         this.timestamp = timestamp;
         this.projectId = projectId;
         this.conn = conn;
+        this.oncotree = oncotree;
     }
 
     public List<SampleMetadata> execute() {
@@ -52,44 +56,45 @@ public class GetSampleMetadataTask {
                     //requests = dataRecordManager.queryDataRecords("Request", "RequestId= '06345_B' AND IsCmoRequest = 1", user);
                 }
                 log.info("Total Requests: " + requests.size());
-                for (DataRecord req : requests) {
-                    String requestId = req.getStringVal("RequestId", user);
+                for (RecordSnapshot req : RecordSnapshot.of(requests, dataRecordManager, user)) {
+                    String requestId = req.getStringVal("RequestId");
                     log.info("Request ID: " + requestId);
-                    String labHead = (String) getValueFromDataRecord(req, "LaboratoryHead", "String", user);
-                    String recipe = (String) getValueFromDataRecord(req, "RequestName", "String", user);
-                    DataRecord[] samples = req.getChildrenOfType("Sample", user);
+                    String labHead = (String) req.getValue("LaboratoryHead", "String");
+                    String recipe = (String) req.getValue("RequestName", "String");
+                    DataRecord[] samples = req.getRecord().getChildrenOfType("Sample", user);
                     log.info(String.format("Number of samples  in request %s: %d", requestId, samples.length));
-                    for (DataRecord sample : samples) {
+                    for (RecordSnapshot sample : RecordSnapshot.of(Arrays.asList(samples), dataRecordManager, user)) {
                         baitSet = ""; // set baitset to empty before the search for each sample begins.
-                        DataRecord cmoInfoRec = getRelatedCmoInfoRec(sample);
+                        String igoId = sample.getStringVal("SampleId");
+                        DataRecord cmoInfoRec = getRelatedCmoInfoRec(sample.getRecord(), igoId);
+                        RecordSnapshot cmoInfo = cmoInfoRec == null ? null : RecordSnapshot.of(cmoInfoRec, user);
                         String mrn = getRandomValue();
-                        String cmoPatientId = (String) getFieldValueForSample(sample, cmoInfoRec, "CmoPatientId", "PatientId", "String");
-                        String cmoSampleId = (String) getFieldValueForSample(sample, cmoInfoRec, "CorrectedCMOID", "OtherSampleId", "String");
+                        String cmoPatientId = (String) getFieldValueForSample(sample, cmoInfo, "CmoPatientId", "PatientId", "String");
+                        String cmoSampleId = (String) getFieldValueForSample(sample, cmoInfo, "CorrectedCMOID", "OtherSampleId", "String");
                         log.info("CMO Sample ID: " + cmoSampleId);
-                        String igoId = sample.getStringVal("SampleId", user);
-                        String investigatorSampleId = (String) getFieldValueForSample(sample, cmoInfoRec, "UserSampleID", "UserSampleID", "String");
-                        String species = (String) getFieldValueForSample(sample, cmoInfoRec, "Species", "Species", "String");
-                        String sex = (String) getFieldValueForSample(sample, cmoInfoRec, "Gender", "Gender", "String");
-                        String tumorOrNormal = (String) getFieldValueForSample(sample, cmoInfoRec, "TumorOrNormal", "TumorOrNormal", "String");
-                        String sampleType = (String) getValueFromDataRecord(sample, "ExemplarSampleType", "String", user);
-                        String preservation = (String) getFieldValueForSample(sample, cmoInfoRec, "Preservation", "Preservation", "String");
-                        String tumorType = (String) getFieldValueForSample(sample, cmoInfoRec, "TumorType", "TumorType", "String");
+                        String investigatorSampleId = (String) getFieldValueForSample(sample, cmoInfo, "UserSampleID", "UserSampleID", "String");
+                        String species = (String) getFieldValueForSample(sample, cmoInfo, "Species", "Species", "String");
+                        String sex = (String) getFieldValueForSample(sample, cmoInfo, "Gender", "Gender", "String");
+                        String tumorOrNormal = (String) getFieldValueForSample(sample, cmoInfo, "TumorOrNormal", "TumorOrNormal", "String");
+                        String sampleType = (String) sample.getValue("ExemplarSampleType", "String");
+                        String preservation = (String) getFieldValueForSample(sample, cmoInfo, "Preservation", "Preservation", "String");
+                        String tumorType = (String) getFieldValueForSample(sample, cmoInfo, "TumorType", "TumorType", "String");
                         String parentTumorType = "";
                         if (!StringUtils.isBlank(tumorType) && !StringUtils.isBlank(tumorOrNormal) && tumorOrNormal.toLowerCase().equals("tumor")) {
-                            parentTumorType = getOncotreeTumorType(tumorType);
+                            parentTumorType = oncotree.resolveMainType(tumorType);
                         }
                         log.info("parent tumor type: " + parentTumorType);
-                        String specimenType = (String) getFieldValueForSample(sample, cmoInfoRec, "SpecimenType", "SpecimenType", "String");
-                        String sampleOrigin = (String) getFieldValueForSample(sample, cmoInfoRec, "SampleOrigin", "SampleOrigin", "String");
-                        String tissueSource = (String) getFieldValueForSample(sample, cmoInfoRec, "TissueSource", "TissueSource", "String");
-                        String tissueLocation = (String) getFieldValueForSample(sample, cmoInfoRec, "TissueLocation", "TissueLocation", "String");
-                        List<DataRecord> seqQcRecords = getChildDataRecordsOfType(sample, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
-                        String baitset = getBaitSet(sample, seqQcRecords, user);
+                        String specimenType = (String) getFieldValueForSample(sample, cmoInfo, "SpecimenType", "SpecimenType", "String");
+                        String sampleOrigin = (String) getFieldValueForSample(sample, cmoInfo, "SampleOrigin", "SampleOrigin", "String");
+                        String tissueSource = (String) getFieldValueForSample(sample, cmoInfo, "TissueSource", "TissueSource", "String");
+                        String tissueLocation = (String) getFieldValueForSample(sample, cmoInfo, "TissueLocation", "TissueLocation", "String");
+                        List<DataRecord> seqQcRecords = getChildDataRecordsOfType(sample.getRecord(), SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
+                        String baitset = getBaitSet(sample.getRecord(), seqQcRecords, user);
                         log.info("baitset: " + baitset);
                         String fastqPath = "";
-                        String ancestorSample = getOriginSampleId(sample, user);
+                        String ancestorSample = getOriginSampleId(sample.getRecord(), user);
                         boolean doNotUse = false;
-                        String sampleStatus = getMostAdvancedLimsStage(sample, requestId, this.conn);
+                        String sampleStatus = getMostAdvancedLimsStage(sample.getRecord(), requestId, this.conn);
                         SampleMetadata metadata = new SampleMetadata(mrn, cmoPatientId, cmoSampleId, igoId, investigatorSampleId, species,
                                 sex, tumorOrNormal, sampleType, preservation, tumorType, parentTumorType,
                                 specimenType, sampleOrigin, tissueSource, tissueLocation, recipe,
@@ -122,31 +127,27 @@ public class GetSampleMetadataTask {
 
     /**
      * Method to get related SampleCMOInfoRecords for sample.
+     * <BR>
+     * Not answered by {@link SampleLineage}: the samples here are the children of the request, so their lineage ends
+     * at the sample itself, while the SampleCMOInfoRecords may hang off any Sample parent above it, not only the
+     * first parent the lineage follows. Each sample on the way is read once.
      *
      * @param sample
+     * @param sampleId
      * @return
      */
-    private DataRecord getRelatedCmoInfoRec(DataRecord sample) {
-        String sampleId = "";
+    private DataRecord getRelatedCmoInfoRec(DataRecord sample, String sampleId) {
         try {
-            sampleId = sample.getStringVal("SampleId", user);
-            if (sample.getChildrenOfType("SampleCMOInfoRecords", user).length > 0) {
-                System.out.println("ended get cmo info rec");
-                return sample.getChildrenOfType("SampleCMOInfoRecords", user)[0];
-            }
             Stack<DataRecord> sampleStack = new Stack<>();
-            if (sample.getParentsOfType("Sample", user).size() > 0) {
-                sampleStack.addAll((sample.getParentsOfType("Sample", user)));
-            }
+            sampleStack.push(sample);
             do {
                 DataRecord startSample = sampleStack.pop();
-                if (startSample.getChildrenOfType("SampleCMOInfoRecords", user).length > 0) {
+                DataRecord[] cmoInfoRecords = startSample.getChildrenOfType("SampleCMOInfoRecords", user);
+                if (cmoInfoRecords.length > 0) {
                     System.out.println("ended get cmo info rec");
-                    return startSample.getChildrenOfType("SampleCMOInfoRecords", user)[0];
-                }
-                if (startSample.getParentsOfType("Sample", user).size() > 0) {
-                    sampleStack.addAll(startSample.getParentsOfType("Sample", user));
+                    return cmoInfoRecords[0];
                 }
+                sampleStack.addAll(startSample.getParentsOfType("Sample", user));
             } while (!sampleStack.isEmpty());
         } catch (Exception e) {
             log.error(String.format("Error occured while finding related SampleCMOInfoRecords for Sample %s", sampleId));
@@ -165,22 +166,15 @@ public class GetSampleMetadataTask {
      * @param fieldType
      * @return
      */
-    private Object getFieldValueForSample(DataRecord sample, DataRecord cmoInfoRecord, String cmoInfoFieldName, String sampleFieldName, String fieldType) {
-        String sampleId = "";
-        try {
-            sampleId = sample.getStringVal("SampleId", user);
-            Object fieldValue;
-            if (cmoInfoRecord != null) {
-                fieldValue = getValueFromDataRecord(cmoInfoRecord, cmoInfoFieldName, fieldType, user);
-                log.info(String.format("%s : %s",cmoInfoFieldName, fieldValue.toString()));
-                if (fieldValue != "") {
-                    return fieldValue;
-                }
+    private Object getFieldValueForSample(RecordSnapshot sample, RecordSnapshot cmoInfoRecord, String cmoInfoFieldName, String sampleFieldName, String fieldType) {
+        Object fieldValue;
+        if (cmoInfoRecord != null) {
+            fieldValue = cmoInfoRecord.getValue(cmoInfoFieldName, fieldType);
+            log.info(String.format("%s : %s",cmoInfoFieldName, fieldValue));
+            if (fieldValue != "") {
+                return fieldValue;
             }
-            return getValueFromDataRecord(sample, sampleFieldName, fieldType, user);
-        } catch (Exception e) {
-            log.error(String.format("Error getting '%s' value for sample '%s' from related samples or SampleCMOInfoRecords", sampleFieldName, sampleId));
         }
-        return "";
+        return sample.getValue(sampleFieldName, fieldType);
     }
 }
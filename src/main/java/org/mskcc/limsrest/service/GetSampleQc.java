@@ -7,6 +7,7 @@ import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 import org.mskcc.limsrest.util.Messages;
 import org.springframework.beans.factory.annotation.Value;
@@ -14,7 +15,6 @@ import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -28,13 +28,17 @@ public class GetSampleQc {
     private static Log log = LogFactory.getLog(GetSampleQc.class);
     protected String[] projectList;
     private ConnectionLIMS conn;
+    private HttpClientPool httpClient;
+    private SampleLineage sampleLineage;
 
     @Value("${delphiRestUrl}")
     private String delphiRestUrl;
 
-    public GetSampleQc(String[] project, ConnectionLIMS conn) {
+    public GetSampleQc(String[] project, ConnectionLIMS conn, HttpClientPool httpClient, SampleLineage sampleLineage) {
         this.projectList = project;
         this.conn = conn;
+        this.httpClient = httpClient;
+        this.sampleLineage = sampleLineage;
     }
 
     @PreAuthorize("hasRole('READ')")
@@ -71,10 +75,19 @@ public class GetSampleQc {
                 if (qcRecords.size() == 0){
                     qcRecords = r.getDescendantsOfType("SeqAnalysisSampleQC", user);
                 }
-                for (DataRecord qc : qcRecords) {
+                // samples of all QC records and their origin samples are found together
+                List<List<DataRecord>> qcParentSamples = qcRecords.isEmpty() ? new ArrayList<>() : dataRecordManager.getParentsOfType(qcRecords, "Sample", user);
+                List<DataRecord> qcSamples = new ArrayList<>();
+                for (List<DataRecord> parents : qcParentSamples) {
+                    if (!parents.isEmpty())
+                        qcSamples.add(parents.get(0));
+                }
+                Map<Long, SampleLineage.Lineage> lineages = sampleLineage.resolve(qcSamples, dataRecordManager, user);
+                for (int q = 0; q < qcRecords.size(); q++) {
+                    DataRecord qc = qcRecords.get(q);
                     log.info("Getting QC Site records for sample.");
                     SampleSummary ss = new SampleSummary();
-                    DataRecord parentSample = qc.getParentsOfType("Sample", user).get(0);
+                    DataRecord parentSample = qcParentSamples.get(q).get(0);
                     SampleQcSummary qcSummary = annotateQcSummary(qc, user);
                     if (parentSample != null) {
                         annotateSampleSummary(ss, parentSample, user);
@@ -84,17 +97,7 @@ public class GetSampleQc {
                                 log.info(parentSample.getStringVal("AltId", user));
                                 log.info(alt2base.get(parentSample.getStringVal("AltId", user)));
                             } else{
-                                DataRecord searchSample = parentSample;
-                                boolean canSearch = true;
-                                while (searchSample.getParentsOfType("Request", user).size() == 0 && canSearch){
-                                    List<DataRecord> searchParents = searchSample.getParentsOfType("Sample", user);
-                                    if(searchParents.size() == 0){
-                                        canSearch = false;
-                                    } else{
-                                        searchSample = searchParents.get(0);
-                                    }
-                                }
-                                ss.addBaseId(searchSample.getStringVal("SampleId", user));
+                                ss.addBaseId(lineages.get(parentSample.getRecordId()).getOriginSampleId());
                             }
                         } catch (Exception e){
                             log.info("Problem trying to access base id mapping");
@@ -223,9 +226,8 @@ public class GetSampleQc {
         for (String run : runSet) {
             // TODO planned refactor of this endpoint code along with LimsHelperScripts.CreateSampleQc
             String url = delphiRestUrl + "ngs-stats/picardstats-controls/run/" + run;
-            RestTemplate restTemplate = new RestTemplate();
             ResponseEntity<List<QCSiteStats>> statsResponse =
-                    restTemplate.exchange(url,
+                    httpClient.getRestTemplate().exchange(url,
                             HttpMethod.GET, null, new ParameterizedTypeReference<List<QCSiteStats>>() {
                             });
             List<QCSiteStats> stats = statsResponse.getBody();
@@ -9,12 +9,11 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.stereotype.Service;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
-@Service @Deprecated
+@Deprecated
 public class GetSetOrReqPairs extends LimsTask
 {
   private static Log log = LogFactory.getLog(GetSetOrReqPairs.class);
@@ -16,21 +16,19 @@ import org.apache.commons.logging.LogFactory;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.service.sampletracker.WESSampleData;
+import org.mskcc.limsrest.util.ConsentStatusCache;
+import org.mskcc.limsrest.util.OncotreeTumorTypeCache;
+import org.mskcc.limsrest.util.RecordSnapshot;
 
-import javax.net.ssl.*;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLConnection;
 import java.rmi.RemoteException;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.X509Certificate;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.apache.commons.lang3.exception.ExceptionUtils.getStackTrace;
 import static org.mskcc.limsrest.util.Utils.*;
@@ -48,19 +46,40 @@ public class GetWESSampleDataTask {
     private final List<String> MISEQ_MACHINE_NAMES = Arrays.asList("AYYAN", "JOHNSAWYERS", "TOMS", "VIC");
     private final List<String> NOVASEQ_MACHINE_NAMES = Arrays.asList("MICHELLE", "DIANA", "A00227", "A00333");
     private final List<String> NEXTSEQ_MACHINE_NAMES = Collections.singletonList("SCOTT");
+    // UserSampleIDs per query of SampleCMOInfoRecords
+    static final int USER_SAMPLE_ID_CHUNK_SIZE = 500;
 
     private Log log = LogFactory.getLog(GetWESSampleDataTask.class);
     private String timestamp;
     private ConnectionLIMS conn;
-    private User user;
+    private HttpClientPool httpClient;
+    private OncotreeTumorTypeCache oncotree;
+    private ConsentStatusCache consentStatus;
+    private SampleLineage sampleLineage;
+    User user;
     DataRecordManager dataRecordManager;
+    // Request RecordId -> Request, requests shared by many samples are read once per task
+    private final Map<Long, RecordSnapshot> requestsByRecordId = new HashMap<>();
+    // DMP Sample ID -> CVR metadata, fetched in parallel before the tracker records are processed
+    private final Map<String, JSONObject> cvrDataBySampleId = new ConcurrentHashMap<>();
+    private int cvrFetchThreads = 4;
 
     private List<String> VALID_RECIPES;
     private List<String> VALID_REQUEST_TYPES;
 
-    public GetWESSampleDataTask(String timestamp, ConnectionLIMS conn) {
+    public GetWESSampleDataTask(String timestamp, ConnectionLIMS conn, HttpClientPool httpClient,
+                                OncotreeTumorTypeCache oncotree, ConsentStatusCache consentStatus,
+                                SampleLineage sampleLineage) {
         this.timestamp = timestamp;
         this.conn = conn;
+        this.httpClient = httpClient;
+        this.oncotree = oncotree;
+        this.consentStatus = consentStatus;
+        this.sampleLineage = sampleLineage;
+    }
+
+    public void setCvrFetchThreads(int cvrFetchThreads) {
+        this.cvrFetchThreads = cvrFetchThreads;
     }
 
     public List<WESSampleData> execute() {
@@ -85,81 +104,93 @@ public class GetWESSampleDataTask {
                 log.error(e.getMessage(), e);
                 return null;
             }
-            JSONObject consentAList = getConsentStatusDataValues("parta");
-            JSONObject consentCList = getConsentStatusDataValues("partc");
+            Set<String> consentAList = getConsentStatusDataValues("parta");
+            Set<String> consentCList = getConsentStatusDataValues("partc");
             if (!dmpTrackerRecords.isEmpty()) {
                 int totalProcessed = 0;
-                for (DataRecord dmpTrackRec : dmpTrackerRecords) {
-                    List<DataRecord> sampleCmoInfoRecs = new ArrayList<>();
-                    if (dmpTrackRec.getValue("i_StudySampleIdentifierInvesti", user) != null) {
-                        sampleCmoInfoRecs = dataRecordManager.queryDataRecords("SampleCMOInfoRecords", "UserSampleID = '" + dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti", user) + "'", user);
-                        log.info("sample cmo info query end");
+                // The records of all trackers are read together, one level at a time: tracker fields, CMO info records,
+                // their Samples, the Requests and sample fields, then the CVR metadata. Fields of each level are read
+                // with one call.
+                List<RecordSnapshot> dmpTrackers = RecordSnapshot.of(dmpTrackerRecords, dataRecordManager, user);
+                Map<String, List<RecordSnapshot>> cmoInfoByUserSampleId = getCmoInfoRecords(dmpTrackers);
+                Map<Long, List<DataRecord>> samplesByCmoInfoRec = getSamplesSharingCmoInfoRecs(cmoInfoByUserSampleId.values());
+                Map<Long, DataRecord> allSamples = new LinkedHashMap<>();
+                for (List<DataRecord> samples : samplesByCmoInfoRec.values()) {
+                    samples.forEach(sample -> allSamples.putIfAbsent(sample.getRecordId(), sample));
+                }
+                Map<Long, RecordSnapshot> requestsBySample = getRelatedRequests(new ArrayList<>(allSamples.values()));
+                Map<Long, RecordSnapshot> samplesByRecordId = new HashMap<>();
+                for (RecordSnapshot sample : RecordSnapshot.of(new ArrayList<>(allSamples.values()), dataRecordManager, user)) {
+                    samplesByRecordId.put(sample.getRecordId(), sample);
+                }
+                fetchCvrData(dmpTrackers);
+                for (RecordSnapshot dmpTrackRec : dmpTrackers) {
+                    List<RecordSnapshot> sampleCmoInfoRecs = new ArrayList<>();
+                    if (dmpTrackRec.getValue("i_StudySampleIdentifierInvesti") != null) {
+                        sampleCmoInfoRecs = cmoInfoByUserSampleId.getOrDefault(dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti"), sampleCmoInfoRecs);
                     }
                     if (sampleCmoInfoRecs.size() > 0) {
-                        for (DataRecord cmoInfoRec : sampleCmoInfoRecs) {
-                            List<DataRecord> parentSamps = cmoInfoRec.getParentsOfType("Sample", user);
-                            if (parentSamps.isEmpty()){
-                                log.info(String.format("%s record with recordid %d not linked to any parent Sample.", SampleCMOInfoRecordsModel.DATA_TYPE_NAME, cmoInfoRec.getRecordId()));
-                            }
-                            List<DataRecord> allSamplesSharingCmoInfoRec = !parentSamps.isEmpty() ? getChildSamplesWithRequestAsParent(parentSamps.get(0)): new ArrayList<>();
+                        for (RecordSnapshot cmoInfoRec : sampleCmoInfoRecs) {
+                            List<DataRecord> allSamplesSharingCmoInfoRec = samplesByCmoInfoRec.get(cmoInfoRec.getRecordId());
                             log.info("Total Wes Samples for shared CmoInfo Rec: " + allSamplesSharingCmoInfoRec.size());
                             if (allSamplesSharingCmoInfoRec.size()>0){
-                                for (DataRecord sample: allSamplesSharingCmoInfoRec){
-                                    log.info("processing sample: " + sample.getStringVal("SampleId", user)+ ", recipe: "+ sample.getStringVal("Recipe", user));
-                                    DataRecord request = getRelatedRequest(sample);
+                                for (DataRecord sampleRecord : allSamplesSharingCmoInfoRec) {
+                                    RecordSnapshot sample = samplesByRecordId.get(sampleRecord.getRecordId());
+                                    log.info("processing sample: " + sample.getStringVal("SampleId")+ ", recipe: "+ sample.getStringVal("Recipe"));
+                                    RecordSnapshot request = requestsBySample.getOrDefault(sample.getRecordId(), RecordSnapshot.EMPTY);
                                     if (isValidRecipeToProcess(sample)) {
-                                        String sampleId = sample.getStringVal("SampleId", user);
+                                        String sampleId = sample.getStringVal("SampleId");
                                         log.info("DMP Record with related IGO Samples.");
                                         log.info("Sample ID: " + sampleId);
-                                        String userSampleId = dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti", user);
+                                        String userSampleId = dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti");
                                         log.info("User Sample ID:" + userSampleId);
-                                        String userSampleidHistorical = (String) getValueFromDataRecord(dmpTrackRec, "InvestigatorSampleIdHistorical", "String", user);
-                                        String altId = (String) getValueFromDataRecord(sample, "AltId", "String", user);
+                                        String userSampleidHistorical = (String) dmpTrackRec.getValue("InvestigatorSampleIdHistorical", "String");
+                                        String altId = (String) sample.getValue("AltId", "String");
                                         log.info("AltId: " + altId);
-                                        String duplicateSample = (String) getValueFromDataRecord(dmpTrackRec, "DuplicateSample", "String", user);
-                                        String wesSampleid = (String) getValueFromDataRecord(dmpTrackRec, "WesId", "String", user);
-                                        String cmoSampleId = cmoInfoRec.getStringVal("CorrectedCMOID", user);
-                                        String cmoPatientId = cmoInfoRec.getStringVal("CmoPatientId", user);
-                                        String dmpSampleId = dmpTrackRec.getStringVal("i_DMPSampleID", user);
+                                        String duplicateSample = (String) dmpTrackRec.getValue("DuplicateSample", "String");
+                                        String wesSampleid = (String) dmpTrackRec.getValue("WesId", "String");
+                                        String cmoSampleId = cmoInfoRec.getStringVal("CorrectedCMOID");
+                                        String cmoPatientId = cmoInfoRec.getStringVal("CmoPatientId");
+                                        String dmpSampleId = dmpTrackRec.getStringVal("i_DMPSampleID");
                                         JSONObject cvrData = getCvrData(dmpSampleId);
                                         String dmpPatientId = getCvrDataValue(cvrData, "dmp_patient_lbl");
                                         String mrn = getCvrDataValue(cvrData, "mrn");
                                         String sex = getCvrDataValue(cvrData, "gender");
                                         String sampleClass = getCvrDataValue(cvrData, "sample_type");
                                         String tumorType = getCvrDataValue(cvrData, "tumor_type");
-                                        String parentalTumorType = getOncotreeTumorType(tumorType);
+                                        String parentalTumorType = oncotree.resolveMainType(tumorType);
                                         String tissueSite = getCvrDataValue(cvrData, "primary_site");
-                                        String sourceDnaType = (String) getValueFromDataRecord(dmpTrackRec, "i_SpecimenType", "String", user);
+                                        String sourceDnaType = (String) dmpTrackRec.getValue("i_SpecimenType", "String");
                                         String molAccessionNum = getCvrDataValue(cvrData, "molecular_accession_num");
-                                        String dateDmpRequest = (String) getValueFromDataRecord(dmpTrackRec, "i_DateSubmittedtoDMP", "Date", user);
-                                        String dmpRequestId = dmpTrackRec.getStringVal("i_RequestReference", user);
-                                        String igoRequestId = (String) getValueFromDataRecord(request, "RequestId", "String", user);
-                                        String collectionYear = (String) getValueFromDataRecord(cmoInfoRec, "CollectionYear", "String", user);
-                                        String dateIgoReceived = (String) getValueFromDataRecord(request, "ReceivedDate", "Date", user);
-                                        String igoCompleteDate = (String) getValueFromDataRecord(request, "CompletedDate", "Date", user);
-                                        String applicationRequested = (String) getValueFromDataRecord(request, "RequestName", "String", user);
-                                        String sequencerType = getSequencerTypeUsed(sample);
-                                        String projectTitle = (String) getValueFromDataRecord(dmpTrackRec, "i_Studyname", "String", user);
-                                        String labHead = (String) getValueFromDataRecord(request, "LaboratoryHead", "String", user);
-                                        String ccFund = (String) getValueFromDataRecord(dmpTrackRec, "i_FundCostCenter", "String", user);
-                                        String scientificPi = (String)getValueFromDataRecord(dmpTrackRec, "i_PrimaryInvestigator", "String", user);
+                                        String dateDmpRequest = (String) dmpTrackRec.getValue("i_DateSubmittedtoDMP", "Date");
+                                        String dmpRequestId = dmpTrackRec.getStringVal("i_RequestReference");
+                                        String igoRequestId = (String) request.getValue("RequestId", "String");
+                                        String collectionYear = (String) cmoInfoRec.getValue("CollectionYear", "String");
+                                        String dateIgoReceived = (String) request.getValue("ReceivedDate", "Date");
+                                        String igoCompleteDate = (String) request.getValue("CompletedDate", "Date");
+                                        String applicationRequested = (String) request.getValue("RequestName", "String");
+                                        String sequencerType = getSequencerTypeUsed(sample.getRecord());
+                                        String projectTitle = (String) dmpTrackRec.getValue("i_Studyname", "String");
+                                        String labHead = (String) request.getValue("LaboratoryHead", "String");
+                                        String ccFund = (String) dmpTrackRec.getValue("i_FundCostCenter", "String");
+                                        String scientificPi = (String) dmpTrackRec.getValue("i_PrimaryInvestigator", "String");
                                         Boolean consentPartAStatus = getConsentStatus(consentAList, dmpPatientId);
                                         Boolean consentPartCStatus = getConsentStatus(consentCList, dmpPatientId);
-                                        String sampleStatus = getMostAdvancedLimsStage(sample, igoRequestId, conn);
+                                        String sampleStatus = getMostAdvancedLimsStage(sample.getRecord(), igoRequestId, conn);
                                         log.info("sample status: " + sampleStatus);
-                                        List<DataRecord> seqQcRecords = getChildDataRecordsOfType(sample, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
-                                        String baitsetUsed = getBaitSet(sample, seqQcRecords, user);
+                                        List<DataRecord> seqQcRecords = getChildDataRecordsOfType(sample.getRecord(), SeqAnalysisSampleQCModel.DATA_TYPE_NAME, user);
+                                        String baitsetUsed = getBaitSet(sample.getRecord(), seqQcRecords, user);
                                         log.info("baitset: " + baitsetUsed);
                                         String accessLevel = "";
                                         String sequencingSite = "";
                                         String piRequestDate = "";
-                                        String tempoPipelineQcStatus = (String) getValueFromDataRecord(dmpTrackRec, "TempoPipelineStatus", "String", user);
+                                        String tempoPipelineQcStatus = (String) dmpTrackRec.getValue("TempoPipelineStatus", "String");
                                         log.info("Tempo Pipeline Status: " + tempoPipelineQcStatus);
-                                        String tempoOutputDeliveryDate =(String) getValueFromDataRecord(dmpTrackRec, "TempoOutputDeliveryDate", "Date", user);
-                                        String dataCustodian = (String) getValueFromDataRecord(dmpTrackRec, "DataCustodian", "String", user);
+                                        String tempoOutputDeliveryDate =(String) dmpTrackRec.getValue("TempoOutputDeliveryDate", "Date");
+                                        String dataCustodian = (String) dmpTrackRec.getValue("DataCustodian", "String");
                                         String tissueType = "";
-                                        String limsSampleRecordId = String.valueOf(sample.getLongVal("RecordId", user));
-                                        String limsTrackerRecordId = String.valueOf(dmpTrackRec.getLongVal("RecordId", user));
+                                        String limsSampleRecordId = String.valueOf(sample.getRecordId());
+                                        String limsTrackerRecordId = String.valueOf(dmpTrackRec.getRecordId());
                                         log.info("Lims Tracker Rec ID: " + limsTrackerRecordId);
                                         resultList.add(new WESSampleData(sampleId, userSampleId, userSampleidHistorical, altId, duplicateSample, wesSampleid,
                                                 cmoSampleId, cmoPatientId, dmpSampleId, dmpPatientId, mrn, sex, sampleClass, tumorType,
@@ -189,14 +220,6 @@ public class GetWESSampleDataTask {
         } catch (RemoteException e) {
             log.info(String.format("RemoteException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
         }
-        catch (NoSuchAlgorithmException e) {
-            log.info(String.format("NoSuchAlgorithmException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
-        } catch (KeyManagementException e) {
-            log.info(String.format("KeyManagementException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
-        }
-        catch (MalformedURLException e) {
-            log.info(String.format("MalformedURLException while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(e)));
-        }
         catch (NotFound notFound) {
             log.info(String.format("NotFound while running GetWESSampleDataTask with timestamp %s:\n%s", timestamp, getStackTrace(notFound)));;
         }
@@ -221,25 +244,23 @@ public class GetWESSampleDataTask {
      * @return WESSampleData
      * @throws NotFound
      * @throws IOException
-     * @throws KeyManagementException
-     * @throws NoSuchAlgorithmException
      */
-    private WESSampleData createNonIgoTrackingRecord(DataRecord dmpTrackRec, JSONObject consentAList, JSONObject consentCList) throws NotFound, IOException, KeyManagementException, NoSuchAlgorithmException {
+    private WESSampleData createNonIgoTrackingRecord(RecordSnapshot dmpTrackRec, Set<String> consentAList, Set<String> consentCList) throws NotFound, IOException {
         String sampleId = "";
         log.info("DMP Record without related IGO Samples.");
         log.info("Sample ID: " + sampleId);
-        String userSampleId = dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti", user);
+        String userSampleId = dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti");
         log.info("User Sample ID:" + userSampleId);
-        String userSampleidHistorical = (String) getValueFromDataRecord(dmpTrackRec, "InvestigatorSampleIdHistorical", "String", user);
+        String userSampleidHistorical = (String) dmpTrackRec.getValue("InvestigatorSampleIdHistorical", "String");
         String altId = "";
         log.info("AltId: " + altId);
-        String duplicateSample = (String) getValueFromDataRecord(dmpTrackRec,"DuplicateSample", "String", user);
-        String wesSampleid = (String) getValueFromDataRecord(dmpTrackRec,"WesId", "String", user);
+        String duplicateSample = (String) dmpTrackRec.getValue("DuplicateSample", "String");
+        String wesSampleid = (String) dmpTrackRec.getValue("WesId", "String");
         String cmoSampleId = "";
         String cmoPatientId = "";
-        String dmpSampleId = (String) getValueFromDataRecord(dmpTrackRec,"i_DMPSampleID", "String", user);;
-        if (dmpTrackRec.getValue("i_DMPSampleID", user) != null) {
-            dmpSampleId = dmpTrackRec.getStringVal("i_DMPSampleID", user);
+        String dmpSampleId = (String) dmpTrackRec.getValue("i_DMPSampleID", "String");;
+        if (dmpTrackRec.getValue("i_DMPSampleID") != null) {
+            dmpSampleId = dmpTrackRec.getStringVal("i_DMPSampleID");
         }
         JSONObject cvrData = getCvrData(dmpSampleId);
         String dmpPatientId = getCvrDataValue(cvrData, "dmp_patient_lbl");
@@ -247,24 +268,24 @@ public class GetWESSampleDataTask {
         String sex = getCvrDataValue(cvrData, "gender");
         String sampleClass = getCvrDataValue(cvrData, "sample_type");
         String tumorType = getCvrDataValue(cvrData, "tumor_type");
-        String parentalTumorType = getOncotreeTumorType(tumorType);
+        String parentalTumorType = oncotree.resolveMainType(tumorType);
         String tissueSite = getCvrDataValue(cvrData, "primary_site");
-        String sourceDnaType = (String) getValueFromDataRecord(dmpTrackRec, "i_SpecimenType", "String", user);
+        String sourceDnaType = (String) dmpTrackRec.getValue("i_SpecimenType", "String");
         String molAccessionNum = getCvrDataValue(cvrData, "molecular_accession_num");
-        String dateDmpRequest = (String) getValueFromDataRecord(dmpTrackRec, "i_DateSubmittedtoDMP", "Date", user);
-        String dmpRequestId = dmpTrackRec.getStringVal("i_RequestReference", user);
+        String dateDmpRequest = (String) dmpTrackRec.getValue("i_DateSubmittedtoDMP", "Date");
+        String dmpRequestId = dmpTrackRec.getStringVal("i_RequestReference");
         String igoRequestId = "";
         String collectionYear = "";
         String dateIgoReceived = "";
         String igoCompleteDate = "";
-        String applicationRequested = (String) getValueFromDataRecord(dmpTrackRec, "i_SampleDownstreamApplication", "String", user);
+        String applicationRequested = (String) dmpTrackRec.getValue("i_SampleDownstreamApplication", "String");
         String baitsetUsed = "";
         log.info("baitset: " + baitsetUsed);
         String sequencerType = "";
-        String projectTitle = (String) getValueFromDataRecord(dmpTrackRec, "i_Studyname", "String", user);
-        String labHead = (String) getValueFromDataRecord(dmpTrackRec, "i_PrimaryInvestigator", "String", user);
-        String ccFund = (String) getValueFromDataRecord(dmpTrackRec, "i_FundCostCenter", "String", user);
-        String scientificPi = (String)getValueFromDataRecord(dmpTrackRec, "i_PrimaryInvestigator", "String", user);
+        String projectTitle = (String) dmpTrackRec.getValue("i_Studyname", "String");
+        String labHead = (String) dmpTrackRec.getValue("i_PrimaryInvestigator", "String");
+        String ccFund = (String) dmpTrackRec.getValue("i_FundCostCenter", "String");
+        String scientificPi = (String) dmpTrackRec.getValue("i_PrimaryInvestigator", "String");
         Boolean consentPartAStatus = getConsentStatus(consentAList, dmpPatientId);
         Boolean consentPartCStatus = getConsentStatus(consentCList, dmpPatientId);
         String sampleStatus = "";
@@ -272,13 +293,13 @@ public class GetWESSampleDataTask {
         String accessLevel = "";
         String sequencingSite = "";
         String piRequestDate = "";
-        String tempoPipelineQcStatus = (String) getValueFromDataRecord(dmpTrackRec, "TempoPipelineStatus", "String", user);
+        String tempoPipelineQcStatus = (String) dmpTrackRec.getValue("TempoPipelineStatus", "String");
         log.info("Tempo Pipeline Status: " + tempoPipelineQcStatus);
-        String tempoOutputDeliveryDate =(String) getValueFromDataRecord(dmpTrackRec, "TempoOutputDeliveryDate", "Date", user);
-        String dataCustodian = (String) getValueFromDataRecord(dmpTrackRec, "DataCustodian", "String", user);
+        String tempoOutputDeliveryDate =(String) dmpTrackRec.getValue("TempoOutputDeliveryDate", "Date");
+        String dataCustodian = (String) dmpTrackRec.getValue("DataCustodian", "String");
         String tissueType = "";
         String limsSampleRecordId = "";
-        String limsTrackerRecordId = String.valueOf(dmpTrackRec.getLongVal("RecordId", user));
+        String limsTrackerRecordId = String.valueOf(dmpTrackRec.getRecordId());
         log.info("Lims Tracker Rec ID: " + limsTrackerRecordId);
         return new WESSampleData(sampleId, userSampleId, userSampleidHistorical, altId, duplicateSample, wesSampleid,
                 cmoSampleId, cmoPatientId, dmpSampleId, dmpPatientId, mrn, sex, sampleClass, tumorType,
@@ -291,59 +312,145 @@ public class GetWESSampleDataTask {
     }
 
     /**
-     * Method to get all the child Samples directly under request as child and having a valid Whole Exome recipe.
-     * @param sample
-     * @return
+     * Get the SampleCMOInfoRecords of all DMP tracker records with one query per chunk of UserSampleIDs.
+     *
+     * @param dmpTrackers
+     * @return Map of UserSampleID to SampleCMOInfoRecords, UserSampleIDs compared ignoring case like the LIMS query
      * @throws NotFound
      * @throws RemoteException
      * @throws IoError
      */
-    private List<DataRecord> getChildSamplesWithRequestAsParent(DataRecord sample) throws NotFound, RemoteException, IoError {
-        List<DataRecord> descendantSamples = sample.getDescendantsOfType("Sample", user);
-        log.info("Total Descendant Samples: " + descendantSamples.size());
-        List<DataRecord> sampleList = new ArrayList<>();
-        if (sample.getParentsOfType("Request", user).size()>0){
-            sampleList.add(sample);
+    Map<String, List<RecordSnapshot>> getCmoInfoRecords(List<RecordSnapshot> dmpTrackers) throws NotFound, RemoteException, IoError {
+        Set<String> userSampleIds = new LinkedHashSet<>();
+        for (RecordSnapshot dmpTrackRec : dmpTrackers) {
+            if (dmpTrackRec.getValue("i_StudySampleIdentifierInvesti") != null) {
+                userSampleIds.add(dmpTrackRec.getStringVal("i_StudySampleIdentifierInvesti"));
+            }
         }
-            if (descendantSamples.size()>0){
-                for (DataRecord rec : descendantSamples){
-                    boolean sampleHasRequestAsParent = rec.getParentsOfType("Request", user).size() > 0;
-                    if (sampleHasRequestAsParent){
-                        sampleList.add(rec);
-                    }
+        Map<String, List<RecordSnapshot>> cmoInfoByUserSampleId = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        List<String> ids = new ArrayList<>(userSampleIds);
+        for (int i = 0; i < ids.size(); i += USER_SAMPLE_ID_CHUNK_SIZE) {
+            StringJoiner inList = new StringJoiner(",");
+            for (String id : ids.subList(i, Math.min(ids.size(), i + USER_SAMPLE_ID_CHUNK_SIZE))) {
+                inList.add("'" + id.replace("'", "''") + "'");
+            }
+            List<DataRecord> cmoInfoRecs = dataRecordManager.queryDataRecords("SampleCMOInfoRecords", "UserSampleID IN (" + inList + ")", user);
+            for (RecordSnapshot cmoInfoRec : RecordSnapshot.of(cmoInfoRecs, dataRecordManager, user)) {
+                String userSampleId = cmoInfoRec.getStringVal("UserSampleID");
+                if (userSampleId != null) {
+                    cmoInfoByUserSampleId.computeIfAbsent(userSampleId, id -> new ArrayList<>()).add(cmoInfoRec);
                 }
             }
-        return sampleList;
+        }
+        log.info(String.format("Found SampleCMOInfoRecords for %d of %d UserSampleIDs", cmoInfoByUserSampleId.size(), ids.size()));
+        return cmoInfoByUserSampleId;
     }
+
     /**
-     * Get Request DataRecord for a Sample.
+     * Method to get, for each SampleCMOInfoRecord, its parent Sample and the descendant Samples of that parent which are
+     * directly under a request. The parents, their descendants and the Requests of all the Samples are each read with
+     * one call for all records.
      *
-     * @param sample
-     * @return DataRecord
-     * @throws RemoteException
+     * @param cmoInfoRecs
+     * @return Map of SampleCMOInfoRecords RecordId to the Samples sharing the record
      * @throws NotFound
+     * @throws RemoteException
+     * @throws IoError
      */
-    private DataRecord getRelatedRequest(DataRecord sample) throws RemoteException, NotFound {
-        try {
-            if (sample.getParentsOfType("Request", user).size() > 0) {
-                return sample.getParentsOfType("Request", user).get(0);
+    Map<Long, List<DataRecord>> getSamplesSharingCmoInfoRecs(Collection<List<RecordSnapshot>> cmoInfoRecs) throws NotFound, RemoteException, IoError {
+        Map<Long, List<DataRecord>> samplesByCmoInfoRec = new HashMap<>();
+        Map<Long, DataRecord> cmoInfoRecords = new LinkedHashMap<>();
+        for (List<RecordSnapshot> records : cmoInfoRecs) {
+            records.forEach(record -> cmoInfoRecords.putIfAbsent(record.getRecordId(), record.getRecord()));
+        }
+        if (cmoInfoRecords.isEmpty()) {
+            return samplesByCmoInfoRec;
+        }
+
+        List<DataRecord> cmoInfoRecordList = new ArrayList<>(cmoInfoRecords.values());
+        List<List<DataRecord>> parentSamples = dataRecordManager.getParentsOfType(cmoInfoRecordList, "Sample", user);
+        Map<Long, Long> parentByCmoInfoRec = new HashMap<>();
+        Map<Long, DataRecord> parents = new LinkedHashMap<>();
+        for (int i = 0; i < cmoInfoRecordList.size(); i++) {
+            long cmoInfoRecordId = cmoInfoRecordList.get(i).getRecordId();
+            if (parentSamples.get(i).isEmpty()) {
+                log.info(String.format("%s record with recordid %d not linked to any parent Sample.", SampleCMOInfoRecordsModel.DATA_TYPE_NAME, cmoInfoRecordId));
+                continue;
             }
-            Stack<DataRecord> sampleStack = new Stack<>();
-            if (sample.getParentsOfType("Sample", user).size() > 0) {
-                sampleStack.push(sample.getParentsOfType("Sample", user).get(0));
+            DataRecord parent = parentSamples.get(i).get(0);
+            parentByCmoInfoRec.put(cmoInfoRecordId, parent.getRecordId());
+            parents.putIfAbsent(parent.getRecordId(), parent);
+        }
+
+        // each parent Sample followed by its descendants, those with a Request as parent are kept
+        Map<Long, List<DataRecord>> familyByParent = new HashMap<>();
+        Map<Long, DataRecord> familySamples = new LinkedHashMap<>();
+        List<DataRecord> parentList = new ArrayList<>(parents.values());
+        List<List<DataRecord>> descendantSamples = parentList.isEmpty() ? new ArrayList<>() : dataRecordManager.getDescendantsOfType(parentList, "Sample", user);
+        for (int i = 0; i < parentList.size(); i++) {
+            List<DataRecord> family = new ArrayList<>();
+            family.add(parentList.get(i));
+            family.addAll(descendantSamples.get(i));
+            log.info("Total Descendant Samples: " + descendantSamples.get(i).size());
+            familyByParent.put(parentList.get(i).getRecordId(), family);
+            family.forEach(sample -> familySamples.putIfAbsent(sample.getRecordId(), sample));
+        }
+        Set<Long> samplesWithRequest = new HashSet<>();
+        List<DataRecord> familySampleList = new ArrayList<>(familySamples.values());
+        List<List<DataRecord>> requests = familySampleList.isEmpty() ? new ArrayList<>() : dataRecordManager.getParentsOfType(familySampleList, "Request", user);
+        for (int i = 0; i < familySampleList.size(); i++) {
+            if (!requests.get(i).isEmpty()) {
+                samplesWithRequest.add(familySampleList.get(i).getRecordId());
             }
-            do {
-                DataRecord startSample = sampleStack.pop();
-                if (startSample.getParentsOfType("Request", user).size() > 0) {
-                    return startSample.getParentsOfType("Request", user).get(0);
-                } else if (startSample.getParentsOfType("Sample", user).size() > 0) {
-                    sampleStack.push(startSample.getParentsOfType("Sample", user).get(0));
+        }
+
+        for (DataRecord cmoInfoRecord : cmoInfoRecordList) {
+            List<DataRecord> sampleList = new ArrayList<>();
+            Long parentId = parentByCmoInfoRec.get(cmoInfoRecord.getRecordId());
+            if (parentId != null) {
+                for (DataRecord sample : familyByParent.get(parentId)) {
+                    if (samplesWithRequest.contains(sample.getRecordId())) {
+                        sampleList.add(sample);
+                    }
                 }
-            } while (!sampleStack.isEmpty());
+            }
+            samplesByCmoInfoRec.put(cmoInfoRecord.getRecordId(), sampleList);
+        }
+        return samplesByCmoInfoRec;
+    }
+    /**
+     * Get Request DataRecord for each Sample. The requests are found through the shared sample lineage and the ones not
+     * read yet by this task are read with one query.
+     *
+     * @param samples
+     * @return Map of Sample RecordId to Request fields, samples without a Request are missing
+     */
+    private Map<Long, RecordSnapshot> getRelatedRequests(List<DataRecord> samples) {
+        Map<Long, RecordSnapshot> requestsBySample = new HashMap<>();
+        try {
+            Map<Long, SampleLineage.Lineage> lineages = sampleLineage.resolve(samples, dataRecordManager, user);
+            Set<Long> missingRequestIds = new HashSet<>();
+            for (SampleLineage.Lineage lineage : lineages.values()) {
+                if (lineage.getRequestRecordId() != null && !requestsByRecordId.containsKey(lineage.getRequestRecordId()))
+                    missingRequestIds.add(lineage.getRequestRecordId());
+            }
+            if (!missingRequestIds.isEmpty()) {
+                StringJoiner recordIds = new StringJoiner(",");
+                missingRequestIds.forEach(id -> recordIds.add(id.toString()));
+                List<DataRecord> requests = dataRecordManager.queryDataRecords("Request", "RecordId in (" + recordIds + ")", user);
+                for (RecordSnapshot request : RecordSnapshot.of(requests, dataRecordManager, user)) {
+                    requestsByRecordId.put(request.getRecordId(), request);
+                }
+            }
+            for (Map.Entry<Long, SampleLineage.Lineage> lineage : lineages.entrySet()) {
+                Long requestRecordId = lineage.getValue().getRequestRecordId();
+                if (requestRecordId != null && requestsByRecordId.containsKey(requestRecordId))
+                    requestsBySample.put(lineage.getKey(), requestsByRecordId.get(requestRecordId));
+            }
         } catch (Exception e) {
-            log.error(String.format("Error occured while finding parent Request for Sample %s\n%s", sample.getStringVal("SampleId", user), Arrays.toString(e.getStackTrace())));
+            log.error(String.format("Error occured while finding parent Requests for %d Samples\n%s", samples.size(), Arrays.toString(e.getStackTrace())));
         }
-        return null;
+        return requestsBySample;
     }
 
     /**
@@ -351,13 +458,11 @@ public class GetWESSampleDataTask {
      *
      * @param sample
      * @return Boolean
-     * @throws NotFound
-     * @throws RemoteException
      */
-    private Boolean isValidRecipeToProcess(DataRecord sample) throws NotFound, RemoteException {
-        String sampleId = sample.getStringVal("SampleId", user);
+    private Boolean isValidRecipeToProcess(RecordSnapshot sample) {
+        String sampleId = sample.getStringVal("SampleId");
         try {
-            Object recipe = sample.getValue("Recipe", user);
+            Object recipe = sample.getValue("Recipe");
             if (recipe != null) {
                 log.info("Recipe: " + recipe);
                 for (String rec : VALID_RECIPES) {
@@ -400,53 +505,66 @@ public class GetWESSampleDataTask {
     }
 
     /**
-     * Method to get data from cvr endpoint using dmpSampleId.
+     * Fetch the CVR metadata of the DMP Sample IDs of all tracker records, at most cvrFetchThreads calls at a time.
      *
-     * @param dmpSampleId
-     * @return JSONObject
-     * @throws NoSuchAlgorithmException
-     * @throws KeyManagementException
-     * @throws IOException
+     * @param dmpTrackers
      */
-    private JSONObject getCvrData(String dmpSampleId) throws NoSuchAlgorithmException, KeyManagementException, IOException {
-        TrustManager[] trustAllCerts = new TrustManager[]{new X509TrustManager() {
-            public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-                return null;
+    private void fetchCvrData(List<RecordSnapshot> dmpTrackers) {
+        Set<String> dmpSampleIds = new LinkedHashSet<>();
+        for (RecordSnapshot dmpTrackRec : dmpTrackers) {
+            if (dmpTrackRec.getValue("i_DMPSampleID") != null) {
+                dmpSampleIds.add(dmpTrackRec.getStringVal("i_DMPSampleID"));
             }
-
-            public void checkClientTrusted(X509Certificate[] certs, String authType) {
-            }
-
-            public void checkServerTrusted(X509Certificate[] certs, String authType) {
+        }
+        if (dmpSampleIds.isEmpty()) {
+            return;
+        }
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(Math.max(1, Math.min(dmpSampleIds.size(), cvrFetchThreads)), r -> {
+            Thread t = new Thread(r, "cvr-fetch");
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Callable<Void>> fetches = new ArrayList<>();
+            for (String dmpSampleId : dmpSampleIds) {
+                fetches.add(() -> {
+                    cvrDataBySampleId.put(dmpSampleId, queryCvrData(dmpSampleId));
+                    return null;
+                });
             }
+            fetchExecutor.invokeAll(fetches);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            fetchExecutor.shutdownNow();
         }
-        };
-        // Install the all-trusting trust manager
-        SSLContext sc = SSLContext.getInstance("SSL");
-        sc.init(null, trustAllCerts, new java.security.SecureRandom());
-        HttpsURLConnection.setDefaultSSLSocketFactory(sc.getSocketFactory());
+        log.info(String.format("Fetched CVR metadata for %d DMP Sample IDs", cvrDataBySampleId.size()));
+    }
 
-        // Create all-trusting host name verifier
-        HostnameVerifier allHostsValid = new HostnameVerifier() {
-            public boolean verify(String hostname, SSLSession session) {
-                return true;
-            }
-        };
-        StringBuilder response = new StringBuilder();
+    /**
+     * Get the CVR metadata of the dmpSampleId, fetched by {@link #fetchCvrData} or queried now when it was not.
+     *
+     * @param dmpSampleId
+     * @return JSONObject
+     */
+    private JSONObject getCvrData(String dmpSampleId) {
+        JSONObject cvrResponseData = dmpSampleId == null ? null : cvrDataBySampleId.get(dmpSampleId);
+        return cvrResponseData != null ? cvrResponseData : queryCvrData(dmpSampleId);
+    }
+
+    /**
+     * Method to get data from cvr endpoint using dmpSampleId. The CVR server has a self signed certificate, its host is
+     * listed in http.selfSignedHosts.
+     *
+     * @param dmpSampleId
+     * @return JSONObject
+     */
+    private JSONObject queryCvrData(String dmpSampleId) {
         JSONObject cvrResponseData = new JSONObject();
-        // Install the all-trusting host verifier
         try {
-            HttpsURLConnection.setDefaultHostnameVerifier(allHostsValid);
-            URL url = new URL("https://draco.mskcc.org:9898/get_cmo_metadata/" + dmpSampleId);
-            log.info(url.toString());
-            URLConnection con = url.openConnection();
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            cvrResponseData = new JSONObject(response.toString());
+            String url = "https://draco.mskcc.org:9898/get_cmo_metadata/" + dmpSampleId;
+            log.info(url);
+            cvrResponseData = new JSONObject(httpClient.getForString(url));
         } catch (Exception e) {
             log.error(String.format("Error occured while querying CVR end point for DMP Sample ID %s\n%s", dmpSampleId, Arrays.toString(e.getStackTrace())));
         }
@@ -519,37 +637,20 @@ public class GetWESSampleDataTask {
     }
 
     /**
-     * Get all the patients consent statuses for a consent type(PartA or PartC).
+     * Get the patients consented to a consent type(PartA or PartC). The lists are cached by {@link ConsentStatusCache}
+     * and only downloaded again when they changed.
      *
      * @param consentType
-     * @return JSONObject
-     * @throws MalformedURLException
+     * @return Set of consented patient ids
      * @throws JSONException
      */
-    private JSONObject getConsentStatusDataValues(String consentType) throws MalformedURLException, JSONException {
-        StringBuilder response = new StringBuilder();
-        JSONObject cvrResponseData = new JSONObject();
-        URL url;
-        if (consentType.toLowerCase().equals("parta")) {
-            url = new URL("http://draco.mskcc.org:9890/get_12245_list_parta");
-        } else {
-            url = new URL("http://draco.mskcc.org:9890/get_12245_list_partc");
-        }
-        try {
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            cvrResponseData = new JSONObject(response.toString());
-        } catch (Exception e) {
+    private Set<String> getConsentStatusDataValues(String consentType) throws JSONException {
+        Set<String> consentedPatients = consentStatus.getConsentedPatients(consentType);
+        if (consentedPatients == null) {
             log.error(String.format("Error occured while querying consent '%s' end point.\n", consentType));
+            throw new JSONException(String.format("Consent list '%s' could not be loaded", consentType));
         }
-        return cvrResponseData.getJSONObject("cases");
+        return consentedPatients;
     }
 
     /**
@@ -559,10 +660,7 @@ public class GetWESSampleDataTask {
      * @param patientId
      * @return Boolean
      */
-    private Boolean getConsentStatus(JSONObject consentData, String patientId) {
-        if (consentData.has(patientId)) {
-            return (Boolean) consentData.get(patientId);
-        }
-        return false;
+    private Boolean getConsentStatus(Set<String> consentData, String patientId) {
+        return consentData.contains(patientId);
     }
 }
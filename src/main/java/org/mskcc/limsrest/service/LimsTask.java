@@ -12,6 +12,7 @@ import com.velox.sapioutils.client.standalone.VeloxStandaloneManagerContext;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.LatencyMetrics;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 import org.mskcc.limsrest.util.Messages;
 
@@ -20,6 +21,7 @@ import java.io.StringWriter;
 import java.rmi.RemoteException;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 
 import static org.mskcc.limsrest.util.Utils.runAndCatchNpe;
 
@@ -33,6 +35,7 @@ public abstract class LimsTask implements VeloxExecutable<Object>, Callable<Obje
     private static Log log = LogFactory.getLog(LimsTask.class);
 
     private ConnectionPoolLIMS p;
+    private volatile boolean cancelled;
 
     protected User user;
     protected DataRecordManager dataRecordManager;
@@ -46,25 +49,59 @@ public abstract class LimsTask implements VeloxExecutable<Object>, Callable<Obje
         this.p = p;
     }
 
+    /**
+     * Pool the task runs on, idle connections of it may be borrowed for parallel reads with
+     * {@link ConnectionPoolLIMS#tryBorrowConnection()}.
+     */
+    protected ConnectionPoolLIMS getConnectionPool() {
+        return p;
+    }
+
+    /**
+     * Marks the task as no longer needed, a task cancelled before it gets a connection does not run.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     @Override
     public Object call() throws Exception {
-        VeloxConnection velox_conn = p.getConnection();
-        velox_conn.open();
+        if (cancelled)
+            throw new CancellationException("LIMS task cancelled before it started.");
+        long start = System.nanoTime();
+        VeloxConnection velox_conn = p.borrowConnection();
+        boolean broken = false;
         try {
             if (velox_conn.isConnected()) {
                 user = velox_conn.getUser();
-                dataRecordManager = velox_conn.getDataRecordManager();
+                dataRecordManager = p.getLatencyMetrics().timed(DataRecordManager.class, velox_conn.getDataRecordManager());
                 dataMgmtServer = velox_conn.getDataMgmtServer();
                 managerContext = new VeloxStandaloneManagerContext(user, dataMgmtServer);
             } else {
                 log.error("the lims task has a null connection");
             }
             return VeloxStandalone.run(velox_conn, this);
+        } catch (Exception e) {
+            broken = isConnectionFailure(e);
+            throw e;
         } finally {
-            velox_conn.close();
+            p.returnConnection(velox_conn, broken);
+            p.getLatencyMetrics().record(LatencyMetrics.Family.TASK, getClass().getSimpleName(), System.nanoTime() - start);
         }
     }
 
+    private static boolean isConnectionFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof RemoteException)
+                return true;
+        }
+        return false;
+    }
+
     public void annotateRequestDetailed(RequestDetailed requestDetailed, DataRecord request) {
         try {
             Map<String, Object> requestFields = request.getFields(user);
@@ -188,4 +225,4 @@ public abstract class LimsTask implements VeloxExecutable<Object>, Callable<Obje
         }
         return false;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
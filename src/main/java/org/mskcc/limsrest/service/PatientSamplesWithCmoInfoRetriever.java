@@ -67,11 +67,17 @@ public class PatientSamplesWithCmoInfoRetriever {
                 VeloxConstants.SAMPLE_CMO_INFO_RECORDS, "CmoPatientId = '" + patientId + "'", user);
 
         List<DataRecord> samples = new ArrayList<>();
-        for (DataRecord sampleInfoRecord : sampleInfoRecords) {
-            List<DataRecord> parentSamples = sampleInfoRecord.getParentsOfType(VeloxConstants.SAMPLE, user);
+        if (sampleInfoRecords.isEmpty())
+            return samples;
+
+        // parents of all cmo info records of the patient in one call
+        List<List<DataRecord>> parentSamplesOfRecords = dataRecordManager.getParentsOfType(sampleInfoRecords,
+                VeloxConstants.SAMPLE, user);
+        for (int i = 0; i < sampleInfoRecords.size(); i++) {
+            List<DataRecord> parentSamples = parentSamplesOfRecords.get(i);
             if (parentSamples.size() == 0) {
                 String msg = String.format("No parent sample found for cmo info record for sample: %s for patient: %s",
-                        sampleInfoRecord.getStringVal(VeloxConstants.SAMPLE_ID, user), patientId);
+                        sampleInfoRecords.get(i).getStringVal(VeloxConstants.SAMPLE_ID, user), patientId);
                 throw new LimsException(msg);
             }
 
@@ -12,6 +12,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.domain.sample.*;
+import org.mskcc.limsrest.service.cmoinfo.GeneratedCmoIdMetrics;
+import org.mskcc.limsrest.service.cmoinfo.PatientCmoIdLocks;
 import org.mskcc.limsrest.service.cmoinfo.SampleTypeCorrectedCmoSampleIdGenerator;
 import org.mskcc.limsrest.service.cmoinfo.converter.BankedSampleToCorrectedCmoSampleIdConverter;
 import org.mskcc.limsrest.service.cmoinfo.converter.CorrectedCmoIdConverter;
@@ -53,7 +55,7 @@ public class PromoteBanked extends LimsTask {
 
     private final CorrectedCmoIdConverter<BankedSample> bankedSampleToCorrectedCmoSampleIdConverter = new BankedSampleToCorrectedCmoSampleIdConverter();
     //@Autowired
-    private SampleTypeCorrectedCmoSampleIdGenerator correctedCmoSampleIdGenerator = new SampleTypeCorrectedCmoSampleIdGenerator();
+    private final SampleTypeCorrectedCmoSampleIdGenerator correctedCmoSampleIdGenerator;
     private final BankedSampleToSampleConverter bankedSampleToSampleConverter = new BankedSampleToSampleConverter();
 
     String[] bankedIds;
@@ -73,7 +75,8 @@ public class PromoteBanked extends LimsTask {
             .put(250, 160.0)
             .build();
 
-    public PromoteBanked() {
+    public PromoteBanked(GeneratedCmoIdMetrics generatedCmoIdMetrics) {
+        this.correctedCmoSampleIdGenerator = new SampleTypeCorrectedCmoSampleIdGenerator(generatedCmoIdMetrics);
     }
 
     public void init(String[] bankedIds, String projectId, String requestId, String serviceId, String igoUser, String materials, boolean dryrun) {
@@ -249,14 +252,17 @@ public class PromoteBanked extends LimsTask {
                 // get Coverage -> RequestedReads Reference table values from 'ApplicationReadCoverageRef' table in LIMS.
                 List<DataRecord> readCoverageRefs = dataRecordManager.queryDataRecords("ApplicationReadCoverageRef", "ReferenceOnly != 1", user);
                 log.info("ApplicationReadCoverageRef records: " + readCoverageRefs.size());
-                for (DataRecord bankedSample : bankedList) {
-                    createRecords(bankedSample, req, requestId, barcodeId2Sequence, plateId2Plate, existentIds, maxId, offset);
-                    offset++;
-                    bankedSample.setDataField("Promoted", Boolean.TRUE, user);
-                    bankedSample.setDataField("RequestId", requestId, user);
+                // CMO Sample IDs generated for the patients are counted by other generations once committed
+                try (PatientCmoIdLocks.Held patientLocks = PatientCmoIdLocks.lockAll(getCmoPatientIds(bankedList))) {
+                    for (DataRecord bankedSample : bankedList) {
+                        createRecords(bankedSample, req, requestId, barcodeId2Sequence, plateId2Plate, existentIds, maxId, offset);
+                        offset++;
+                        bankedSample.setDataField("Promoted", Boolean.TRUE, user);
+                        bankedSample.setDataField("RequestId", requestId, user);
+                    }
+                    log.info(igoUser + "  promoted the banked samples " + sb.toString());
+                    dataRecordManager.storeAndCommit(igoUser + "  promoted the banked samples " + sb.toString() + "into " + requestId, user);
                 }
-                log.info(igoUser + "  promoted the banked samples " + sb.toString());
-                dataRecordManager.storeAndCommit(igoUser + "  promoted the banked samples " + sb.toString() + "into " + requestId, user);
             } catch (Exception e) {
                 log.error(e);
 
@@ -283,6 +289,16 @@ public class PromoteBanked extends LimsTask {
         return new ResponseEntity<>("Successfully promoted sample(s) into " + requestId, headers, HttpStatus.OK );
     }
 
+    private Set<String> getCmoPatientIds(List<DataRecord> bankedList) throws NotFound, RemoteException {
+        Set<String> patientIds = new HashSet<>();
+        for (DataRecord bankedSample : bankedList) {
+            String patientId = bankedSample.getStringVal(BankedSample.CMO_PATIENT_ID, user);
+            if (!StringUtils.isEmpty(patientId))
+                patientIds.add(patientId);
+        }
+        return patientIds;
+    }
+
     private String getErrors() {
         StringBuilder message = new StringBuilder();
 
@@ -0,0 +1,124 @@
+package org.mskcc.limsrest.service;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.limsrest.ConnectionLIMS;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Last computed list of samples ready for Illumina runs, shared by all run planning requests.
+ * <BR>
+ * The list is computed again once older than the TTL or after {@link #invalidate()} is called by an endpoint changing
+ * pools, lanes or statuses. Only one request computes the list at a time, concurrent requests wait for it and share the
+ * result.
+ */
+public class RunPlanSnapshot {
+    private static Log log = LogFactory.getLog(RunPlanSnapshot.class);
+
+    private final Supplier<List<RunSummary>> loader;
+    private final long ttlMillis;
+    private final Object computeLock = new Object();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+
+    public RunPlanSnapshot(ConnectionLIMS conn, long ttlMillis) {
+        this(() -> conn.withConnection(() -> new GetReadyForIllumina(conn).execute()), ttlMillis);
+    }
+
+    /**
+     * @param loader    computes the samples ready for Illumina runs
+     * @param ttlMillis age after which the samples are computed again
+     */
+    public RunPlanSnapshot(Supplier<List<RunSummary>> loader, long ttlMillis) {
+        this.loader = loader;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public Snapshot get() {
+        Snapshot current = snapshot;
+        if (isFresh(current)) {
+            hits.incrementAndGet();
+            return current;
+        }
+        synchronized (computeLock) {
+            current = snapshot;
+            if (isFresh(current)) {
+                hits.incrementAndGet();
+                return current;
+            }
+            long computedGeneration = generation.get();
+            long start = System.currentTimeMillis();
+            List<RunSummary> runSummaries = Collections.unmodifiableList(new ArrayList<>(loader.get()));
+            current = new Snapshot(runSummaries, start, computedGeneration);
+            snapshot = current;
+            computations.incrementAndGet();
+            log.info(String.format("Computed run plan of %d samples in %d ms", runSummaries.size(),
+                    System.currentTimeMillis() - start));
+            return current;
+        }
+    }
+
+    /**
+     * Marks the current samples as outdated, the next request computes them again.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        invalidations.incrementAndGet();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Snapshot current = snapshot;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("samples", current == null ? 0 : current.getRunSummaries().size());
+        metrics.put("ageMillis", current == null ? null : current.getAgeMillis());
+        metrics.put("stale", !isFresh(current));
+        metrics.put("hits", hits.get());
+        metrics.put("computations", computations.get());
+        metrics.put("invalidations", invalidations.get());
+        return metrics;
+    }
+
+    private boolean isFresh(Snapshot current) {
+        return current != null && current.generation == generation.get()
+                && current.getAgeMillis() <= ttlMillis;
+    }
+
+    public static class Snapshot {
+        private final List<RunSummary> runSummaries;
+        private final long computedAt;
+        private final long generation;
+
+        Snapshot(List<RunSummary> runSummaries, long computedAt, long generation) {
+            this.runSummaries = runSummaries;
+            this.computedAt = computedAt;
+            this.generation = generation;
+        }
+
+        public List<RunSummary> getRunSummaries() {
+            return runSummaries;
+        }
+
+        /**
+         * Time the computation of the samples started, changes made after it may be missing.
+         */
+        public long getComputedAt() {
+            return computedAt;
+        }
+
+        public long getAgeMillis() {
+            return System.currentTimeMillis() - computedAt;
+        }
+    }
+}
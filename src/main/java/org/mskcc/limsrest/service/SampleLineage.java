@@ -0,0 +1,214 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.datarecord.NotFound;
+import com.velox.api.user.User;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Index of the origin sample and request of samples.
+ * <BR>
+ * The lineage of a sample is found by following its first parent Sample until a sample which has a Request parent,
+ * that sample is the origin sample and its parent the request. If no sample on the way has a Request parent the top
+ * sample is the origin sample and there is no request.
+ * <BR>
+ * Samples are resolved together one level at a time, so resolving any number of samples takes two parents queries per
+ * level. All samples passed on the way share the lineage and are remembered by record id. A lineage keeps the record
+ * ids of the origin sample and request plus their SampleId and RequestId, which are not changed once assigned, any
+ * other field is read from the records by the caller. Lineages are resolved again after the TTL and the least recently
+ * used samples are evicted above the maximum size.
+ */
+public class SampleLineage {
+    private static Log log = LogFactory.getLog(SampleLineage.class);
+
+    private static final int MAX_DEPTH = 100;
+
+    private final long ttlMillis;
+    private final Map<Long, Lineage> lineageByRecordId;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * @param maxEntries maximum number of samples kept
+     * @param ttlMillis  age after which the lineage of a sample is resolved again
+     */
+    public SampleLineage(int maxEntries, long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+        this.lineageByRecordId = new LinkedHashMap<Long, Lineage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Lineage> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Lineage resolve(DataRecord sample, DataRecordManager dataRecordManager, User user)
+            throws RemoteException, NotFound {
+        return resolve(Collections.singletonList(sample), dataRecordManager, user).get(sample.getRecordId());
+    }
+
+    /**
+     * @return lineage of each sample by the sample record id
+     */
+    public Map<Long, Lineage> resolve(List<DataRecord> samples, DataRecordManager dataRecordManager, User user)
+            throws RemoteException, NotFound {
+        Map<Long, Lineage> result = new HashMap<>();
+        List<Walk> walks = new ArrayList<>();
+        for (DataRecord sample : samples) {
+            long recordId = sample.getRecordId();
+            if (result.containsKey(recordId))
+                continue;
+            Lineage lineage = get(recordId);
+            if (lineage != null) {
+                hits.incrementAndGet();
+                result.put(recordId, lineage);
+            } else {
+                misses.incrementAndGet();
+                result.put(recordId, null);
+                walks.add(new Walk(sample));
+            }
+        }
+
+        if (!walks.isEmpty())
+            log.info(String.format("Resolving lineage of %d samples", walks.size()));
+        for (int depth = 0; !walks.isEmpty(); depth++) {
+            List<DataRecord> current = new ArrayList<>();
+            for (Walk walk : walks) {
+                current.add(walk.current);
+            }
+            List<List<DataRecord>> requests = dataRecordManager.getParentsOfType(current, "Request", user);
+
+            List<Walk> withoutRequest = new ArrayList<>();
+            List<DataRecord> samplesWithoutRequest = new ArrayList<>();
+            for (int i = 0; i < walks.size(); i++) {
+                Walk walk = walks.get(i);
+                if (!requests.get(i).isEmpty()) {
+                    finish(walk, new Lineage(walk.current, requests.get(i).get(0), user), result);
+                } else {
+                    withoutRequest.add(walk);
+                    samplesWithoutRequest.add(walk.current);
+                }
+            }
+            if (withoutRequest.isEmpty())
+                break;
+
+            List<List<DataRecord>> parents = dataRecordManager.getParentsOfType(samplesWithoutRequest, "Sample", user);
+            List<Walk> next = new ArrayList<>();
+            for (int i = 0; i < withoutRequest.size(); i++) {
+                Walk walk = withoutRequest.get(i);
+                if (parents.get(i).isEmpty() || depth >= MAX_DEPTH) {
+                    finish(walk, new Lineage(walk.current, null, user), result);
+                    continue;
+                }
+                DataRecord parent = parents.get(i).get(0);
+                Lineage known = get(parent.getRecordId());
+                if (known != null) {
+                    finish(walk, known, result);
+                } else {
+                    walk.current = parent;
+                    walk.passed.add(parent.getRecordId());
+                    next.add(walk);
+                }
+            }
+            walks = next;
+        }
+        return result;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        synchronized (lineageByRecordId) {
+            metrics.put("entries", lineageByRecordId.size());
+        }
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("evictions", evictions.get());
+        return metrics;
+    }
+
+    private Lineage get(long recordId) {
+        synchronized (lineageByRecordId) {
+            Lineage lineage = lineageByRecordId.get(recordId);
+            if (lineage != null && System.currentTimeMillis() - lineage.createdAt > ttlMillis) {
+                lineageByRecordId.remove(recordId);
+                return null;
+            }
+            return lineage;
+        }
+    }
+
+    private void finish(Walk walk, Lineage lineage, Map<Long, Lineage> result) {
+        synchronized (lineageByRecordId) {
+            for (Long recordId : walk.passed) {
+                lineageByRecordId.put(recordId, lineage);
+            }
+        }
+        result.put(walk.start, lineage);
+    }
+
+    private static class Walk {
+        private final long start;
+        private final List<Long> passed = new ArrayList<>();
+        private DataRecord current;
+
+        Walk(DataRecord sample) {
+            this.start = sample.getRecordId();
+            this.current = sample;
+            this.passed.add(start);
+        }
+    }
+
+    public static class Lineage {
+        private final long createdAt = System.currentTimeMillis();
+        private final long originSampleRecordId;
+        private final String originSampleId;
+        private final Long requestRecordId;
+        private final String requestId;
+
+        Lineage(DataRecord originSample, DataRecord request, User user) throws RemoteException, NotFound {
+            this.originSampleRecordId = originSample.getRecordId();
+            this.originSampleId = originSample.getStringVal("SampleId", user);
+            this.requestRecordId = request == null ? null : request.getRecordId();
+            this.requestId = request == null ? null : request.getStringVal("RequestId", user);
+        }
+
+        public long getOriginSampleRecordId() {
+            return originSampleRecordId;
+        }
+
+        /**
+         * SampleId of the sample directly under the request, or of the top sample if there is no request.
+         */
+        public String getOriginSampleId() {
+            return originSampleId;
+        }
+
+        /**
+         * Record id of the request, null if no sample of the lineage has a Request parent.
+         */
+        public Long getRequestRecordId() {
+            return requestRecordId;
+        }
+
+        public String getRequestId() {
+            return requestId;
+        }
+    }
+}
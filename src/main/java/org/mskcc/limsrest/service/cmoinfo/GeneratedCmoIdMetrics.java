@@ -0,0 +1,42 @@
+package org.mskcc.limsrest.service.cmoinfo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the generated CMO Sample ID stores of all generators, reported by /getCacheMetrics.
+ */
+public class GeneratedCmoIdMetrics {
+    // IDs generated and not yet returned by the LIMS, IDs never saved stay counted
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong persisted = new AtomicLong();
+
+    void added() {
+        size.incrementAndGet();
+    }
+
+    void hit() {
+        hits.incrementAndGet();
+    }
+
+    void miss() {
+        misses.incrementAndGet();
+    }
+
+    void persisted() {
+        size.decrementAndGet();
+        persisted.incrementAndGet();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", size.get());
+        metrics.put("hits", hits.get());
+        metrics.put("misses", misses.get());
+        metrics.put("persisted", persisted.get());
+        return metrics;
+    }
+}
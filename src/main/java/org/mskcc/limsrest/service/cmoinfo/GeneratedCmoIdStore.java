@@ -0,0 +1,62 @@
+package org.mskcc.limsrest.service.cmoinfo;
+
+import org.mskcc.domain.sample.CorrectedCmoSampleView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * CMO Sample IDs a generator generated but the LIMS doesn't return yet, counted by its next generations for the same
+ * patient. A patient's IDs are used under the patient's lock.
+ */
+public class GeneratedCmoIdStore {
+    private final Map<String, List<CorrectedCmoSampleView>> byPatient = new ConcurrentHashMap<>();
+    private final GeneratedCmoIdMetrics metrics;
+
+    public GeneratedCmoIdStore(GeneratedCmoIdMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the IDs generated for the patient.
+     */
+    public List<CorrectedCmoSampleView> get(String patientId) {
+        List<CorrectedCmoSampleView> generated = byPatient.get(patientId);
+        if (generated == null || generated.isEmpty()) {
+            metrics.miss();
+            return new ArrayList<>();
+        }
+        metrics.hit();
+        return new ArrayList<>(generated);
+    }
+
+    public void add(String patientId, CorrectedCmoSampleView view) {
+        byPatient.computeIfAbsent(patientId, p -> new ArrayList<>()).add(view);
+        metrics.added();
+    }
+
+    /**
+     * Drops the IDs of the patient the LIMS returned with the patient's samples, they are counted from the LIMS.
+     */
+    public void removePersisted(String patientId, List<CorrectedCmoSampleView> limsSamples) {
+        List<CorrectedCmoSampleView> generated = byPatient.get(patientId);
+        if (generated == null)
+            return;
+        generated.removeIf(view -> {
+            boolean saved = limsSamples.stream().anyMatch(s -> Objects.equals(s.getId(), view.getId())
+                    && Objects.equals(s.getCorrectedCmoId(), view.getCorrectedCmoId()));
+            if (saved)
+                metrics.persisted();
+            return saved;
+        });
+        if (generated.isEmpty())
+            byPatient.remove(patientId);
+    }
+
+    public int size() {
+        return byPatient.values().stream().mapToInt(List::size).sum();
+    }
+}
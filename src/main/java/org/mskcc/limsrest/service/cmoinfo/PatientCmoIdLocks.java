@@ -0,0 +1,122 @@
+package org.mskcc.limsrest.service.cmoinfo;
+
+import org.mskcc.domain.sample.CorrectedCmoSampleView;
+import org.mskcc.limsrest.service.LimsException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Locks serializing the CMO Sample ID generations of a patient, shared by all generators. Generations for different
+ * patients run in parallel.
+ * <BR>
+ * A generation counts the patient's samples read from the LIMS under the lock, so a task saving the IDs it generated
+ * holds the locks of their patients until the IDs are committed, see {@link #lockAll(Collection)}. Otherwise a
+ * generation for the same patient could read the samples before the save and hand out the same counter. While a task
+ * holds the lock no other task saves IDs for the patient, so the task's generations read the patient's samples once.
+ */
+public class PatientCmoIdLocks {
+    private static final int LOCK_STRIPES = 64;
+    private static final Lock[] patientLocks = new Lock[LOCK_STRIPES];
+    // locks held by the thread's task, a task locking again inside keeps the outer locks
+    private static final ThreadLocal<Held> heldByThread = new ThreadLocal<>();
+
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            patientLocks[i] = new ReentrantLock();
+        }
+    }
+
+    private PatientCmoIdLocks() {
+    }
+
+    /**
+     * Returns the lock to hold while generating a CMO Sample ID for the patient.
+     */
+    public static Lock getLock(String patientId) {
+        return patientLocks[stripe(patientId)];
+    }
+
+    /**
+     * Locks the patients until the returned lock is closed. Locks are taken in one order so tasks locking several
+     * patients can't deadlock each other.
+     */
+    public static Held lockAll(Collection<String> patientIds) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (String patientId : patientIds) {
+            stripes.add(stripe(patientId));
+        }
+        List<Lock> locks = new ArrayList<>();
+        for (int stripe : stripes) {
+            patientLocks[stripe].lock();
+            locks.add(patientLocks[stripe]);
+        }
+        Held held = new Held(new HashSet<>(patientIds), locks, heldByThread.get());
+        heldByThread.set(held);
+        return held;
+    }
+
+    /**
+     * Returns the locks of the current thread's task if they include the patient, null otherwise.
+     */
+    public static Held getHeld(String patientId) {
+        for (Held held = heldByThread.get(); held != null; held = held.outer) {
+            if (held.patientIds.contains(patientId))
+                return held;
+        }
+        return null;
+    }
+
+    private static int stripe(String patientId) {
+        return (patientId.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES;
+    }
+
+    public static class Held implements AutoCloseable {
+        private final Set<String> patientIds;
+        private final List<Lock> locks;
+        private final Held outer;
+        // patient id -> samples read from the LIMS while the locks are held
+        private final Map<String, List<CorrectedCmoSampleView>> samplesByPatient = new HashMap<>();
+
+        private Held(Set<String> patientIds, List<Lock> locks, Held outer) {
+            this.patientIds = patientIds;
+            this.locks = locks;
+            this.outer = outer;
+        }
+
+        /**
+         * Returns a copy of the patient's samples, read with the loader on the first call for the patient.
+         */
+        public List<CorrectedCmoSampleView> getSamples(String patientId, Loader loader) throws LimsException {
+            List<CorrectedCmoSampleView> samples = samplesByPatient.get(patientId);
+            if (samples == null) {
+                samples = new ArrayList<>(loader.load());
+                samplesByPatient.put(patientId, samples);
+            }
+            return new ArrayList<>(samples);
+        }
+
+        @Override
+        public void close() {
+            heldByThread.set(outer);
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * Reads the samples of a patient from the LIMS.
+     */
+    public interface Loader {
+        List<CorrectedCmoSampleView> load() throws LimsException;
+    }
+}
@@ -26,6 +26,7 @@ import org.mskcc.limsrest.service.converter.SampleRecordToSampleConverter;
 import org.mskcc.util.CommonUtils;
 
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 import static org.mskcc.domain.sample.SpecimenType.CELLLINE;
@@ -44,9 +45,10 @@ public class SampleTypeCorrectedCmoSampleIdGenerator implements CorrectedCmoSamp
                             new CspaceSampleTypeAbbreviationRetriever()), new PatientCmoSampleIdFormatter()),
                     new FormattedCmoSampleIdRetriever(new CellLineCmoSampleIdResolver(), new CellLineCmoSampleIdFormatter()));
     protected PatientSamplesWithCmoInfoRetriever patientSamplesRetriever = new PatientSamplesWithCmoInfoRetriever(new SampleToCorrectedCmoIdConverter(), new SampleRecordToSampleConverter());
-    private Map<String, List<CorrectedCmoSampleView>> generatedSamples = new HashMap<>();
+    private final GeneratedCmoIdStore generatedSamples;
 
-    public SampleTypeCorrectedCmoSampleIdGenerator() {
+    public SampleTypeCorrectedCmoSampleIdGenerator(GeneratedCmoIdMetrics generatedCmoIdMetrics) {
+        this.generatedSamples = new GeneratedCmoIdStore(generatedCmoIdMetrics);
     }
 
     @Override
@@ -54,18 +56,27 @@ public class SampleTypeCorrectedCmoSampleIdGenerator implements CorrectedCmoSamp
         LOGGER.info(String.format("Generating cmo id for view: %s", correctedCmoSampleView));
 
         try {
-            synchronized (SampleTypeCorrectedCmoSampleIdGenerator.class) {
-                String patientId = correctedCmoSampleView.getPatientId();
-                CommonUtils.requireNonNullNorEmpty(patientId, String.format("Patient id is not set for sample: %s", correctedCmoSampleView.getId()));
-
-                // get all samples for that patient in the LIMS
-                List<CorrectedCmoSampleView> cmoSampleViews = patientSamplesRetriever.retrieve(patientId, dataRecordManager, user);
+            String patientId = correctedCmoSampleView.getPatientId();
+            CommonUtils.requireNonNullNorEmpty(patientId, String.format("Patient id is not set for sample: %s", correctedCmoSampleView.getId()));
+
+            // IDs of one patient are generated one at a time, IDs of different patients in parallel
+            Lock patientLock = PatientCmoIdLocks.getLock(patientId);
+            patientLock.lock();
+            try {
+                // get all samples for that patient in the LIMS, read under the lock so IDs saved by other
+                // generators while holding it are counted. A task holding the patient's lock until it saves its
+                // IDs reads them once, nothing else is saved for the patient meanwhile
+                PatientCmoIdLocks.Held heldByTask = PatientCmoIdLocks.getHeld(patientId);
+                List<CorrectedCmoSampleView> cmoSampleViews = heldByTask != null
+                        ? heldByTask.getSamples(patientId,
+                                () -> patientSamplesRetriever.retrieve(patientId, dataRecordManager, user))
+                        : patientSamplesRetriever.retrieve(patientId, dataRecordManager, user);
                 // add to that list all samples where patient ID was just generated but not yet saved to LIMS DB
+                generatedSamples.removePersisted(patientId, cmoSampleViews);
                 List<CorrectedCmoSampleView> generated = generatedSamples.get(patientId);
-                if (generated != null)
-                    cmoSampleViews.addAll(generated);
+                cmoSampleViews.addAll(generated);
                 LOGGER.info(String.format("Added %d samples for patient %s generated during current run for cmo id " +
-                        "generation: %s", generatedSamples.size(), patientId, generatedSamples.values()));
+                        "generation: %s", generated.size(), patientId, generated));
                 List<CorrectedCmoSampleView> filteredViews = getFilteredCmoViews(correctedCmoSampleView, cmoSampleViews);
 
                 CmoSampleIdRetriever idRetriever = cmoSampleIdRetrieverFactory.getCmoSampleIdRetriever(correctedCmoSampleView);
@@ -74,11 +85,9 @@ public class SampleTypeCorrectedCmoSampleIdGenerator implements CorrectedCmoSamp
                 if (shouldOverrideCmoId(correctedCmoSampleView, cmoSampleId))
                     correctedCmoSampleView.setCorrectedCmoId(cmoSampleId);
 
-                if (generatedSamples.containsKey(patientId)) {
-                    generatedSamples.get(patientId).add(correctedCmoSampleView);
-                } else {
-                    generatedSamples.put(patientId, new ArrayList<>(Arrays.asList(correctedCmoSampleView)));
-                }
+                generatedSamples.add(patientId, correctedCmoSampleView);
+            } finally {
+                patientLock.unlock();
             }
             return correctedCmoSampleView.getCorrectedCmoId();
         } catch (Exception e) {
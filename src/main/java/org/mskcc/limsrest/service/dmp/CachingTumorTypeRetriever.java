@@ -0,0 +1,48 @@
+package org.mskcc.limsrest.service.dmp;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the tumor types read by another retriever in memory so consecutive DMP imports share one copy.
+ * <BR>
+ * The tumor types are read again once older than the TTL (oncotree.cache.ttlHours, as for
+ * {@link org.mskcc.limsrest.util.OncotreeTumorTypeCache}), a failed read is not kept so the next call retries. The two
+ * caches stay separate because the DMP import reads the draco tumor type list, which has tissue types and is shaped
+ * differently from the oncotree API list.
+ */
+public class CachingTumorTypeRetriever implements TumorTypeRetriever {
+    private static final Log LOGGER = LogFactory.getLog(CachingTumorTypeRetriever.class);
+
+    private final TumorTypeRetriever tumorTypeRetriever;
+    private final long ttlMillis;
+
+    private volatile Set<TumorType> tumorTypes;
+    private volatile long loadedAt;
+
+    public CachingTumorTypeRetriever(TumorTypeRetriever tumorTypeRetriever, long ttlMillis) {
+        this.tumorTypeRetriever = tumorTypeRetriever;
+        this.ttlMillis = ttlMillis;
+    }
+
+    @Override
+    public Set<TumorType> retrieve() {
+        Set<TumorType> current = tumorTypes;
+        if (current != null && System.currentTimeMillis() - loadedAt <= ttlMillis)
+            return current;
+
+        synchronized (this) {
+            if (tumorTypes == null || System.currentTimeMillis() - loadedAt > ttlMillis) {
+                Set<TumorType> retrieved = tumorTypeRetriever.retrieve();
+                LOGGER.info(String.format("Retrieved %d tumor types", retrieved.size()));
+                tumorTypes = Collections.unmodifiableSet(new HashSet<>(retrieved));
+                loadedAt = System.currentTimeMillis();
+            }
+            return tumorTypes;
+        }
+    }
+}
@@ -16,23 +16,38 @@ import org.mskcc.limsrest.util.Messages;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 public class GenerateBankedSamplesFromDMP extends LimsTask {
     private static final Log LOGGER = LogFactory.getLog(GenerateBankedSamplesFromDMP.class);
 
     private static final String TRACKING_ID_REGEX = "[a-zA-Z0-9_-]+";
-    private final ExternalToBankedSampleConverter externalToBankedSampleConverter =
-            new DMPSampleToCMOBankedSampleConverter(new OncotreeTumorTypeRetriever());
-    //TODO set string normally
-    protected DMPSamplesRetriever dmpSamplesRetriever = new WebServiceDMPSamplesRetriever("http://plvpathhydra1.mskcc.org:8001/");
+    private final ExternalToBankedSampleConverter externalToBankedSampleConverter;
+    protected DMPSamplesRetriever dmpSamplesRetriever;
     protected RecordSaver recordSaver = new BankedSampleSaver();
     protected LimsDataRetriever limsDataRetriever = new BankedSampleRetriever();
 
     private LocalDate date;
+    private int commitChunkSize;
+    private int fetchThreads = 4;
 
-    public GenerateBankedSamplesFromDMP() {
+    /**
+     * @param tumorTypeRetriever  oncotree tumor types used to convert the DMP tumor types
+     * @param dmpSamplesRetriever DMP samples of a day
+     */
+    public GenerateBankedSamplesFromDMP(TumorTypeRetriever tumorTypeRetriever, DMPSamplesRetriever dmpSamplesRetriever) {
+        this.externalToBankedSampleConverter = new DMPSampleToCMOBankedSampleConverter(tumorTypeRetriever);
+        this.dmpSamplesRetriever = dmpSamplesRetriever;
     }
 
     public void setLimsDataRetriever(LimsDataRetriever limsDataRetriever) {
@@ -49,6 +64,20 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
         this.date = date;
     }
 
+    /**
+     * Number of banked samples committed together, 0 commits all banked samples of a tracking id at once.
+     */
+    public void setCommitChunkSize(int commitChunkSize) {
+        this.commitChunkSize = commitChunkSize;
+    }
+
+    /**
+     * Number of tracking ids retrieved from DMP and converted while the previous ones are saved.
+     */
+    public void setFetchThreads(int fetchThreads) {
+        this.fetchThreads = fetchThreads;
+    }
+
     @Override
     public String execute(VeloxConnection conn) {
         try {
@@ -59,19 +88,53 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
 
             long transactionId = LocalDateTime.now().toInstant(ZoneOffset.ofTotalSeconds(0)).getEpochSecond();
 
-            int trackingIdCounter = 0;
-            for (String trackingId : cmoTrackingIds) {
-                if (shouldProcess(trackingId)) {
-                    long newTransactionId = getTransactionId(transactionId, trackingIdCounter);
-                    LOGGER.info(String.format("Assigning transaction id: %s for DMP tracking id: %s",
-                            newTransactionId, trackingId));
-
-                    createBankedSamples(trackingId, newTransactionId);
-                    trackingIdCounter++;
+            List<String> trackingIdsToProcess = getTrackingIdsToProcess(cmoTrackingIds);
+            List<String> failedTrackingIds = new ArrayList<>();
+            List<String> failedSamples = new ArrayList<>();
+            int savedSamples = 0;
+
+            // DMP samples of the next tracking ids are retrieved and converted while the current ones are saved,
+            // at most 2 per fetch thread wait to be saved and they are saved in tracking id order
+            ExecutorService fetchExecutor = newFetchExecutor(trackingIdsToProcess.size());
+            try {
+                Deque<Future<List<BankedSample>>> converted = new ArrayDeque<>();
+                int submitted = 0;
+                for (String trackingId : trackingIdsToProcess) {
+                    while (submitted < trackingIdsToProcess.size() && converted.size() < 2 * fetchThreads) {
+                        String nextTrackingId = trackingIdsToProcess.get(submitted);
+                        long newTransactionId = getTransactionId(transactionId, submitted);
+                        LOGGER.info(String.format("Assigning transaction id: %s for DMP tracking id: %s",
+                                newTransactionId, nextTrackingId));
+
+                        converted.add(fetchExecutor.submit(() -> createBankedSamples(nextTrackingId,
+                                newTransactionId)));
+                        submitted++;
+                    }
+
+                    List<BankedSample> bankedSamples;
+                    try {
+                        bankedSamples = converted.poll().get();
+                    } catch (ExecutionException e) {
+                        LOGGER.warn(String.format("Unable to retrieve DMP samples for tracking id: %s",
+                                trackingId), e.getCause());
+                        failedTrackingIds.add(trackingId);
+                        continue;
+                    }
+                    List<String> failed = saveBankedSamples(bankedSamples);
+                    savedSamples += bankedSamples.size() - failed.size();
+                    failedSamples.addAll(failed);
                 }
+            } finally {
+                fetchExecutor.shutdownNow();
             }
 
-            return Messages.SUCCESS;
+            if (failedTrackingIds.isEmpty() && failedSamples.isEmpty())
+                return Messages.SUCCESS;
+
+            String message = String.format("Saved %d Banked Samples, failed to save %d: %s, failed to retrieve " +
+                    "tracking ids: %s", savedSamples, failedSamples.size(), failedSamples, failedTrackingIds);
+            LOGGER.warn(message);
+            return Messages.FAILURE_IN + message;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -89,24 +152,45 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
         return transactionId + trackingIdCounter;
     }
 
-    private boolean shouldProcess(String trackingId) {
-        try {
-            validateTrackingId(trackingId);
+    /**
+     * Returns the tracking ids in correct format which have no Banked Samples yet, all tracking ids are checked with
+     * one query. If the check fails no tracking id is processed.
+     */
+    private List<String> getTrackingIdsToProcess(List<String> trackingIds) {
+        List<String> validTrackingIds = new ArrayList<>();
+        for (String trackingId : trackingIds) {
+            try {
+                validateTrackingId(trackingId);
+                validTrackingIds.add(trackingId);
+            } catch (Exception e) {
+                LOGGER.warn(e.getMessage());
+            }
+        }
+        if (validTrackingIds.isEmpty())
+            return validTrackingIds;
 
-            String query = String.format("%s = '%s'", BankedSample.DMP_TRACKING_ID, trackingId);
-            List<BankedSample> bankedSamples = limsDataRetriever.getBankedSamples(query, dataRecordManager, user);
+        Set<String> processedTrackingIds;
+        try {
+            String query = String.format("%s in ('%s')", BankedSample.DMP_TRACKING_ID,
+                    String.join("','", validTrackingIds));
+            processedTrackingIds = limsDataRetriever.getBankedSamples(query, dataRecordManager, user).stream()
+                    .map(BankedSample::getDMPTrackingId)
+                    .collect(Collectors.toSet());
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Unable to check if tracking ids: %s have already been processed.",
+                    validTrackingIds), e);
+            return Collections.emptyList();
+        }
 
-            if (bankedSamples.size() == 0)
-                return true;
-            else
+        List<String> trackingIdsToProcess = new ArrayList<>();
+        for (String trackingId : validTrackingIds) {
+            if (processedTrackingIds.contains(trackingId))
                 LOGGER.info(String.format("DMP tracking id: %s has already been processed and converted to Banked " +
                         "Samples. Banked Samples for this tracking id won't be created", trackingId));
-        } catch (Exception e) {
-            LOGGER.warn(String.format("Unable to check if tracking id: \"%s\" has already been processed.",
-                    trackingId), e);
+            else
+                trackingIdsToProcess.add(trackingId);
         }
-
-        return false;
+        return trackingIdsToProcess;
     }
 
     private void validateTrackingId(String trackingId) {
@@ -116,17 +200,26 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
         }
     }
 
-    private void createBankedSamples(String trackingId, long transactionId) {
+    private List<BankedSample> createBankedSamples(String trackingId, long transactionId) {
         LOGGER.info(String.format("Retrieving DMP samples for tracking id: %s", trackingId));
         List<DMPSample> dmpSamples = dmpSamplesRetriever.getDMPSamples(trackingId);
 
         LOGGER.info(String.format("Retrieved DMP sampled for tracking id: %s %s", trackingId, getStudiesIds
                 (dmpSamples)));
 
+        List<BankedSample> bankedSamples = new ArrayList<>();
         for (DMPSample dmpSample : dmpSamples) {
-            BankedSample bankedSample = convertToBankedSample(dmpSample, transactionId);
-            saveBankedSample(bankedSample);
+            bankedSamples.add(convertToBankedSample(dmpSample, transactionId));
         }
+        return bankedSamples;
+    }
+
+    private ExecutorService newFetchExecutor(int trackingIds) {
+        return Executors.newFixedThreadPool(Math.max(1, Math.min(trackingIds, fetchThreads)), r -> {
+            Thread t = new Thread(r, "dmp-fetch");
+            t.setDaemon(true);
+            return t;
+        });
     }
 
     private List<String> getStudiesIds(List<DMPSample> studies) {
@@ -135,8 +228,19 @@ public class GenerateBankedSamplesFromDMP extends LimsTask {
                 .collect(Collectors.toList());
     }
 
-    private void saveBankedSample(BankedSample bankedSample) {
-        recordSaver.save(bankedSample, dataRecordManager, user);
+    /**
+     * Saves the banked samples in chunks of {@link #commitChunkSize}, one commit per chunk.
+     *
+     * @return user sample ids of the banked samples which failed to save
+     */
+    private List<String> saveBankedSamples(List<BankedSample> bankedSamples) {
+        List<String> failedSamples = new ArrayList<>();
+        int chunkSize = commitChunkSize > 0 ? commitChunkSize : Math.max(bankedSamples.size(), 1);
+        for (int from = 0; from < bankedSamples.size(); from += chunkSize) {
+            List<BankedSample> chunk = bankedSamples.subList(from, Math.min(from + chunkSize, bankedSamples.size()));
+            failedSamples.addAll(recordSaver.saveAll(chunk, dataRecordManager, user));
+        }
+        return failedSamples;
     }
 
     private BankedSample convertToBankedSample(DMPSample dmpSample, long transactionId) {
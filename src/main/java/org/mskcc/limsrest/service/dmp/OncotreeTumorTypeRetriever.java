@@ -1,5 +1,6 @@
 package org.mskcc.limsrest.service.dmp;
 
+import org.mskcc.limsrest.HttpClientPool;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.Set;
@@ -10,9 +11,10 @@ import java.util.Set;
 public class OncotreeTumorTypeRetriever implements TumorTypeRetriever {
     // TODO read from application.properties
     private final String tumorTypeServiceUrl = "http://draco.mskcc.org:9666/tumor_types";
-    private RestTemplate restTemplate = new RestTemplate();
+    private final RestTemplate restTemplate;
 
-    public OncotreeTumorTypeRetriever() {
+    public OncotreeTumorTypeRetriever(HttpClientPool httpClient) {
+        this.restTemplate = httpClient.getRestTemplate();
     }
 
     @Override
@@ -2,6 +2,7 @@ package org.mskcc.limsrest.service.dmp;
 
 import org.apache.juli.logging.Log;
 import org.apache.juli.logging.LogFactory;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.util.Constants;
 import org.springframework.web.client.RestTemplate;
 
@@ -13,16 +14,18 @@ public class WebServiceDMPSamplesRetriever implements DMPSamplesRetriever {
     private static final Log LOGGER = LogFactory.getLog(WebServiceDMPSamplesRetriever.class);
 
     private final String restServiceUrl;
+    private final RestTemplate restTemplate;
 
-    public WebServiceDMPSamplesRetriever(String restServiceUrl) {
+    public WebServiceDMPSamplesRetriever(String restServiceUrl, HttpClientPool httpClient) {
         this.restServiceUrl = restServiceUrl;
+        this.restTemplate = httpClient.getRestTemplate();
     }
 
     @Override
     public List<String> retrieveTrackingIds(LocalDate date) {
         String formattedDate = date.format(Constants.US_DATE_TIME_FORMATTER);
 
-        CMOTrackingIdList cmoTrackingIdList = new RestTemplate().getForObject(getTrackingIdListQuery(formattedDate),
+        CMOTrackingIdList cmoTrackingIdList = restTemplate.getForObject(getTrackingIdListQuery(formattedDate),
                 CMOTrackingIdList.class);
 
         LOGGER.info(String.format("Response received from DMP for CMO Tracking Id List: %s", cmoTrackingIdList));
@@ -38,7 +41,6 @@ public class WebServiceDMPSamplesRetriever implements DMPSamplesRetriever {
     @Override
     public List<DMPSample> getDMPSamples(String trackingId) {
         LOGGER.info(String.format("Retrieving CMO Sample Request Details for tracking id: %s", trackingId));
-        RestTemplate restTemplate = new RestTemplate();
 
         CMOSampleRequestDetailsResponse cmoSampleRequestDetailsResponse = restTemplate.getForObject
                 (getCMOSampleRequestDetailsQuery(trackingId),
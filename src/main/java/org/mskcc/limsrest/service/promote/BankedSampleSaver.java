@@ -7,6 +7,10 @@ import org.apache.commons.logging.LogFactory;
 import org.mskcc.domain.sample.BankedSample;
 
 import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 public class BankedSampleSaver implements RecordSaver {
     private static final Log LOGGER = LogFactory.getLog(BankedSampleSaver.class);
@@ -24,6 +28,32 @@ public class BankedSampleSaver implements RecordSaver {
         }
     }
 
+    /**
+     * Adds all banked samples with one call and commits them at once, if the commit fails none of them is saved.
+     */
+    @Override
+    public List<String> saveAll(List<BankedSample> bankedSamples, DataRecordManager dataRecordManager, User user) {
+        if (bankedSamples.isEmpty())
+            return Collections.emptyList();
+
+        List<String> userSampleIds = bankedSamples.stream()
+                .map(BankedSample::getUserSampleID)
+                .collect(Collectors.toList());
+        try {
+            LOGGER.info(String.format("Saving Banked Samples: %s", userSampleIds));
+
+            List<Map<String, Object>> fields = bankedSamples.stream()
+                    .map(BankedSample::getFields)
+                    .collect(Collectors.toList());
+            dataRecordManager.addDataRecords(BankedSample.DATA_TYPE_NAME, fields, user);
+            dataRecordManager.storeAndCommit(String.format("Created Banked Samples %s", userSampleIds), user);
+            return Collections.emptyList();
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Saving Banked Samples %s failed", userSampleIds), e);
+            return userSampleIds;
+        }
+    }
+
     protected DataRecord addBankedSampleRecord(DataRecordManager dataRecordManager, User user) throws IoError,
             NotFound, AlreadyExists, InvalidValue, RemoteException {
         return dataRecordManager.addDataRecord("BankedSample", user);
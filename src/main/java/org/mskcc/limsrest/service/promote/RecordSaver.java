@@ -4,6 +4,21 @@ import com.velox.api.datarecord.DataRecordManager;
 import com.velox.api.user.User;
 import org.mskcc.domain.sample.BankedSample;
 
+import java.util.Collections;
+import java.util.List;
+
 public interface RecordSaver {
     void save(BankedSample bankedSample, DataRecordManager dataRecordManager, User user);
+
+    /**
+     * Saves the banked samples together.
+     *
+     * @return user sample ids of the banked samples which failed to save
+     */
+    default List<String> saveAll(List<BankedSample> bankedSamples, DataRecordManager dataRecordManager, User user) {
+        for (BankedSample bankedSample : bankedSamples) {
+            save(bankedSample, dataRecordManager, user);
+        }
+        return Collections.emptyList();
+    }
 }
@@ -5,7 +5,9 @@ import com.velox.api.user.User;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
+import org.mskcc.limsrest.util.RecordSnapshot;
 
+import java.rmi.RemoteException;
 import java.util.*;
 
 import static org.mskcc.limsrest.util.StatusTrackerConfig.*;
@@ -30,13 +32,15 @@ public class ProjectSampleTree {
     private Map<String, StageTracker> stageMap;         // Map to all stages by their stage name
     private Map<String, Object> sampleData;
     private User user;                                  // TODO - should this be elsewhere?
+    private SampleTreePrefetch prefetch;                // Sample subtree of the request, loaded before traversal
     private boolean isIgoComplete;                      // Is Sample complete or not
     private String correctedInvestigatorSampleId;
     private String sampleName;
     private String investigatorSampleId;
 
-    public ProjectSampleTree(WorkflowSample root, User user) {
+    public ProjectSampleTree(WorkflowSample root, User user, SampleTreePrefetch prefetch) {
         this.user = user;
+        this.prefetch = prefetch;
         this.root = root;
         this.sampleMap = new HashMap<>();
         this.stageMap = new TreeMap<>(new StageComp()); // Order map by order of stages
@@ -84,10 +88,17 @@ public class ProjectSampleTree {
             String stageKey = stageToMaterialMap.get(stage);
             if(!this.sampleData.containsKey(stageKey)){
                 // Add concentration volume
-                Double remainingVolume = getRecordDoubleValue(record, "Volume", this.user);
-                Double concentration = getRecordDoubleValue(record, "Concentration", this.user);
-                Double mass = getRecordDoubleValue(record, "TotalMass", this.user);
-                String concentrationUnits = getRecordStringValue(record, "ConcentrationUnits", this.user);
+                RecordSnapshot sample;
+                try {
+                    sample = RecordSnapshot.of(record, this.user);
+                } catch (RemoteException e) {
+                    log.error(String.format("Failed to read quantity of Sample Record: %d", record.getRecordId()));
+                    return;
+                }
+                Double remainingVolume = sample.getDoubleVal("Volume");
+                Double concentration = sample.getDoubleVal("Concentration");
+                Double mass = sample.getDoubleVal("TotalMass");
+                String concentrationUnits = sample.getStringValue("ConcentrationUnits");
 
                 // Since Sample DataRecords can have these fields, but aren't actively used, we only populate on non-null
                 if (remainingVolume != null && remainingVolume > 0){
@@ -164,6 +175,10 @@ public class ProjectSampleTree {
         return this.user;
     }
 
+    public SampleTreePrefetch getPrefetch() {
+        return this.prefetch;
+    }
+
     /**
      * Adds stage to known Stages of this tree
      *
@@ -0,0 +1,163 @@
+package org.mskcc.limsrest.service.requesttracker;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sloan.cmo.recmodels.SampleModel;
+import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.mskcc.domain.sample.CmoSampleInfo;
+
+import java.util.*;
+
+import static org.mskcc.limsrest.util.Utils.getChildrenofDataRecord;
+import static org.mskcc.limsrest.util.Utils.getDescendantsOfType;
+
+/**
+ * In-memory copy of the Sample tree below the samples of a request, along with the SeqAnalysisSampleQC and
+ * SampleCMOInfoRecords children of each sample.
+ *
+ * The tree is loaded level by level, each level costs one list-based getChildrenOfType call per child DataType
+ * instead of one call per sample. Lookups for records that were not prefetched (e.g. a level that failed to load) fall
+ * back to querying the LIMS for that record.
+ */
+public class SampleTreePrefetch {
+    private static Log log = LogFactory.getLog(SampleTreePrefetch.class);
+
+    private final User user;
+    private final Map<Long, List<DataRecord>> sampleChildren = new HashMap<>();
+    private final Map<Long, List<DataRecord>> qcChildren = new HashMap<>();
+    private final Map<Long, List<DataRecord>> cmoInfoChildren = new HashMap<>();
+    private final Map<Long, List<DataRecord>> qcDescendants = new HashMap<>();
+
+    private SampleTreePrefetch(User user) {
+        this.user = user;
+    }
+
+    /**
+     * Loads the Sample subtree of the input @roots
+     *
+     * @param roots - Sample DataRecords that are immediate children of the request
+     * @param drm
+     * @param user
+     * @return
+     */
+    public static SampleTreePrefetch load(List<DataRecord> roots, DataRecordManager drm, User user) {
+        SampleTreePrefetch prefetch = new SampleTreePrefetch(user);
+        long start = System.currentTimeMillis();
+
+        prefetch.loadChildren(roots, CmoSampleInfo.DATA_TYPE_NAME, prefetch.cmoInfoChildren, drm);
+
+        Set<Long> visited = new HashSet<>();
+        List<DataRecord> level = new ArrayList<>(roots);
+        int depth = 0;
+        while (!level.isEmpty()) {
+            // Pooled samples can be reached from several parents, each record is expanded once
+            List<DataRecord> unvisited = new ArrayList<>();
+            for (DataRecord record : level) {
+                if (visited.add(record.getRecordId())) {
+                    unvisited.add(record);
+                }
+            }
+            if (unvisited.isEmpty()) break;
+
+            prefetch.loadChildren(unvisited, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, prefetch.qcChildren, drm);
+            level = prefetch.loadChildren(unvisited, SampleModel.DATA_TYPE_NAME, prefetch.sampleChildren, drm);
+            depth++;
+        }
+        log.info(String.format("Prefetched %d Sample records in %d levels in %d ms", visited.size(), depth,
+                System.currentTimeMillis() - start));
+
+        return prefetch;
+    }
+
+    /**
+     * Queries the @childDataType children of all @parents in one call and stores them by parent record ID
+     *
+     * @return all children that were found
+     */
+    private List<DataRecord> loadChildren(List<DataRecord> parents, String childDataType,
+                                          Map<Long, List<DataRecord>> childMap, DataRecordManager drm) {
+        List<DataRecord> allChildren = new ArrayList<>();
+        if (parents.isEmpty()) return allChildren;
+
+        List<List<DataRecord>> children;
+        try {
+            children = drm.getChildrenOfType(parents, childDataType, this.user);
+        } catch (Exception e) {
+            log.error(String.format("Failed to prefetch %s children of %d records: %s", childDataType,
+                    parents.size(), e.getMessage()));
+            return allChildren;
+        }
+        for (int i = 0; i < parents.size(); i++) {
+            List<DataRecord> recordChildren = children.get(i);
+            childMap.put(parents.get(i).getRecordId(), recordChildren);
+            allChildren.addAll(recordChildren);
+        }
+        return allChildren;
+    }
+
+    /**
+     * Returns the Sample children of the input @record
+     */
+    public DataRecord[] getSampleChildren(DataRecord record) {
+        List<DataRecord> children = this.sampleChildren.get(record.getRecordId());
+        if (children == null) {
+            return getChildrenofDataRecord(record, SampleModel.DATA_TYPE_NAME, this.user);
+        }
+        return children.toArray(new DataRecord[0]);
+    }
+
+    /**
+     * Returns the SeqAnalysisSampleQC children of the input @record
+     */
+    public DataRecord[] getQcChildren(DataRecord record) {
+        List<DataRecord> children = this.qcChildren.get(record.getRecordId());
+        if (children == null) {
+            return getChildrenofDataRecord(record, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+        }
+        return children.toArray(new DataRecord[0]);
+    }
+
+    /**
+     * Returns the SampleCMOInfoRecords children of the input @record
+     */
+    public DataRecord[] getCmoInfoChildren(DataRecord record) {
+        List<DataRecord> children = this.cmoInfoChildren.get(record.getRecordId());
+        if (children == null) {
+            return getChildrenofDataRecord(record, CmoSampleInfo.DATA_TYPE_NAME, this.user);
+        }
+        return children.toArray(new DataRecord[0]);
+    }
+
+    /**
+     * Returns all SeqAnalysisSampleQC records descending from the input @record, taken from the prefetched tree
+     */
+    public List<DataRecord> getQcDescendants(DataRecord record) {
+        Long recordId = record.getRecordId();
+        if (!this.sampleChildren.containsKey(recordId) || !this.qcChildren.containsKey(recordId)) {
+            return getDescendantsOfType(record, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+        }
+        List<DataRecord> cached = this.qcDescendants.get(recordId);
+        if (cached != null) return cached;
+
+        Map<Long, DataRecord> descendants = new LinkedHashMap<>();
+        Set<Long> visited = new HashSet<>();
+        Deque<DataRecord> stack = new ArrayDeque<>();
+        stack.push(record);
+        while (!stack.isEmpty()) {
+            DataRecord next = stack.pop();
+            if (!visited.add(next.getRecordId())) continue;
+            for (DataRecord qc : getQcChildren(next)) {
+                descendants.put(qc.getRecordId(), qc);
+            }
+            for (DataRecord child : getSampleChildren(next)) {
+                stack.push(child);
+            }
+        }
+        List<DataRecord> result = new ArrayList<>(descendants.values());
+        this.qcDescendants.put(recordId, result);
+        return result;
+    }
+}
@@ -4,14 +4,12 @@ package org.mskcc.limsrest.service.requesttracker;
 import com.velox.api.datarecord.DataRecord;
 import com.velox.api.user.User;
 import com.velox.sloan.cmo.recmodels.SampleModel;
-import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.platform.commons.util.StringUtils;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.util.LimsStage;
 
-import java.rmi.RemoteException;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -45,7 +43,7 @@ public class WorkflowSample extends StatusTracker {
     private List<DataRecord> seqAnalysisQcRecords;
     private User user;
 
-    public WorkflowSample(DataRecord record, ConnectionLIMS conn) {
+    public WorkflowSample(DataRecord record, ConnectionLIMS conn, SampleTreePrefetch prefetch) {
         // Workflow samples don't have a size - they are the extension of the root ProjectSample
         setSize(0);
 
@@ -59,7 +57,7 @@ public class WorkflowSample extends StatusTracker {
 
         this.complete = Boolean.FALSE;
 
-        enrichSample(conn);
+        enrichSample(conn, prefetch);
     }
 
     public List<DataRecord> getSeqAnalysisQcRecords() {
@@ -97,43 +95,39 @@ public class WorkflowSample extends StatusTracker {
     /**
      * Add values for all sample fields that require a database call
      */
-    public void enrichSample(ConnectionLIMS conn) {
+    public void enrichSample(ConnectionLIMS conn, SampleTreePrefetch prefetch) {
         if (this.record == null || this.user == null) return;
 
         String status = getRecordStringValue(this.record, SampleModel.EXEMPLAR_SAMPLE_STATUS, this.user);
         this.sourceSampleId = getRecordStringValue(this.record, SampleModel.SOURCE_LIMS_ID, this.user);
         String stageName = STAGE_AWAITING_PROCESSING;
 
-        DataRecord[] sampleQcRecords = getChildrenofDataRecord(this.record, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
+        DataRecord[] sampleQcRecords = prefetch.getQcChildren(this.record);
         if (sampleQcRecords.length > 0) {
             // Check immediate children (cheaper) prior to checking for all descendants (more expensive)
-            try {
-                /**
-                 *    +-----+     +------+
-                 *    | WS1 |     | QC1  |
-                 *    +------------------+
-                 *       |
-                 *    +--v--+
-                 *    | WS2 |
-                 *    +-----+
-                 *       |
-                 *    +--v--+     +------+
-                 *    | WS3 |     | QC2  |
-                 *    +------------------+
-                 *
-                 * A Sample DataRecord (WS1) can have a SeqAnalysisSampleQCModel child (QC1) AND have children Sample
-                 * DataRecords (WS3) that also have SeqAnalysisSampleQCModel children (QC2).
-                 * We want all descendant SeqAnalysisSampleQCModel from the input Sample DataRecord, @this.record, b/c:
-                 *      - If either QC1 or QC2 is IGO-Complete, the ProjectSample is IGO-Complete
-                 *      - If QC1 is failed, it's possible for QC2 to be IGO-Complete
-                 * In other words, we can't evaluate on the immediate SeqAnalysisSampleQCModel children of a Workflow
-                 * sample
-                 */
-                List<DataRecord> allDescendingQcSamples = this.record.getDescendantsOfType(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, this.user);
-                addSeqAnalysisQcRecords(allDescendingQcSamples);
-            } catch (RemoteException e) {
-                log.error(String.format("Unable to retrieve sampleQcRecords from %d", record.getRecordId()));
-            }
+            /**
+             *    +-----+     +------+
+             *    | WS1 |     | QC1  |
+             *    +------------------+
+             *       |
+             *    +--v--+
+             *    | WS2 |
+             *    +-----+
+             *       |
+             *    +--v--+     +------+
+             *    | WS3 |     | QC2  |
+             *    +------------------+
+             *
+             * A Sample DataRecord (WS1) can have a SeqAnalysisSampleQCModel child (QC1) AND have children Sample
+             * DataRecords (WS3) that also have SeqAnalysisSampleQCModel children (QC2).
+             * We want all descendant SeqAnalysisSampleQCModel from the input Sample DataRecord, @this.record, b/c:
+             *      - If either QC1 or QC2 is IGO-Complete, the ProjectSample is IGO-Complete
+             *      - If QC1 is failed, it's possible for QC2 to be IGO-Complete
+             * In other words, we can't evaluate on the immediate SeqAnalysisSampleQCModel children of a Workflow
+             * sample
+             */
+            List<DataRecord> allDescendingQcSamples = prefetch.getQcDescendants(this.record);
+            addSeqAnalysisQcRecords(allDescendingQcSamples);
         }
 
         try {
@@ -17,15 +17,12 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.json.JSONObject;
 import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.util.BasicMail;
 import static org.mskcc.limsrest.util.Utils.*;
 
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.rmi.RemoteException;
 import java.util.*;
 
@@ -43,13 +40,15 @@ public class UpdateLimsSampleLevelSequencingQcTask {
     String appPropertyFile = "/app.properties";
     String inital_qc_status = "Under-Review";
     private ConnectionLIMS conn;
+    private HttpClientPool httpClient;
     User user;
 
     private String runId;
 
-    public UpdateLimsSampleLevelSequencingQcTask(String runId, ConnectionLIMS conn) {
+    public UpdateLimsSampleLevelSequencingQcTask(String runId, ConnectionLIMS conn, HttpClientPool httpClient) {
         this.runId = runId;
         this.conn = conn;
+        this.httpClient = httpClient;
     }
 
     public Map<String, String> execute() {
@@ -176,21 +175,10 @@ public class UpdateLimsSampleLevelSequencingQcTask {
      * @return
      */
     private JSONObject getStatsFromDb() {
-        HttpURLConnection con;
         String url = getStatsUrl();
-        StringBuilder response = new StringBuilder();
         try {
             assert url != null;
-            con = (HttpURLConnection) new URL(url).openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            return new JSONObject(response.toString());
+            return new JSONObject(httpClient.getForString(url));
         } catch (Exception e) {
             log.info(String.format("Error while querying ngs-stats endpoint using url %s.\n%s:%s", url, ExceptionUtils.getMessage(e), ExceptionUtils.getStackTrace(e)));
             return new JSONObject();
@@ -0,0 +1,178 @@
+package org.mskcc.limsrest.util;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONObject;
+import org.mskcc.limsrest.HttpClientPool;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+
+/**
+ * In-memory copy of the DMP 12-245 consent lists (part A and part C) used by /getWESSampleData.
+ * <BR>
+ * Each list is downloaded once and kept as the set of consented patient ids. When a copy is older than the TTL the next
+ * lookup still answers from it and a background thread asks draco for the list again, sending the ETag and
+ * Last-Modified validators of the copy so an unchanged list is not downloaded again.
+ */
+public class ConsentStatusCache {
+    private static Log log = LogFactory.getLog(ConsentStatusCache.class);
+
+    public static final String PART_A_URL = "http://draco.mskcc.org:9890/get_12245_list_parta";
+    public static final String PART_C_URL = "http://draco.mskcc.org:9890/get_12245_list_partc";
+
+    private final BiFunction<String, HttpHeaders, ResponseEntity<String>> client;
+    private final long ttlMillis;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "consent-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    // url -> latest copy of the list
+    private final Map<String, ConsentList> lists = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong downloads = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * @param client    GETs a url with the request headers
+     * @param ttlMillis age after which a list is checked for changes
+     */
+    public ConsentStatusCache(BiFunction<String, HttpHeaders, ResponseEntity<String>> client, long ttlMillis) {
+        this.client = client;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public ConsentStatusCache(HttpClientPool httpClient, long ttlMillis) {
+        this(httpClient::getForEntity, ttlMillis);
+    }
+
+    /**
+     * Returns the ids of the patients consented to a part of the protocol.
+     *
+     * @param consentType "parta" for part A, any other value for part C
+     * @return the consented patient ids or null if the list could not be loaded
+     */
+    public Set<String> getConsentedPatients(String consentType) {
+        String url = "parta".equals(consentType.toLowerCase()) ? PART_A_URL : PART_C_URL;
+        ConsentList current = lists.get(url);
+        if (current == null) {
+            synchronized (this) {
+                if (!lists.containsKey(url))
+                    refresh(url);
+                current = lists.get(url);
+            }
+            return current == null ? null : current.patients;
+        }
+        if (System.currentTimeMillis() - current.checkedAt > ttlMillis)
+            refreshInBackground(url);
+        return current.patients;
+    }
+
+    /**
+     * Loads both lists in the background, used to warm the cache on startup.
+     */
+    public void preload() {
+        refreshInBackground(PART_A_URL);
+        refreshInBackground(PART_C_URL);
+    }
+
+    /**
+     * Downloads the list unless draco reports it unchanged since the copy held, on failure the copy is kept.
+     *
+     * @return true if the list is up to date
+     */
+    public boolean refresh(String url) {
+        long start = System.currentTimeMillis();
+        ConsentList current = lists.get(url);
+        HttpHeaders headers = new HttpHeaders();
+        if (current != null && current.etag != null)
+            headers.set(HttpHeaders.IF_NONE_MATCH, current.etag);
+        if (current != null && current.lastModified != null)
+            headers.set(HttpHeaders.IF_MODIFIED_SINCE, current.lastModified);
+        try {
+            ResponseEntity<String> response = client.apply(url, headers);
+            if (current != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                lists.put(url, new ConsentList(current.patients, current.etag, current.lastModified));
+                notModified.incrementAndGet();
+                return true;
+            }
+            ConsentList loaded = new ConsentList(parse(response.getBody()), response.getHeaders().getETag(),
+                    response.getHeaders().getFirst(HttpHeaders.LAST_MODIFIED));
+            lists.put(url, loaded);
+            downloads.incrementAndGet();
+            log.info(String.format("Loaded %d consented patients from %s in %d ms", loaded.patients.size(), url,
+                    System.currentTimeMillis() - start));
+            return true;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            log.error(String.format("Failed to load consent list %s: %s", url, e.getMessage()));
+            return false;
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        Map<String, Object> patients = new LinkedHashMap<>();
+        lists.forEach((url, list) -> patients.put(url, list.patients.size()));
+        metrics.put("consentedPatients", patients);
+        metrics.put("downloads", downloads.get());
+        metrics.put("notModified", notModified.get());
+        metrics.put("failures", failures.get());
+        return metrics;
+    }
+
+    private void refreshInBackground(String url) {
+        if (refreshing.add(url)) {
+            refresher.submit(() -> {
+                try {
+                    refresh(url);
+                } finally {
+                    refreshing.remove(url);
+                }
+            });
+        }
+    }
+
+    /**
+     * Reads the consented patients from a response of the form {"cases": {"P-0000001": true, ...}}.
+     */
+    private static Set<String> parse(String body) {
+        JSONObject cases = new JSONObject(body).getJSONObject("cases");
+        Set<String> patients = new HashSet<>();
+        for (String patientId : cases.keySet()) {
+            if (Boolean.TRUE.equals(cases.get(patientId)))
+                patients.add(patientId);
+        }
+        return Collections.unmodifiableSet(patients);
+    }
+
+    /**
+     * One immutable copy of a consent list, along with the validators draco sent with it.
+     */
+    private static class ConsentList {
+        private final long checkedAt = System.currentTimeMillis();
+        private final Set<String> patients;
+        private final String etag;
+        private final String lastModified;
+
+        ConsentList(Set<String> patients, String etag, String lastModified) {
+            this.patients = patients;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package org.mskcc.limsrest.util;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.mskcc.limsrest.HttpClientPool;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-memory copy of the oncotree tumor types used to resolve the main tumor type of a LIMS tumor type.
+ * <BR>
+ * The full list of tumor types is loaded once and both the name and code lookups are answered from memory. When the
+ * copy is older than the TTL the next lookup still answers from it and a background thread reloads the list. While no
+ * list could be loaded one lookup per retry interval tries to load it and {@link #resolveMainType(String)} falls back
+ * to the oncotree search API.
+ */
+public class OncotreeTumorTypeCache {
+    private static Log log = LogFactory.getLog(OncotreeTumorTypeCache.class);
+
+    public static final String TUMOR_TYPES_URL = "http://oncotree.mskcc.org/api/tumorTypes";
+    public static final String SEARCH_URL = "http://oncotree.mskcc.org/api/tumorTypes/search/";
+    // time between two loads of the tumor types while none could be loaded
+    private static final long RETRY_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Callable<JSONArray> loader;
+    private final Function<String, JSONArray> search;
+    private final long ttlMillis;
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "oncotree-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private final AtomicLong lastAttempt = new AtomicLong();
+
+    private volatile TumorTypes tumorTypes;
+
+    /**
+     * @param loader    returns the oncotree tumor types as the JSON array served by the oncotree API
+     * @param search    returns the JSON array served by the oncotree search API for a search url
+     * @param ttlMillis age after which the tumor types are reloaded
+     */
+    public OncotreeTumorTypeCache(Callable<JSONArray> loader, Function<String, JSONArray> search, long ttlMillis) {
+        this.loader = loader;
+        this.search = search;
+        this.ttlMillis = ttlMillis;
+    }
+
+    public OncotreeTumorTypeCache(HttpClientPool httpClient, long ttlMillis) {
+        this(() -> new JSONArray(httpClient.getForString(TUMOR_TYPES_URL)),
+                url -> new JSONArray(httpClient.getForString(url)), ttlMillis);
+    }
+
+    /**
+     * Get MainCancerType from oncotree. Answered from the cached tumor types, the oncotree search API is only queried
+     * when the tumor types could not be loaded.
+     *
+     * @param tumorType tumor type name or code as entered in the LIMS
+     * @return the main tumor type or "" if oncotree has no match
+     */
+    public String resolveMainType(String tumorType) {
+        String mainTumorType = getMainType(tumorType);
+        if (mainTumorType != null)
+            return mainTumorType;
+        try {
+            if (getName(tumorType).isEmpty())
+                return "";
+            // In LIMS tumor types entry is not controlled. Sometimes tumor type as tumor name is entered and other times tumor type code is entered.
+            // First query oncotree using api for name search
+            String searched = tumorType.split("/")[0].replace(" ", "%20");
+            mainTumorType = searchByName(SEARCH_URL + "name/" + searched + "?exactMatch=false");
+            // If name search returns nothing, then query oncotree using api for code search
+            if (StringUtils.isBlank(mainTumorType))
+                mainTumorType = searchByCode(SEARCH_URL + "code/" + searched + "?exactMatch=true", tumorType);
+        } catch (Exception e) {
+            log.error(String.format("Error occured while querying oncotree end point for Tumor Type %s\n%s", tumorType, e.getMessage()));
+            return "";
+        }
+        return mainTumorType;
+    }
+
+    /**
+     * Resolves the main tumor type the same way as the oncotree search API: first by name, the tumor type is matched
+     * exactly and then as part of a name, and if no name matches then by code.
+     *
+     * @param tumorType tumor type name or code as entered in the LIMS
+     * @return the main tumor type, "" if oncotree has no match or null if the tumor types could not be loaded
+     */
+    public String getMainType(String tumorType) {
+        TumorTypes current = getTumorTypes();
+        if (current == null)
+            return null;
+        if (StringUtils.isBlank(tumorType))
+            return "";
+        return current.resolved.computeIfAbsent(tumorType, current::resolve);
+    }
+
+    /**
+     * Loads the tumor types in the background, used to warm the cache on startup.
+     */
+    public void preload() {
+        refreshInBackground();
+    }
+
+    /**
+     * Reloads the tumor types, on failure the previous tumor types are kept.
+     *
+     * @return true if the tumor types were loaded
+     */
+    public boolean refresh() {
+        long start = System.currentTimeMillis();
+        lastAttempt.set(start);
+        try {
+            TumorTypes loaded = new TumorTypes(loader.call());
+            synchronized (this) {
+                // a slower load started earlier must not replace a newer list
+                if (tumorTypes == null || tumorTypes.loadedAt <= loaded.loadedAt)
+                    tumorTypes = loaded;
+            }
+            log.info(String.format("Loaded %d oncotree tumor types in %d ms", loaded.size(),
+                    System.currentTimeMillis() - start));
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to load oncotree tumor types: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private TumorTypes getTumorTypes() {
+        TumorTypes current = tumorTypes;
+        if (current == null) {
+            // only the first lookup of a retry interval loads the list, the others don't wait for it
+            long attempt = lastAttempt.get();
+            long now = System.currentTimeMillis();
+            if (now - attempt >= RETRY_MILLIS && lastAttempt.compareAndSet(attempt, now))
+                refresh();
+            return tumorTypes;
+        }
+        if (System.currentTimeMillis() - current.loadedAt > ttlMillis)
+            refreshInBackground();
+        return current;
+    }
+
+    /**
+     * Main Tumor Type using Tumor Type Name eg: Breast Cancer or Pancreatic cancer etc.
+     */
+    private String searchByName(String url) {
+        try {
+            JSONArray oncotreeResponseData = search.apply(url);
+            if (oncotreeResponseData.length() > 0) {
+                Object mainType = oncotreeResponseData.getJSONObject(0).get("mainType");
+                return mainType != null ? mainType.toString() : "";
+            }
+        } catch (Exception e) {
+            log.info(String.format("Error while querying oncotree api for name search using url %s. Will attempt to search using oncotree api for code search:\n%s", url, e.getMessage()));
+        }
+        return "";
+    }
+
+    /**
+     * Main Tumor Type using TumorType CODE or abbreviation eg: BRCA for Breast Cancer and PAAD for Pancreatic cancer etc.
+     */
+    private String searchByCode(String url, String tumorType) {
+        try {
+            for (Object rec : search.apply(url)) {
+                Object code = ((JSONObject) rec).get("code");
+                if (code != null && tumorType.toLowerCase().equals(code.toString().trim().toLowerCase())) {
+                    Object mainType = ((JSONObject) rec).get("mainType");
+                    return mainType != null ? mainType.toString() : "";
+                }
+            }
+        } catch (Exception e) {
+            log.info(String.format("Error while querying oncotree api using code search using url %s. Cannot find Main tumor type.\n%s", url, e.getMessage()));
+        }
+        return "";
+    }
+
+    private void refreshInBackground() {
+        if (refreshing.compareAndSet(false, true)) {
+            refresher.submit(() -> {
+                try {
+                    refresh();
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * Name part of a LIMS tumor type, the text before the first "/", "" if there is none.
+     */
+    private static String getName(String tumorType) {
+        String[] parts = tumorType.split("/");
+        return parts.length == 0 ? "" : parts[0].trim();
+    }
+
+    /**
+     * One immutable load of the tumor types, along with the lookups already resolved against it.
+     */
+    private static class TumorTypes {
+        private final long loadedAt = System.currentTimeMillis();
+        private final List<String[]> names = new ArrayList<>(); // {lower case name, main type} in oncotree order
+        private final Map<String, String> mainTypeByName = new HashMap<>();
+        private final Map<String, String> mainTypeByCode = new HashMap<>();
+        private final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+        TumorTypes(JSONArray oncotreeResponseData) {
+            for (Object rec : oncotreeResponseData) {
+                JSONObject tumorType = (JSONObject) rec;
+                String mainType = tumorType.optString("mainType", "");
+                String name = tumorType.optString("name", "").trim().toLowerCase();
+                String code = tumorType.optString("code", "").trim().toLowerCase();
+                names.add(new String[]{name, mainType});
+                mainTypeByName.putIfAbsent(name, mainType);
+                if (!code.isEmpty())
+                    mainTypeByCode.putIfAbsent(code, mainType);
+            }
+        }
+
+        int size() {
+            return names.size();
+        }
+
+        String resolve(String tumorType) {
+            try {
+                // LIMS tumor types are free text, sometimes the name is entered and other times the code
+                String name = getName(tumorType).toLowerCase();
+                // an empty name would be part of every name
+                if (name.isEmpty())
+                    return "";
+                String mainType = mainTypeByName.get(name);
+                if (mainType == null) {
+                    for (String[] entry : names) {
+                        if (entry[0].contains(name)) {
+                            mainType = entry[1];
+                            break;
+                        }
+                    }
+                }
+                if (StringUtils.isNotBlank(mainType))
+                    return mainType;
+                return mainTypeByCode.getOrDefault(tumorType.trim().toLowerCase(), "");
+            } catch (Exception e) {
+                log.error(String.format("Error occured while resolving Tumor Type %s\n%s", tumorType, e.getMessage()));
+                return "";
+            }
+        }
+    }
+}
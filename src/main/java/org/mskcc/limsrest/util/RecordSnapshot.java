@@ -0,0 +1,138 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+
+import java.rmi.RemoteException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Field values of a DataRecord read once and served from memory.
+ * <BR>
+ * Every getter of a DataRecord is a call to the LIMS, and the Utils helpers make two per field. A snapshot reads all
+ * fields with one getFields call, or the fields of a list of records with one getFieldsForRecords call. The getters
+ * mirror the DataRecord getters and the Utils helpers they replace. A snapshot does not see changes made to the record
+ * after it was taken.
+ */
+public class RecordSnapshot {
+    /**
+     * Snapshot of a missing record, all its fields are empty.
+     */
+    public static final RecordSnapshot EMPTY = new RecordSnapshot(null, Collections.emptyMap());
+
+    private final DataRecord record;
+    private final Map<String, Object> fields;
+
+    public RecordSnapshot(DataRecord record, Map<String, Object> fields) {
+        this.record = record;
+        this.fields = fields == null ? Collections.emptyMap() : fields;
+    }
+
+    public static RecordSnapshot of(DataRecord record, User user) throws RemoteException {
+        return new RecordSnapshot(record, record.getFields(user));
+    }
+
+    /**
+     * Returns the snapshots of the records in the same order, the fields of all records are read with one call.
+     */
+    public static List<RecordSnapshot> of(List<DataRecord> records, DataRecordManager dataRecordManager, User user)
+            throws RemoteException {
+        List<RecordSnapshot> snapshots = new ArrayList<>(records.size());
+        if (records.isEmpty())
+            return snapshots;
+        List<Map<String, Object>> fields = dataRecordManager.getFieldsForRecords(records, user);
+        for (int i = 0; i < records.size(); i++) {
+            snapshots.add(new RecordSnapshot(records.get(i), fields.get(i)));
+        }
+        return snapshots;
+    }
+
+    /**
+     * The record of the snapshot, null for {@link #EMPTY}.
+     */
+    public DataRecord getRecord() {
+        return record;
+    }
+
+    public long getRecordId() {
+        return record == null ? 0 : record.getRecordId();
+    }
+
+    public Map<String, Object> getFields() {
+        return fields;
+    }
+
+    public Object getValue(String fieldName) {
+        return fields.get(fieldName);
+    }
+
+    public String getStringVal(String fieldName) {
+        Object value = fields.get(fieldName);
+        return value == null ? null : value.toString();
+    }
+
+    public Long getLongVal(String fieldName) {
+        Object value = fields.get(fieldName);
+        return value instanceof Number ? ((Number) value).longValue() : null;
+    }
+
+    public Integer getIntegerVal(String fieldName) {
+        Object value = fields.get(fieldName);
+        return value instanceof Number ? ((Number) value).intValue() : null;
+    }
+
+    public Short getShortVal(String fieldName) {
+        Object value = fields.get(fieldName);
+        return value instanceof Number ? ((Number) value).shortValue() : null;
+    }
+
+    public Double getDoubleVal(String fieldName) {
+        Object value = fields.get(fieldName);
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    public Boolean getBooleanVal(String fieldName) {
+        Object value = fields.get(fieldName);
+        if (value == null)
+            return null;
+        return value instanceof Boolean ? (Boolean) value : Boolean.valueOf(value.toString());
+    }
+
+    /**
+     * Same as {@link Utils#getRecordStringValue}, empty string when the field has no value.
+     */
+    public String getStringValue(String fieldName) {
+        String value = getStringVal(fieldName);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Same as {@link Utils#getValueFromDataRecord}, empty string when the field has no value and dates formatted as
+     * MM-dd-yyyy.
+     */
+    public Object getValue(String fieldName, String fieldType) {
+        if (fields.get(fieldName) == null) {
+            return "";
+        }
+        switch (fieldType) {
+            case "String":
+                return getStringVal(fieldName);
+            case "Integer":
+                return getIntegerVal(fieldName);
+            case "Long":
+                return getLongVal(fieldName);
+            case "Double":
+                return getDoubleVal(fieldName);
+            case "Date":
+                return new SimpleDateFormat("MM-dd-yyyy").format(new Date(getLongVal(fieldName)));
+            default:
+                return "";
+        }
+    }
+}
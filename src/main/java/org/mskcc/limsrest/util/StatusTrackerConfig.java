@@ -14,6 +14,11 @@ import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 
 import java.rmi.RemoteException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import static org.mskcc.limsrest.util.Utils.*;
@@ -136,6 +141,20 @@ public class StatusTrackerConfig {
         return (completedDate != null) && isExtractionRequest(record, user);
     }
 
+    /**
+     * Same as {@link #isIgoComplete(DataRecord, User)} for a snapshot of the request, must be kept in sync with it
+     *
+     * @param request, snapshot of the Request DataRecord
+     * @return
+     */
+    public static boolean isIgoComplete(RecordSnapshot request) {
+        if (request.getLongVal(RequestModel.RECENT_DELIVERY_DATE) != null) {
+            return true;
+        }
+        return request.getLongVal(RequestModel.COMPLETED_DATE) != null
+                && request.getStringValue(RequestModel.REQUEST_NAME).toLowerCase().contains("extraction");
+    }
+
     /**
      * Returns whether input DataRecord represents an Extraction request
      *
@@ -220,47 +239,137 @@ public class StatusTrackerConfig {
     private static final Log LOGGER = LogFactory.getLog(StatusTrackerConfig.class);
     // This flag is used to indicate if a a stage is complete when that workflow has been completed
     private static final String IS_COMPLETE_FIELD = "LIMS_COMPLETE_STATUS";
-    // Many Workflows -> One Stage. Maps workflows to the stage they belong to
-    private static final Map<String, LimsStage> workflowNameToStageMap = new HashMap<>();
+    // Many Workflows -> One Stage. Maps workflows to the stage they belong to, replaced as a whole on each refresh
+    private static volatile WorkflowStageSnapshot workflowStages;
+    private static volatile long workflowRefreshMillis = TimeUnit.HOURS.toMillis(1);
+    private static final Object workflowLoadLock = new Object();
+    private static final AtomicBoolean workflowRefreshing = new AtomicBoolean();
+    private static final AtomicLong workflowRefreshes = new AtomicLong();
+    private static final AtomicLong workflowRefreshFailures = new AtomicLong();
+    private static final ExecutorService workflowRefresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "workflow-stage-refresh");
+        t.setDaemon(true);
+        return t;
+    });
 
     /**
-     * Retrieving the workflowList, workflow names, & categories requires DB access and only needs to be done once. This
-     * ensures that the population is only done once. When called for the first time, the workflow map is computed from
-     * the input connection to the DB.
+     * Returns the current workflow to stage map. Retrieving the workflowList, workflow names, & categories requires DB
+     * access so the map is loaded once, from the caller's connection, and afterwards read without locking. Once the
+     * map is older than the refresh interval it is reloaded in the background and callers keep reading the old map
+     * until the new one replaces it.
      *
      * @param conn
      * @return
      */
-    private static synchronized Map<String, LimsStage> computeIfAbsentWorkflowMap(ConnectionLIMS conn) {
-        if (workflowNameToStageMap.size() == 0) {
-            VeloxConnection vConn = conn.getConnection();
-            User user = vConn.getUser();
-
-            Set<String> validStages = new HashSet<>(Arrays.asList(STAGE_ORDER));
-            try {
-                List<Workflow> workflowList = vConn.getDataMgmtServer().getWorkflowManager(user).getLatestWorkflowList(user);
-
-                // Create the mapping of the workflow name to its corresponding stage, stored in category
-                for (Workflow wkflw : workflowList) {
-                    // LIMS workflow's name is by default initialized on creation in LIMS, but the workflow creator
-                    // should also be responsible for populating the "Short Description" field with the desired stage
-                    String wkflwName = wkflw.getWorkflowName();
-
-                    String stageName = wkflw.getShortDesc();
-                    Boolean isComplete = isCompleteWorkflow(wkflw, stageName);
-                    LimsStage stage = new LimsStage(stageName, isComplete);
-                    if (!validStages.contains(stageName)) {
-                        // TODO - Send alert
-                        LOGGER.error(String.format("%s is not recognized as a valid stage. Please amend or remove", stageName));
-                    }
-
-                    workflowNameToStageMap.put(wkflwName, stage);
+    private static Map<String, LimsStage> getWorkflowMap(ConnectionLIMS conn) {
+        WorkflowStageSnapshot current = workflowStages;
+        if (current == null) {
+            synchronized (workflowLoadLock) {
+                if (workflowStages == null) {
+                    // may run on a thread without a web request, the connection is returned after the load
+                    conn.withConnection(() -> loadWorkflowMap(conn.getConnection()));
                 }
-            } catch (RemoteException | ServerException e) {
-                LOGGER.error("Could not fetch Lims Stage Name - Unable to get dataManagement Server");
+                current = workflowStages;
+            }
+            if (current == null) {
+                return Collections.emptyMap();
             }
+        } else if (System.currentTimeMillis() - current.loadedAt > workflowRefreshMillis) {
+            refreshWorkflowMapInBackground(conn);
+        }
+        return current.stages;
+    }
+
+    /**
+     * Reloads the workflow to stage map on a connection leased for the reload, e.g. after a workflow was added in LIMS
+     *
+     * @param conn
+     * @return true if the map was reloaded
+     */
+    public static boolean refreshWorkflowMap(ConnectionLIMS conn) {
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            return loadWorkflowMap(lease.getConnection());
+        } catch (RuntimeException e) {
+            workflowRefreshFailures.incrementAndGet();
+            LOGGER.error("Could not refresh workflow stages: " + e.getMessage());
+            return false;
+        }
+    }
+
+    private static void refreshWorkflowMapInBackground(ConnectionLIMS conn) {
+        if (workflowRefreshing.compareAndSet(false, true)) {
+            workflowRefresher.submit(() -> {
+                try {
+                    refreshWorkflowMap(conn);
+                } finally {
+                    workflowRefreshing.set(false);
+                }
+            });
+        }
+    }
+
+    public static void setWorkflowRefreshMillis(long refreshMillis) {
+        workflowRefreshMillis = refreshMillis;
+    }
+
+    public static Map<String, Object> getWorkflowMapMetrics() {
+        WorkflowStageSnapshot current = workflowStages;
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("workflows", current == null ? 0 : current.stages.size());
+        metrics.put("loadedAt", current == null ? null : new Date(current.loadedAt));
+        metrics.put("loadMillis", current == null ? null : current.loadMillis);
+        metrics.put("refreshes", workflowRefreshes.get());
+        metrics.put("refreshFailures", workflowRefreshFailures.get());
+        return metrics;
+    }
+
+    private static boolean loadWorkflowMap(VeloxConnection vConn) {
+        long start = System.currentTimeMillis();
+        User user = vConn.getUser();
+
+        Set<String> validStages = new HashSet<>(Arrays.asList(STAGE_ORDER));
+        Map<String, LimsStage> workflowNameToStageMap = new HashMap<>();
+        try {
+            List<Workflow> workflowList = vConn.getDataMgmtServer().getWorkflowManager(user).getLatestWorkflowList(user);
+
+            // Create the mapping of the workflow name to its corresponding stage, stored in category
+            for (Workflow wkflw : workflowList) {
+                // LIMS workflow's name is by default initialized on creation in LIMS, but the workflow creator
+                // should also be responsible for populating the "Short Description" field with the desired stage
+                String wkflwName = wkflw.getWorkflowName();
+
+                String stageName = wkflw.getShortDesc();
+                Boolean isComplete = isCompleteWorkflow(wkflw, stageName);
+                LimsStage stage = new LimsStage(stageName, isComplete);
+                if (!validStages.contains(stageName)) {
+                    // TODO - Send alert
+                    LOGGER.error(String.format("%s is not recognized as a valid stage. Please amend or remove", stageName));
+                }
+
+                workflowNameToStageMap.put(wkflwName, stage);
+            }
+        } catch (RemoteException | ServerException e) {
+            workflowRefreshFailures.incrementAndGet();
+            LOGGER.error("Could not fetch Lims Stage Name - Unable to get dataManagement Server");
+            return false;
+        }
+        long loadMillis = System.currentTimeMillis() - start;
+        workflowStages = new WorkflowStageSnapshot(Collections.unmodifiableMap(workflowNameToStageMap), start, loadMillis);
+        workflowRefreshes.incrementAndGet();
+        LOGGER.info(String.format("Loaded %d workflow stages in %d ms", workflowNameToStageMap.size(), loadMillis));
+        return true;
+    }
+
+    private static class WorkflowStageSnapshot {
+        private final Map<String, LimsStage> stages;
+        private final long loadedAt;
+        private final long loadMillis;
+
+        WorkflowStageSnapshot(Map<String, LimsStage> stages, long loadedAt, long loadMillis) {
+            this.stages = stages;
+            this.loadedAt = loadedAt;
+            this.loadMillis = loadMillis;
         }
-        return workflowNameToStageMap;
     }
 
     /**
@@ -293,9 +402,9 @@ public class StatusTrackerConfig {
      */
     public static LimsStage getLimsStageFromStatus(ConnectionLIMS conn, String status) {
         String workflowName = getWorkflowNameFromStatus(status);
-        Map<String, LimsStage> workflowMap = computeIfAbsentWorkflowMap(conn);
-        if (workflowMap.containsKey(workflowName)) {
-            return workflowMap.get(workflowName);
+        LimsStage stage = getWorkflowMap(conn).get(workflowName);
+        if (stage != null) {
+            return stage;
         }
         LOGGER.warn(String.format("Stage (Short Description) for Exemplar status not found: %s", status));
         return new LimsStage(STAGE_AWAITING_PROCESSING, false);
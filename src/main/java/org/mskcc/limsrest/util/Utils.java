@@ -10,18 +10,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import org.mskcc.domain.sample.NucleicAcid;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.assignedprocess.QcStatus;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.rmi.RemoteException;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -446,131 +440,18 @@ public class Utils {
 
 
     /**
-     * Method to get Main Tumor Type using Tumor Type Name eg: Breast Cancer or Pancreatic cancer etc.
-     *
-     * @param url
-     * @return String
-     */
-    private static String getOncotreeTumorTypeUsingName(URL url) {
-        HttpURLConnection con = null;
-        StringBuilder response = new StringBuilder();
-        JSONArray oncotreeResponseData = null;
-        try {
-            con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            oncotreeResponseData = new JSONArray(response.toString());
-            if (oncotreeResponseData.length() > 0) {
-                JSONObject jsonObject = oncotreeResponseData.getJSONObject(0);
-                Object mainType = jsonObject.get("mainType");
-                return mainType != null ? mainType.toString() : "";
-            }
-        } catch (Exception e) {
-            LOGGER.info(String.format("Error while querying oncotree api for name search using url %s. Will attempt to search using oncotree api for code search:\n%s", url, e.getMessage()));
-            return "";
-        }
-        return "";
-    }
-
-    /**
-     * Method to get Main Tumor Type using TumorType CODE or abbreviation eg: BRCA for Breast Cancer and PAAD for
-     * Pancreatic cancer etc.
-     *
-     * @param url
-     * @param tumorType
-     * @return String
-     */
-    private static String getOncotreeTumorTypeUsingCode(URL url, String tumorType) {
-        HttpURLConnection con = null;
-        StringBuilder response = new StringBuilder();
-        JSONArray oncotreeResponseData = null;
-        try {
-            con = (HttpURLConnection) url.openConnection();
-            con.setRequestMethod("GET");
-            BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-            String inputLine;
-            while ((inputLine = in.readLine()) != null) {
-                response.append(inputLine);
-            }
-            in.close();
-            con.disconnect();
-            oncotreeResponseData = new JSONArray(response.toString());
-            if (oncotreeResponseData.length() > 0) {
-                for (Object rec : oncotreeResponseData) {
-                    Object code = ((JSONObject) rec).get("code");
-                    if (code != null && tumorType.toLowerCase().equals(code.toString().trim().toLowerCase())) {
-                        Object mainType = ((JSONObject) rec).get("mainType");
-                        return mainType != null ? mainType.toString() : "";
-                    }
-                }
-            }
-        } catch (Exception e) {
-            LOGGER.info(String.format("Error while querying oncotree api using code search using url %s. Cannot find Main tumor type.\n%s", url, e.getMessage()));
-            return "";
-        }
-        return "";
-    }
-
-    /**
-     * Get MainCancerType from oncotree
-     *
-     * @param tumorType
-     * @return String
-     */
-    public static String getOncotreeTumorType(String tumorType) {
-        String mainTumorType = "";
-        try {
-            // In LIMS tumor types entry is not controlled. Sometimes tumor type as tumor name is entered and other times tumor type code is entered.
-            // First query oncotree using api for name search
-            URL url = new URL("http://oncotree.mskcc.org/api/tumorTypes/search/name/" + tumorType.split("/")[0].replace(" ", "%20") + "?exactMatch=false");
-            mainTumorType = getOncotreeTumorTypeUsingName(url);
-            // If name search returns nothing, then query oncotree using api for code search
-            if (StringUtils.isBlank(mainTumorType)) {
-                URL url2 = new URL("http://oncotree.mskcc.org/api/tumorTypes/search/code/" + tumorType.split("/")[0].replace(" ", "%20") + "?exactMatch=true");
-                mainTumorType = getOncotreeTumorTypeUsingCode(url2, tumorType);
-            }
-        } catch (Exception e) {
-            LOGGER.error(String.format("Error occured while querying oncotree end point for Tumor Type %s\n%s", tumorType, e.getMessage()));
-            return "";
-        }
-        return mainTumorType;
-    }
-
-    /**
-     * Method to get origin Sample ID for a sample.
+     * Method to get origin Sample ID for a sample. The SampleId of the sample itself is the origin used by the sample
+     * metadata, use SampleLineage for the sample directly under the request.
      *
      * @param sample
-     * @return boolean
+     * @return String
      */
     public static String getOriginSampleId(DataRecord sample, User user) {
         String sampleId = "";
         try {
             sampleId = sample.getStringVal("SampleId", user);
-            if (sample.getChildrenOfType("SampleCMOInfoRecords", user).length > 0) {
-                return sample.getStringVal("SampleId", user);
-            }
-            Stack<DataRecord> sampleStack = new Stack<>();
-            if (sample.getParentsOfType("Sample", user).size() > 0) {
-                sampleStack.addAll((sample.getParentsOfType("Sample", user)));
-            }
-            do {
-                DataRecord startSample = sampleStack.pop();
-                if (startSample.getChildrenOfType("SampleCMOInfoRecords", user).length > 0) {
-                    return sample.getStringVal("SampleId", user);
-                }
-                if (startSample.getParentsOfType("Sample", user).size() > 0) {
-                    sampleStack.addAll(startSample.getParentsOfType("Sample", user));
-                }
-
-            } while (!sampleStack.isEmpty());
         } catch (Exception e) {
-            LOGGER.error(String.format("Error occured while finding related SampleCMOInfoRecords for Sample %s", sampleId));
+            LOGGER.error(String.format("Error occured while reading SampleId of Sample with Record ID %d", sample.getRecordId()));
         }
         return sampleId;
     }
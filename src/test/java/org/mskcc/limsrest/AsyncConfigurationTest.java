@@ -0,0 +1,88 @@
+package org.mskcc.limsrest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class AsyncConfigurationTest {
+    private AnnotationConfigWebApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("async.requestTimeoutMinutes", "45");
+        properties.put("async.threads", "2");
+        properties.put("async.queueCapacity", "4");
+
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+        context.register(WebConfig.class, AsyncConfiguration.class, SlowStream.class);
+        context.refresh();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void stream_finishesOnBoundedPoolWithConfiguredTimeout() throws Exception {
+        MvcResult result = mockMvc.perform(get("/slowStream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertEquals(45 * 60 * 1000L, result.getRequest().getAsyncContext().getTimeout());
+
+        result.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("line 0\nline 1\nline 2\nmvc-async-\n"));
+    }
+
+    // registered explicitly rather than annotated as components so component scans of the package don't pick them up
+    @EnableWebMvc
+    static class WebConfig {
+    }
+
+    @RequestMapping("/")
+    static class SlowStream {
+        @GetMapping("/slowStream")
+        public StreamingResponseBody stream() {
+            return out -> {
+                for (int i = 0; i < 3; i++) {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    out.write(("line " + i + "\n").getBytes());
+                    out.flush();
+                }
+                out.write((Thread.currentThread().getName().replaceAll("\\d+$", "") + "\n").getBytes());
+            };
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.mskcc.limsrest;
+
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class ConnectionLIMSTest {
+    private final VeloxConnection conn1 = mock(VeloxConnection.class);
+    private final VeloxConnection conn2 = mock(VeloxConnection.class);
+
+    @Test
+    public void lease_returnsConnectionWhenCallerThrows() {
+        ConnectionLIMS conn = new ConnectionLIMS(Collections.singletonList(conn1), 0);
+
+        try (ConnectionLIMS.Lease lease = conn.lease()) {
+            lease.getConnection();
+            throw new IllegalStateException("query failed");
+        } catch (IllegalStateException e) {
+            assertEquals("query failed", e.getMessage());
+        }
+
+        assertEquals(0, conn.getMetrics().get("activeLeases"));
+        assertSame(conn1, conn.lease().getConnection());
+    }
+
+    @Test
+    public void lease_failsWhenAllConnectionsLeased() {
+        ConnectionLIMS conn = new ConnectionLIMS(Collections.singletonList(conn1), 0);
+        conn.lease();
+
+        try {
+            conn.lease();
+            fail("Expected the lease to time out");
+        } catch (IllegalStateException e) {
+            assertEquals(1L, conn.getMetrics().get("leaseTimeouts"));
+        }
+    }
+
+    @Test
+    public void getConnection_keepsThreadOnOneConnectionUntilReleased() {
+        ConnectionLIMS conn = new ConnectionLIMS(Arrays.asList(conn1, conn2), 0);
+
+        VeloxConnection first = conn.getConnection();
+        assertSame(first, conn.getConnection());
+        assertEquals(1, conn.getMetrics().get("activeLeases"));
+
+        conn.releaseConnection();
+        assertEquals(0, conn.getMetrics().get("activeLeases"));
+    }
+
+    @Test
+    public void withConnection_returnsConnectionBoundForAction() {
+        ConnectionLIMS conn = new ConnectionLIMS(Collections.singletonList(conn1), 0);
+
+        VeloxConnection used = conn.withConnection(() -> {
+            assertEquals(1, conn.getMetrics().get("activeLeases"));
+            return conn.getConnection();
+        });
+
+        assertSame(conn1, used);
+        assertEquals(0, conn.getMetrics().get("activeLeases"));
+    }
+
+    @Test
+    public void withConnection_keepsConnectionAlreadyHeldByThread() {
+        ConnectionLIMS conn = new ConnectionLIMS(Collections.singletonList(conn1), 0);
+        VeloxConnection held = conn.getConnection();
+
+        assertSame(held, conn.withConnection(conn::getConnection));
+
+        assertEquals(1, conn.getMetrics().get("activeLeases"));
+        conn.releaseConnection();
+        assertEquals(0, conn.getMetrics().get("activeLeases"));
+    }
+
+    @Test
+    public void afterCompletion_releasesConnectionWhenHandlerThrew() {
+        ConnectionLIMS conn = new ConnectionLIMS(Collections.singletonList(conn1), 0);
+        ConnectionLeaseInterceptor interceptor = new ConnectionLeaseInterceptor(conn);
+        conn.getConnection();
+
+        interceptor.afterCompletion(new MockHttpServletRequest(), new MockHttpServletResponse(), null,
+                new IllegalStateException("handler failed"));
+
+        assertEquals(0, conn.getMetrics().get("activeLeases"));
+    }
+
+    @Test
+    public void afterConcurrentHandlingStarted_releasesConnectionOfRequestThread() {
+        ConnectionLIMS conn = new ConnectionLIMS(Collections.singletonList(conn1), 0);
+        ConnectionLeaseInterceptor interceptor = new ConnectionLeaseInterceptor(conn);
+        conn.getConnection();
+
+        interceptor.afterConcurrentHandlingStarted(new MockHttpServletRequest(), new MockHttpServletResponse(), null);
+
+        assertEquals(0, conn.getMetrics().get("activeLeases"));
+        assertSame(conn1, conn.lease().getConnection());
+    }
+}
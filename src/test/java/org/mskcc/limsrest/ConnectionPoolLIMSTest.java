@@ -0,0 +1,80 @@
+package org.mskcc.limsrest;
+
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.After;
+import org.junit.Test;
+import org.mskcc.limsrest.service.LimsTask;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolLIMSTest {
+    private final VeloxConnection conn = mock(VeloxConnection.class);
+    private final ConnectionPoolLIMS pool = new ConnectionPoolLIMS(Collections.singletonList(conn), new LatencyMetrics());
+
+    @After
+    public void tearDown() {
+        pool.cleanup();
+    }
+
+    @Test
+    public void tryBorrowConnection_returnsNullWhenPoolExhausted() throws Exception {
+        VeloxConnection borrowed = pool.borrowConnection();
+
+        assertNull(pool.tryBorrowConnection());
+
+        pool.returnConnection(borrowed, false);
+        assertSame(conn, pool.tryBorrowConnection());
+    }
+
+    @Test
+    public void tryBorrowConnection_keepsConnectionInPoolWhenReopenFails() throws Exception {
+        doThrow(new IllegalStateException("lims down")).when(conn).open();
+
+        assertNull(pool.tryBorrowConnection());
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void borrowConnection_keepsConnectionInPoolWhenReopenFails() throws Exception {
+        doThrow(new IllegalStateException("lims down")).when(conn).open();
+
+        try {
+            pool.borrowConnection();
+            fail("Expected the borrow to fail");
+        } catch (IllegalStateException e) {
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+
+    @Test
+    public void returnConnection_closesBrokenConnectionAndKeepsItInPool() throws Exception {
+        when(conn.isConnected()).thenReturn(true);
+        VeloxConnection borrowed = pool.borrowConnection();
+
+        pool.returnConnection(borrowed, true);
+
+        verify(conn).close();
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    public void submitTask_returnsConnectionWhenTaskThrows() throws Exception {
+        when(conn.isConnected()).thenThrow(new IllegalStateException("lims down"));
+        LimsTask task = new LimsTask() {
+            @Override
+            public Object execute(VeloxConnection conn) {
+                return null;
+            }
+        };
+
+        try {
+            pool.submitTaskAsync(task).get();
+            fail("Expected the task to fail");
+        } catch (Exception e) {
+            assertEquals(1, pool.getIdleCount());
+        }
+    }
+}
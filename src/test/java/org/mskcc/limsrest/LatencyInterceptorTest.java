@@ -0,0 +1,74 @@
+package org.mskcc.limsrest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class LatencyInterceptorTest {
+    private AnnotationConfigWebApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.register(WebConfig.class, LatencyMetrics.class, LatencyInterceptor.class, SlowTask.class);
+        context.refresh();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+    }
+
+    @Test
+    public void afterCompletion_timesAsyncRequestFromFirstDispatch() throws Exception {
+        MvcResult result = mockMvc.perform(get("/slowTask"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        result.getAsyncResult(10_000);
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        Map<String, Object> timer = (Map<String, Object>) ((Map<String, Object>) context.getBean(LatencyMetrics.class)
+                .getMetrics().get("endpoint")).get("GET /slowTask");
+        assertEquals(1L, timer.get("count"));
+        assertTrue((Double) timer.get("maxMillis") >= 300);
+    }
+
+    // registered explicitly rather than annotated as components so component scans of the package don't pick them up
+    @EnableWebMvc
+    static class WebConfig {
+    }
+
+    @RequestMapping("/")
+    static class SlowTask {
+        @GetMapping("/slowTask")
+        @ResponseBody
+        public Callable<String> task() {
+            return () -> {
+                Thread.sleep(300);
+                return "done";
+            };
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.mskcc.limsrest;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class LatencyMetricsTest {
+    @Test
+    public void record_countsCallsPerBucket() {
+        LatencyMetrics metrics = new LatencyMetrics();
+        metrics.record(LatencyMetrics.Family.HTTP_CLIENT, "delphi.mskcc.org", TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.record(LatencyMetrics.Family.HTTP_CLIENT, "delphi.mskcc.org", TimeUnit.MICROSECONDS.toNanos(5_500));
+        metrics.record(LatencyMetrics.Family.HTTP_CLIENT, "delphi.mskcc.org", TimeUnit.SECONDS.toNanos(2));
+
+        Map<String, Object> timer = (Map<String, Object>) ((Map<String, Object>) metrics.getMetrics().get("host"))
+                .get("delphi.mskcc.org");
+        assertEquals(3L, timer.get("count"));
+        assertEquals(10L, timer.get("p50Millis"));
+
+        String prometheus = metrics.toPrometheus();
+        assertTrue(prometheus.contains("limsrest_http_client_seconds_bucket{host=\"delphi.mskcc.org\",le=\"0.005\"} 1\n"));
+        assertTrue(prometheus.contains("limsrest_http_client_seconds_bucket{host=\"delphi.mskcc.org\",le=\"0.01\"} 2\n"));
+        assertTrue(prometheus.contains("limsrest_http_client_seconds_count{host=\"delphi.mskcc.org\"} 3\n"));
+        assertFalse(prometheus.contains("limsrest_endpoint_seconds"));
+    }
+
+    @Test
+    public void timed_recordsEachInterfaceCall() throws Exception {
+        LatencyMetrics metrics = new LatencyMetrics();
+        Callable<String> timed = metrics.timed(Callable.class, () -> "done");
+
+        assertEquals("done", timed.call());
+        assertEquals("done", timed.call());
+
+        Map<String, Object> timer = (Map<String, Object>) ((Map<String, Object>) metrics.getMetrics().get("method"))
+                .get("call");
+        assertEquals(2L, timer.get("count"));
+    }
+}
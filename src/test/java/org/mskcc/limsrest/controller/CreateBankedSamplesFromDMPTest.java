@@ -3,8 +3,10 @@ package org.mskcc.limsrest.controller;
 import org.junit.Before;
 import org.junit.Test;
 import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.HttpClientPool;
 import org.mskcc.limsrest.service.dmp.DefaultTodayDateRetriever;
 import org.mskcc.limsrest.service.dmp.GenerateBankedSamplesFromDMP;
+import org.mskcc.limsrest.service.dmp.TumorTypeRetriever;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -25,7 +27,8 @@ public class CreateBankedSamplesFromDMPTest {
 
     @Before
     public void setUp() throws Exception {
-        createBankedSamplesFromDMP = new CreateBankedSamplesFromDMP(conn);
+        createBankedSamplesFromDMP = new CreateBankedSamplesFromDMP(conn, mock(TumorTypeRetriever.class),
+                mock(HttpClientPool.class));
     }
 
     @Test
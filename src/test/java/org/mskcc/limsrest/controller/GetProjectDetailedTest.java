@@ -0,0 +1,97 @@
+package org.mskcc.limsrest.controller;
+
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.ConnectionPoolLIMS;
+import org.mskcc.limsrest.LatencyMetrics;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class GetProjectDetailedTest {
+    private final VeloxConnection vConn = mock(VeloxConnection.class);
+    private final ConnectionPoolLIMS pool = new ConnectionPoolLIMS(Collections.singletonList(vConn), new LatencyMetrics());
+    private AnnotationConfigWebApplicationContext context;
+    private MockMvc mockMvc;
+
+    @Before
+    public void setUp() {
+        context = new AnnotationConfigWebApplicationContext();
+        context.setServletContext(new MockServletContext());
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Collections.singletonMap("deadline.getProjectDetailed", "1")));
+        context.addBeanFactoryPostProcessor(beanFactory -> beanFactory.registerSingleton("connectionQueue", pool));
+        context.register(WebConfig.class, GetProjectDetailed.class);
+        context.refresh();
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).build();
+    }
+
+    @After
+    public void tearDown() {
+        context.close();
+        pool.cleanup();
+    }
+
+    @Test
+    public void getContent_returns503AndConnectionWhenTaskRunsPastDeadline() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(vConn.isConnected()).thenReturn(true);
+        when(vConn.getUser()).thenReturn(mock(User.class));
+        // the LIMS doesn't answer until the task is interrupted
+        when(vConn.getDataRecordManager()).thenAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+            return null;
+        });
+
+        MvcResult result = mockMvc.perform(get("/getProjectDetailed").param("project", "08000_B"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(0, pool.getIdleCount());
+        MockAsyncContext asyncContext = (MockAsyncContext) result.getRequest().getAsyncContext();
+        assertEquals(1000L, asyncContext.getTimeout());
+
+        // MockMvc doesn't time requests out itself, the container's timeout is signalled to the listeners
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, DeferredLimsTask.RETRY_AFTER_SECONDS));
+
+        long giveUp = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (pool.getIdleCount() == 0 && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(20);
+        }
+        assertEquals("the cancelled task returns its connection", 1, pool.getIdleCount());
+    }
+
+    @EnableWebMvc
+    static class WebConfig {
+    }
+}
@@ -0,0 +1,143 @@
+package org.mskcc.limsrest.controller;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.ConnectionLIMS;
+import org.mskcc.limsrest.service.RunPlanSnapshot;
+import org.mskcc.limsrest.service.RunSummary;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ReportTest {
+    private static final long UNTIL = 1_600_000_000_000L;
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+    // 2010-01-01, before the first run in the LIMS
+    private static final long EARLIEST_RUN_CREATED = 1262304000000L;
+    private static final Pattern RUN_PAGE_QUERY = Pattern.compile("DateCreated >= (\\d+)(?: AND DateCreated < (\\d+))?");
+
+    private final DataRecordManager dataRecordManager = mock(DataRecordManager.class);
+    // run table answering the DateCreated window queries
+    private final List<DataRecord> runs = new ArrayList<>();
+    private final List<Long> created = new ArrayList<>();
+    private Report report;
+
+    @Before
+    public void setUp() throws Exception {
+        ConnectionLIMS conn = mock(ConnectionLIMS.class);
+        VeloxConnection vConn = mock(VeloxConnection.class);
+        when(conn.getConnection()).thenReturn(vConn);
+        when(vConn.getUser()).thenReturn(mock(User.class));
+        when(vConn.getDataRecordManager()).thenReturn(dataRecordManager);
+        when(dataRecordManager.queryDataRecords(eq("IlluminaSeqExperiment"), anyString(), any(User.class)))
+                .thenAnswer(invocation -> {
+                    Matcher window = RUN_PAGE_QUERY.matcher((String) invocation.getArguments()[1]);
+                    assertTrue(window.matches());
+                    long start = Long.parseLong(window.group(1));
+                    Long end = window.group(2) == null ? null : Long.parseLong(window.group(2));
+                    List<DataRecord> inWindow = new ArrayList<>();
+                    for (int i = 0; i < runs.size(); i++) {
+                        if (created.get(i) >= start && (end == null || created.get(i) < end))
+                            inWindow.add(runs.get(i));
+                    }
+                    return inWindow;
+                });
+        report = new Report(conn, mock(RunPlanSnapshot.class));
+    }
+
+    private void run(long dateCreated, String runId) throws Exception {
+        DataRecord run = mock(DataRecord.class);
+        DataRecord flowCell = mock(DataRecord.class);
+        when(run.getRecordId()).thenReturn((long) runs.size() + 1);
+        when(run.getDateVal(eq("DateCreated"), any(User.class))).thenReturn(dateCreated);
+        when(run.getStringVal(eq("SequencerRunFolder"), any(User.class))).thenReturn("/ifs/input/" + runId);
+        when(run.getChildrenOfType(eq("FlowCell"), any(User.class))).thenReturn(new DataRecord[]{flowCell});
+        when(flowCell.getDateVal(eq("DateCreated"), any(User.class))).thenReturn(dateCreated);
+        runs.add(run);
+        created.add(dateCreated);
+    }
+
+    @Test
+    public void getHiseqList_pagesBackwardsAcrossEmptyWindows() throws Exception {
+        run(UNTIL - 9 * DAY, "RUN_OLD");
+        run(UNTIL - DAY, "RUN_NEW");
+        run(UNTIL - 25 * DAY, "RUN_OLDER");
+
+        ResponseEntity<List<RunSummary>> first = report.getContent(null, UNTIL, null, 10);
+        assertEquals(Arrays.asList("RUN_NEW", "RUN_OLD"), runIds(first.getBody()));
+        String cursor = first.getHeaders().getFirst("X-Next-Cursor");
+        assertEquals(String.valueOf(UNTIL - 10 * DAY), cursor);
+
+        // a window without runs, e.g. a weekend, doesn't end the history
+        ResponseEntity<List<RunSummary>> empty = report.getContent(null, UNTIL, Long.valueOf(cursor), 10);
+        assertTrue(empty.getBody().isEmpty());
+        cursor = empty.getHeaders().getFirst("X-Next-Cursor");
+        assertEquals(String.valueOf(UNTIL - 20 * DAY), cursor);
+
+        ResponseEntity<List<RunSummary>> third = report.getContent(null, UNTIL, Long.valueOf(cursor), 10);
+        assertEquals(Collections.singletonList("RUN_OLDER"), runIds(third.getBody()));
+        assertEquals(String.valueOf(UNTIL - 30 * DAY), third.getHeaders().getFirst("X-Next-Cursor"));
+    }
+
+    @Test
+    public void getHiseqList_stopsAtSince() throws Exception {
+        ResponseEntity<List<RunSummary>> page = report.getContent(UNTIL - 15 * DAY, UNTIL, UNTIL - 10 * DAY, 10);
+
+        assertTrue(page.getBody().isEmpty());
+        assertNull(page.getHeaders().getFirst("X-Next-Cursor"));
+    }
+
+    @Test
+    public void getHiseqList_stopsAtFirstRunInLims() throws Exception {
+        run(EARLIEST_RUN_CREATED + DAY, "RUN_FIRST");
+
+        ResponseEntity<List<RunSummary>> page = report.getContent(null, null, EARLIEST_RUN_CREATED + 5 * DAY, 10);
+
+        assertEquals(Collections.singletonList("RUN_FIRST"), runIds(page.getBody()));
+        assertNull(page.getHeaders().getFirst("X-Next-Cursor"));
+    }
+
+    @Test
+    public void getHiseqList_withoutPagingListsAllRuns() throws Exception {
+        long now = System.currentTimeMillis();
+        run(EARLIEST_RUN_CREATED + DAY, "RUN_FIRST");
+        run(now - 800 * DAY, "RUN_OLD");
+        run(now - DAY, "RUN_NEW");
+
+        ResponseEntity<List<RunSummary>> all = report.getContent(null, null, null, null);
+
+        assertEquals(Arrays.asList("RUN_NEW", "RUN_OLD", "RUN_FIRST"), runIds(all.getBody()));
+        assertNull(all.getHeaders().getFirst("X-Next-Cursor"));
+        // read in DateCreated windows rather than one query over the whole run table
+        verify(dataRecordManager, never()).queryDataRecords(eq("IlluminaSeqExperiment"), (String) isNull(),
+                any(User.class));
+    }
+
+    private static List<String> runIds(List<RunSummary> runs) {
+        String[] ids = new String[runs.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = runs.get(i).getRunId();
+        }
+        return Arrays.asList(ids);
+    }
+}
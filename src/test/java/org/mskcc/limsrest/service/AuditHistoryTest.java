@@ -0,0 +1,69 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.AuditLog;
+import com.velox.api.datarecord.AuditLogEntry;
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.user.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class AuditHistoryTest {
+    private final User user = mock(User.class);
+    private final AuditLog auditLog = mock(AuditLog.class);
+
+    private DataRecord record(long recordId) throws Exception {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        when(auditLog.getAuditLogHistory(eq(record), anyBoolean(), any(User.class)))
+                .thenReturn(Collections.singletonList(mock(AuditLogEntry.class)));
+        return record;
+    }
+
+    @Test
+    public void getHistories_readsEachRecordOnceUntilModified() throws Exception {
+        when(user.getAuditLog()).thenReturn(auditLog);
+        DataRecord request = record(1);
+        DataRecord qc1 = record(2);
+        DataRecord qc2 = record(3);
+        AuditHistory history = new AuditHistory(10, 2, 0);
+
+        Map<Long, List<AuditLogEntry>> histories = history.getHistories(Arrays.asList(request, qc1, qc2, qc1),
+                Arrays.asList(100L, 100L, 100L, 100L), user, null);
+        history.getHistories(Arrays.asList(request, qc1), Arrays.asList(100L, 100L), user, null);
+
+        assertEquals(3, histories.size());
+        assertEquals(1, histories.get(2L).size());
+        verify(auditLog, times(1)).getAuditLogHistory(eq(qc1), anyBoolean(), any(User.class));
+        assertEquals(2L, history.getMetrics().get("chunks"));
+        assertEquals(2L, history.getMetrics().get("hits"));
+        // the dates modified are the caller's, a cache hit doesn't call the LIMS
+        verify(qc1, never()).getLongVal(anyString(), any(User.class));
+        verify(qc1, never()).getFields(any(User.class));
+
+        history.getHistories(Collections.singletonList(qc1), Collections.singletonList(200L), user, null);
+        verify(auditLog, times(2)).getAuditLogHistory(eq(qc1), anyBoolean(), any(User.class));
+    }
+
+    @Test
+    public void getHistories_doesNotCacheRecordsWithoutDateModified() throws Exception {
+        when(user.getAuditLog()).thenReturn(auditLog);
+        DataRecord request = record(1);
+        AuditHistory history = new AuditHistory(10, 2, 0);
+
+        history.getHistories(Collections.singletonList(request), Collections.singletonList(null), user, null);
+        history.getHistories(Collections.singletonList(request), Collections.singletonList(null), user, null);
+
+        verify(auditLog, times(2)).getAuditLogHistory(eq(request), anyBoolean(), any(User.class));
+    }
+}
@@ -0,0 +1,144 @@
+package org.mskcc.limsrest.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class DeliveryJournalTest {
+    // long enough that searches don't start refreshes in the background, the tests refresh explicitly
+    private static final long REFRESH_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final List<Long> loadedSince = new ArrayList<>();
+
+    private DeliveryJournal.Delivery delivery(String requestId, long deliveryDate, String investigatorEmail) {
+        return new DeliveryJournal.Delivery(requestId, deliveryDate, investigatorEmail, "head@mskcc.org",
+                mapper.createObjectNode().put("requestId", requestId));
+    }
+
+    private DeliveryJournal journal(Path path, List<DeliveryJournal.Delivery> deliveries) {
+        return new DeliveryJournal(since -> {
+            loadedSince.add(since);
+            return deliveries;
+        }, mapper, path, REFRESH_MILLIS, TimeUnit.DAYS.toMillis(90), 0, TimeUnit.DAYS.toMillis(365));
+    }
+
+    @Test
+    public void getDeliveredSince_answersFromTheJournalAndReloadsIt() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("deliveries.jsonl");
+        long now = System.currentTimeMillis();
+        List<DeliveryJournal.Delivery> deliveries = Arrays.asList(
+                delivery("09687_N", now - 1000, "pi@mskcc.org"),
+                delivery("09688", now - 5000, "other@mskcc.org"));
+
+        DeliveryJournal journal = journal(path, deliveries);
+        assertTrue(journal.refresh());
+        List<JsonNode> delivered = journal.getDeliveredSince(now - 3000, "NULL");
+
+        assertEquals(1, delivered.size());
+        assertEquals("09687_N", delivered.get(0).get("requestId").asText());
+
+        DeliveryJournal reloaded = journal(path, Collections.emptyList());
+        assertTrue(reloaded.refresh());
+        assertEquals(2, reloaded.getDeliveredSince(now - 10_000, "NULL").size());
+        assertEquals(1, reloaded.getDeliveredSince(now - 10_000, "PI@mskcc.org").size());
+        // the reloaded journal only reads deliveries after the latest one journaled
+        assertEquals(Long.valueOf(now - 1000), loadedSince.get(loadedSince.size() - 1));
+    }
+
+    @Test
+    public void getDeliveredSince_searchBeforeCoverageIsNotAnswered() {
+        Path path = folder.getRoot().toPath().resolve("deliveries.jsonl");
+
+        DeliveryJournal journal = journal(path, Collections.emptyList());
+        journal.refresh();
+
+        assertNull(journal.getDeliveredSince(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(100), "NULL"));
+        assertNotNull(journal.getDeliveredSince(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(10), "NULL"));
+    }
+
+    @Test
+    public void getDeliveredSince_failedRefreshIsNotAnswered() {
+        DeliveryJournal journal = new DeliveryJournal(since -> {
+            throw new IllegalStateException("LIMS unavailable");
+        }, mapper, folder.getRoot().toPath().resolve("deliveries.jsonl"), REFRESH_MILLIS, TimeUnit.DAYS.toMillis(90), 0,
+                TimeUnit.DAYS.toMillis(365));
+
+        assertFalse(journal.refresh());
+        assertNull(journal.getDeliveredSince(System.currentTimeMillis(), "NULL"));
+        assertEquals(1L, journal.getMetrics().get("failures"));
+    }
+
+    @Test
+    public void getDeliveredSince_doesNotWaitForBootstrap() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        long now = System.currentTimeMillis();
+        DeliveryJournal journal = new DeliveryJournal(since -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return Collections.singletonList(delivery("09687_N", now - 1000, "pi@mskcc.org"));
+        }, mapper, folder.getRoot().toPath().resolve("deliveries.jsonl"), REFRESH_MILLIS, TimeUnit.DAYS.toMillis(90), 0,
+                TimeUnit.DAYS.toMillis(365));
+
+        journal.preload();
+        // answered by the LIMS while the bootstrap still reads the deliveries
+        assertNull(journal.getDeliveredSince(now - 3000, "NULL"));
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10_000;
+        List<JsonNode> delivered;
+        while ((delivered = journal.getDeliveredSince(now - 3000, "NULL")) == null
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    public void refresh_dropsDeliveriesBeyondRetentionAndCompactsTheFile() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("deliveries.jsonl");
+        long now = System.currentTimeMillis();
+        List<DeliveryJournal.Delivery> deliveries = new ArrayList<>();
+        deliveries.add(delivery("09688", now - TimeUnit.DAYS.toMillis(40), "other@mskcc.org"));
+        deliveries.add(delivery("09687_N", now - 10_000, "pi@mskcc.org"));
+        DeliveryJournal journal = new DeliveryJournal(since -> new ArrayList<>(deliveries), mapper, path,
+                REFRESH_MILLIS, TimeUnit.DAYS.toMillis(90), 0, TimeUnit.DAYS.toMillis(30));
+
+        assertTrue(journal.refresh());
+        assertNull(journal.getDeliveredSince(now - TimeUnit.DAYS.toMillis(35), "NULL"));
+        assertEquals(1, journal.getDeliveredSince(now - TimeUnit.DAYS.toMillis(20), "NULL").size());
+
+        // each redelivery appends a line until the file holds twice the lines needed
+        for (int i = 1; i <= 3; i++) {
+            deliveries.set(1, delivery("09687_N", now - 10_000 + i, "pi@mskcc.org"));
+            assertTrue(journal.refresh());
+        }
+        assertEquals(2, Files.readAllLines(path).size());
+        assertEquals(1L, journal.getMetrics().get("compactions"));
+
+        DeliveryJournal reloaded = new DeliveryJournal(since -> Collections.emptyList(), mapper, path, REFRESH_MILLIS,
+                TimeUnit.DAYS.toMillis(90), 0, TimeUnit.DAYS.toMillis(30));
+        List<JsonNode> delivered = reloaded.getDeliveredSince(now - 10_000, "NULL");
+        assertEquals(1, delivered.size());
+        assertEquals("09687_N", delivered.get(0).get("requestId").asText());
+    }
+}
@@ -0,0 +1,99 @@
+package org.mskcc.limsrest.service;
+
+import org.junit.Test;
+import org.mskcc.limsrest.HttpClientPool;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FastqIndexTest {
+    private final RestTemplate restTemplate = mock(RestTemplate.class);
+    private final HttpClientPool httpClient = mock(HttpClientPool.class);
+
+    private FastqIndex index(int maxEntries) {
+        when(httpClient.getRestTemplate()).thenReturn(restTemplate);
+        return new FastqIndex(httpClient, "http://ngs-stats/", TimeUnit.HOURS.toMillis(1), maxEntries, 1);
+    }
+
+    private void respondWith(List<ArchivedFastq> fastqs) {
+        when(restTemplate.exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class), any(ParameterizedTypeReference.class)))
+                .thenReturn(ResponseEntity.ok(fastqs));
+    }
+
+    @Test
+    public void getFastqsByIgoId_fetchesOnce() {
+        FastqIndex index = index(10);
+        respondWith(Collections.singletonList(new ArchivedFastq()));
+
+        assertEquals(1, index.getFastqsByIgoId("09687_N_1").size());
+        assertEquals(1, index.getFastqsByIgoId("09687_N_1").size());
+
+        verify(restTemplate, times(1)).exchange(eq("http://ngs-stats/ngs-stats/rundone/fastqsbyigoid/09687_N_1"),
+                eq(HttpMethod.GET), any(HttpEntity.class), any(ParameterizedTypeReference.class));
+        assertEquals(1L, index.getMetrics().get("hits"));
+    }
+
+    @Test
+    public void getMostRecentFastqs_emptyResultIsNotCached() {
+        FastqIndex index = index(10);
+        respondWith(Collections.emptyList());
+
+        index.getMostRecentFastqs("PITT_0089", "S1_IGO_09687_N_1");
+        index.getMostRecentFastqs("PITT_0089", "S1_IGO_09687_N_1");
+
+        verify(restTemplate, times(2)).exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                any(ParameterizedTypeReference.class));
+    }
+
+    @Test
+    public void warmUp_looksUpMostRecentFastqsOfEachRunAndSample() throws Exception {
+        FastqIndex index = index(10);
+        ArchivedFastq r1 = fastq("PITT_0089_BHFTCNBBXY", "S1_IGO_09687_N_1");
+        ArchivedFastq r2 = fastq("PITT_0089_BHFTCNBBXY", "S1_IGO_09687_N_1");
+        ArchivedFastq r3 = fastq("JAX_0454_AHHWKVBBXY", "S1_IGO_09687_N_1");
+        respondWith(Arrays.asList(r1, r2, r3));
+
+        index.warmUp(Collections.singletonList("09687_N_1")).get(10, TimeUnit.SECONDS);
+
+        index.getMostRecentFastqs("PITT_0089", "S1_IGO_09687_N_1");
+        index.getMostRecentFastqs("JAX_0454", "S1_IGO_09687_N_1");
+        assertEquals(2L, index.getMetrics().get("hits"));
+        verify(restTemplate, times(3)).exchange(anyString(), eq(HttpMethod.GET), any(HttpEntity.class),
+                any(ParameterizedTypeReference.class));
+    }
+
+    private static ArchivedFastq fastq(String run, String sample) {
+        ArchivedFastq fastq = new ArchivedFastq();
+        fastq.setRun(run);
+        fastq.setSample(sample);
+        return fastq;
+    }
+
+    @Test
+    public void leastRecentlyUsedIgoIdIsEvicted() {
+        FastqIndex index = index(2);
+        respondWith(Collections.singletonList(new ArchivedFastq()));
+
+        index.getFastqsByIgoId("A");
+        index.getFastqsByIgoId("B");
+        index.getFastqsByIgoId("A");
+        index.getFastqsByIgoId("C"); // evicts B
+
+        assertEquals(1L, index.getMetrics().get("evictions"));
+        index.getFastqsByIgoId("A");
+        assertEquals(2L, index.getMetrics().get("hits"));
+    }
+}
@@ -0,0 +1,48 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FlowCellLineageTest {
+    private final DataRecordManager dataRecordManager = mock(DataRecordManager.class);
+    private final User user = mock(User.class);
+
+    private DataRecord record(long recordId) {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        return record;
+    }
+
+    @Test
+    public void getRuns_queriesEachLevelOnceAndReturnsEachRunOnce() throws Exception {
+        DataRecord lane1 = record(1);
+        DataRecord lane2 = record(2);
+        DataRecord lane3 = record(3);
+        DataRecord flowCell = record(10);
+        DataRecord run = record(100);
+        when(dataRecordManager.getParentsOfType(anyList(), eq("FlowCell"), any(User.class))).thenReturn(Arrays.asList(
+                Collections.singletonList(flowCell), Collections.singletonList(flowCell), Collections.emptyList()));
+        when(dataRecordManager.getParentsOfType(anyList(), eq("IlluminaSeqExperiment"), any(User.class)))
+                .thenReturn(Collections.singletonList(Collections.singletonList(run)));
+
+        FlowCellLineage lineage = new FlowCellLineage(dataRecordManager, user);
+        List<DataRecord> runs = lineage.getRuns(Arrays.asList(lane1, lane2, lane3));
+        lineage.getRuns(Arrays.asList(lane1, lane2));
+
+        assertEquals(Collections.singletonList(run), runs);
+        verify(dataRecordManager, times(1)).getParentsOfType(anyList(), eq("FlowCell"), any(User.class));
+        verify(dataRecordManager, times(1)).getParentsOfType(anyList(), eq("IlluminaSeqExperiment"), any(User.class));
+    }
+}
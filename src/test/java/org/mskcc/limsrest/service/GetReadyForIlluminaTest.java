@@ -0,0 +1,104 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.ConnectionLIMS;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GetReadyForIlluminaTest {
+    private final DataRecordManager dataRecordManager = mock(DataRecordManager.class);
+    private final User user = mock(User.class);
+    private final ConnectionLIMS conn = mock(ConnectionLIMS.class);
+
+    @Before
+    public void setup() {
+        VeloxConnection vConn = mock(VeloxConnection.class);
+        when(vConn.getUser()).thenReturn(user);
+        when(vConn.getDataRecordManager()).thenReturn(dataRecordManager);
+        when(conn.getConnection()).thenReturn(vConn);
+    }
+
+    private static Map<String, Object> fields(String sampleId, String requestId) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("SampleId", sampleId);
+        fields.put("RequestId", requestId);
+        fields.put("ExemplarSampleStatus", "Ready for - Pooling of Sample Libraries for Sequencing");
+        fields.put("Volume", 10.0);
+        return fields;
+    }
+
+    private DataRecord sample(Map<String, Object> fields) throws Exception {
+        DataRecord sample = mock(DataRecord.class);
+        when(sample.getStringVal(eq("SampleId"), any(User.class))).thenReturn((String) fields.get("SampleId"));
+        when(sample.getFields(any(User.class))).thenReturn(fields);
+        when(sample.getChildrenOfType(anyString(), any(User.class))).thenReturn(new DataRecord[0]);
+        return sample;
+    }
+
+    private void withIndexBarcode(DataRecord library) throws Exception {
+        DataRecord indexBarcode = mock(DataRecord.class);
+        when(indexBarcode.getValue(eq("IndexId"), any(User.class))).thenReturn("DMP001");
+        when(indexBarcode.getStringVal(eq("IndexId"), any(User.class))).thenReturn("DMP001");
+        when(indexBarcode.getStringVal(eq("IndexTag"), any(User.class))).thenReturn("ACGTACGT");
+        when(library.getChildrenOfType(eq("IndexBarcode"), any(User.class))).thenReturn(new DataRecord[]{indexBarcode});
+    }
+
+    private DataRecord request(String requestName) throws Exception {
+        DataRecord request = mock(DataRecord.class);
+        when(request.getStringVal(eq("RequestName"), any(User.class))).thenReturn(requestName);
+        return request;
+    }
+
+    @Test
+    public void execute_namesPoolOfSeveralRequestsAfterItsFirstRequestAncestor() throws Exception {
+        Map<String, Object> poolFields = fields("Pool-08000_B-08001_C-A1", "08000_B,08001_C");
+        Map<String, Object> sampleFields = fields("08000_B_2", "08000_B");
+        DataRecord pool = sample(poolFields);
+        DataRecord unpooled = sample(sampleFields);
+        withIndexBarcode(unpooled);
+        DataRecord library = sample(fields("08001_C_1", "08001_C"));
+        withIndexBarcode(library);
+        List<DataRecord> samplesToPool = Arrays.asList(pool, unpooled);
+
+        when(dataRecordManager.queryDataRecords(eq("Sample"), anyString(), any(User.class))).thenReturn(samplesToPool);
+        when(dataRecordManager.getFieldsForRecords(samplesToPool, user)).thenReturn(Arrays.asList(poolFields, sampleFields));
+        when(dataRecordManager.getParentsOfType(anyList(), eq("Sample"), any(User.class)))
+                .thenReturn(Collections.singletonList(Collections.singletonList(library)));
+        DataRecord request08000B = request("IMPACT468");
+        when(request08000B.getStringVal(eq("RequestId"), any(User.class))).thenReturn("08000_B");
+        when(dataRecordManager.queryDataRecords(eq("Request"), anyString(), any(User.class)))
+                .thenReturn(Collections.singletonList(request08000B));
+        DataRecord request08001C = request("PE");
+        when(pool.getAncestorsOfType(eq("Request"), any(User.class))).thenReturn(Arrays.asList(request08001C, request08000B));
+
+        List<RunSummary> summaries = new GetReadyForIllumina(conn).execute();
+
+        assertEquals(2, summaries.size());
+        assertEquals("08001_C_1", summaries.get(0).getSampleId());
+        assertEquals("Pool-08000_B-08001_C-A1", summaries.get(0).getPool());
+        assertEquals("PE", summaries.get(0).getRequestName());
+        assertEquals("10.0", summaries.get(0).getVolume());
+        assertEquals("08000_B_2", summaries.get(1).getSampleId());
+        assertEquals("IMPACT468", summaries.get(1).getRequestName());
+        // the request of a sample of one request is read with the query, only the pool searches its ancestors
+        verify(dataRecordManager).queryDataRecords("Request", "RequestId in ('08000_B')", user);
+        verify(unpooled, never()).getAncestorsOfType(anyString(), any(User.class));
+        verify(pool, never()).getFields(any(User.class));
+    }
+}
@@ -0,0 +1,199 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.api.workflow.Workflow;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
+import com.velox.sloan.cmo.recmodels.SampleModel;
+import com.velox.sloan.cmo.recmodels.SeqAnalysisSampleQCModel;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.domain.sample.CmoSampleInfo;
+import org.mskcc.limsrest.ConnectionLIMS;
+
+import java.rmi.RemoteException;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+import static org.mskcc.limsrest.util.StatusTrackerConfig.*;
+
+/**
+ * Tracking output built from the prefetched sample tree of a request compared with the output of the per-record walk,
+ * which is what the prefetch falls back to when the list-based LIMS calls fail.
+ */
+public class GetRequestTrackingTaskPrefetchTest {
+    private final DataRecordManager dataRecordManager = mock(DataRecordManager.class);
+    private final User user = mock(User.class);
+    private final ConnectionLIMS conn = mock(ConnectionLIMS.class);
+    private final Map<DataRecord, Map<String, List<DataRecord>>> childrenByRecord = new IdentityHashMap<>();
+    private final List<DataRecord> samples = new ArrayList<>();
+    private long nextRecordId = 1;
+
+    @Before
+    public void setup() throws Exception {
+        VeloxConnection vConn = mock(VeloxConnection.class, RETURNS_DEEP_STUBS);
+        when(vConn.getUser()).thenReturn(user);
+        when(vConn.getDataRecordManager()).thenReturn(dataRecordManager);
+        when(vConn.getDataMgmtServer().getWorkflowManager(user).getLatestWorkflowList(user)).thenReturn(Arrays.asList(
+                workflow("KAPA Library Preparation", STAGE_LIBRARY_PREP),
+                workflow("Illumina Sequencing", STAGE_SEQUENCING)));
+        when(conn.getConnection()).thenReturn(vConn);
+        when(conn.withConnection(any())).thenAnswer(invocation -> ((Supplier<?>) invocation.getArguments()[0]).get());
+
+        DataRecord request = record("Request", fields("RequestId", "08000_B", "RequestName", "IMPACT505"));
+        when(dataRecordManager.queryDataRecords(eq("BankedSample"), anyString(), any(User.class))).thenReturn(new ArrayList<>());
+        when(dataRecordManager.queryDataRecords("Request", "RequestId = '08000_B'", user))
+                .thenReturn(Collections.singletonList(request));
+
+        // Sample sequenced after library prep, with a library going to another request
+        DataRecord sequenced = sample("08000_B_1", WORKFLOW_STATUS_COMPLETED + "KAPA Library Preparation");
+        DataRecord library = sample("08000_B_1_1", WORKFLOW_STATUS_COMPLETED + "Illumina Sequencing");
+        DataRecord otherRequestLibrary = sample("08001_C_1", WORKFLOW_STATUS_READY_FOR + "Illumina Sequencing");
+        DataRecord qc = record(SeqAnalysisSampleQCModel.DATA_TYPE_NAME, fields(
+                SeqAnalysisSampleQCModel.PASSED_QC, Boolean.TRUE, SeqAnalysisSampleQCModel.SEQ_QCSTATUS, "Passed"));
+        DataRecord cmoInfo = record(CmoSampleInfo.DATA_TYPE_NAME, fields(CmoSampleInfo.USER_SAMPLE_ID, "C-000001-T001"));
+        addChildren(request, SampleModel.DATA_TYPE_NAME, sequenced);
+        addChildren(sequenced, SampleModel.DATA_TYPE_NAME, library, otherRequestLibrary);
+        addChildren(library, SeqAnalysisSampleQCModel.DATA_TYPE_NAME, qc);
+        addChildren(sequenced, CmoSampleInfo.DATA_TYPE_NAME, cmoInfo);
+        // Sample without any children
+        DataRecord received = sample("08000_B_2", WORKFLOW_STATUS_READY_FOR + "KAPA Library Preparation");
+        addChildren(request, SampleModel.DATA_TYPE_NAME, received);
+    }
+
+    private static Workflow workflow(String name, String stage) {
+        Workflow workflow = mock(Workflow.class);
+        when(workflow.getWorkflowName()).thenReturn(name);
+        when(workflow.getShortDesc()).thenReturn(stage);
+        return workflow;
+    }
+
+    private static Map<String, Object> fields(Object... keyValues) {
+        Map<String, Object> fields = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            fields.put((String) keyValues[i], keyValues[i + 1]);
+        }
+        return fields;
+    }
+
+    private DataRecord sample(String sampleId, String status) throws Exception {
+        DataRecord sample = record(SampleModel.DATA_TYPE_NAME, fields(SampleModel.SAMPLE_ID, sampleId,
+                SampleModel.EXEMPLAR_SAMPLE_STATUS, status, SampleModel.DATE_CREATED, 1000L,
+                SampleModel.DATE_MODIFIED, 2000L, "Volume", 20.0));
+        samples.add(sample);
+        return sample;
+    }
+
+    private DataRecord record(String dataType, Map<String, Object> fields) throws Exception {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(nextRecordId++);
+        when(record.getDataTypeName()).thenReturn(dataType);
+        when(record.getFields(any(User.class))).thenReturn(fields);
+        when(record.getValue(anyString(), any(User.class))).thenAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        when(record.getStringVal(anyString(), any(User.class))).thenAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        when(record.getLongVal(anyString(), any(User.class))).thenAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        when(record.getBooleanVal(anyString(), any(User.class))).thenAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        when(record.getDoubleVal(anyString(), any(User.class))).thenAnswer(invocation -> fields.get(invocation.getArguments()[0]));
+        when(record.getChildrenOfType(anyString(), any(User.class)))
+                .thenAnswer(invocation -> getChildren(record, (String) invocation.getArguments()[0]).toArray(new DataRecord[0]));
+        when(record.getDescendantsOfType(anyString(), any(User.class)))
+                .thenAnswer(invocation -> getDescendants(record, (String) invocation.getArguments()[0]));
+        return record;
+    }
+
+    private void addChildren(DataRecord parent, String dataType, DataRecord... children) {
+        childrenByRecord.computeIfAbsent(parent, p -> new HashMap<>())
+                .computeIfAbsent(dataType, t -> new ArrayList<>()).addAll(Arrays.asList(children));
+    }
+
+    private List<DataRecord> getChildren(DataRecord record, String dataType) {
+        return new ArrayList<>(childrenByRecord.getOrDefault(record, Collections.emptyMap())
+                .getOrDefault(dataType, Collections.emptyList()));
+    }
+
+    private List<DataRecord> getDescendants(DataRecord record, String dataType) {
+        List<DataRecord> descendants = new ArrayList<>(getChildren(record, dataType));
+        for (DataRecord child : getChildren(record, SampleModel.DATA_TYPE_NAME)) {
+            descendants.addAll(getDescendants(child, dataType));
+        }
+        return descendants;
+    }
+
+    private void stubListChildren() throws Exception {
+        when(dataRecordManager.getChildrenOfType(anyList(), anyString(), any(User.class))).thenAnswer(invocation -> {
+            List<List<DataRecord>> children = new ArrayList<>();
+            for (Object record : (List<?>) invocation.getArguments()[0]) {
+                children.add(getChildren((DataRecord) record, (String) invocation.getArguments()[1]));
+            }
+            return children;
+        });
+    }
+
+    private Object execute() throws Exception {
+        return toComparable(new GetRequestTrackingTask("08000_B", conn).execute());
+    }
+
+    /**
+     * The API response holds arrays and streams, they're turned into lists so two responses can be compared
+     */
+    private static Object toComparable(Object value) {
+        if (value instanceof Map) {
+            Map<Object, Object> map = new HashMap<>();
+            ((Map<?, ?>) value).forEach((k, v) -> map.put(k, toComparable(v)));
+            return map;
+        }
+        if (value instanceof Stream) {
+            return ((Stream<?>) value).map(GetRequestTrackingTaskPrefetchTest::toComparable).collect(Collectors.toList());
+        }
+        if (value instanceof Collection) {
+            return ((Collection<?>) value).stream().map(GetRequestTrackingTaskPrefetchTest::toComparable).collect(Collectors.toList());
+        }
+        if (value instanceof Object[]) {
+            return toComparable(Arrays.asList((Object[]) value));
+        }
+        return value;
+    }
+
+    @Test
+    public void execute_prefetchedTreeMatchesPerRecordWalk() throws Exception {
+        stubListChildren();
+        Object prefetched = execute();
+
+        when(dataRecordManager.getChildrenOfType(anyList(), anyString(), any(User.class)))
+                .thenThrow(new RemoteException("list-based calls unavailable"));
+        Object perRecord = execute();
+
+        assertEquals(perRecord, prefetched);
+        Map<?, ?> response = (Map<?, ?>) prefetched;
+        List<?> projectSamples = (List<?>) response.get("samples");
+        assertEquals(2, projectSamples.size());
+        Map<?, ?> sequenced = (Map<?, ?>) projectSamples.get(0);
+        assertEquals("C-000001-T001", ((Map<?, ?>) sequenced.get("sampleInfo")).get("correctedInvestigatorId"));
+        assertEquals(1, ((List<?>) ((Map<?, ?>) sequenced.get("root")).get("children")).size());
+        Map<?, ?> received = (Map<?, ?>) projectSamples.get(1);
+        assertEquals("08000_B_2", ((Map<?, ?>) received.get("root")).get("recordName"));
+        assertTrue(((List<?>) ((Map<?, ?>) received.get("root")).get("children")).isEmpty());
+        assertArrayEquals(new Object[]{"08001_C"}, ((List<?>) ((Map<?, ?>) response.get("metaData")).get("childRequests")).toArray());
+    }
+
+    @Test
+    public void execute_readsTreeWithoutPerRecordChildCalls() throws Exception {
+        stubListChildren();
+
+        new GetRequestTrackingTask("08000_B", conn).execute();
+
+        for (DataRecord sample : samples) {
+            verify(sample, never()).getChildrenOfType(anyString(), any(User.class));
+            verify(sample, never()).getDescendantsOfType(anyString(), any(User.class));
+        }
+    }
+}
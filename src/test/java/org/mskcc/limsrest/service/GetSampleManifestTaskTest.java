@@ -1,6 +1,10 @@
 package org.mskcc.limsrest.service;
 
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import com.velox.sapioutils.client.standalone.VeloxConnection;
 import org.junit.Test;
+import org.mskcc.limsrest.ConnectionLIMS;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -8,9 +12,38 @@ import java.util.Date;
 import java.util.List;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class GetSampleManifestTaskTest {
 
+    @Test
+    public void execute_leavesFailedSamplesOutOfManifests() {
+        ConnectionLIMS conn = mock(ConnectionLIMS.class);
+        ConnectionLIMS.Lease lease = mock(ConnectionLIMS.Lease.class);
+        when(conn.getSize()).thenReturn(2);
+        when(conn.lease()).thenReturn(lease);
+        when(lease.getConnection()).thenReturn(mock(VeloxConnection.class));
+        GetSampleManifestTask task = new GetSampleManifestTask(new String[]{"06302_B_1", "06302_B_2", "06302_B_3"}, conn,
+                mock(FastqIndex.class)) {
+            @Override
+            protected SampleManifest getSampleManifest(String igoId, User user, DataRecordManager dataRecordManager) {
+                if ("06302_B_2".equals(igoId))
+                    throw new IllegalStateException("LIMS query failed");
+                SampleManifest manifest = new SampleManifest();
+                manifest.setIgoId(igoId);
+                return manifest;
+            }
+        };
+
+        GetSampleManifestTask.SampleManifestResult result = task.execute();
+
+        assertEquals(2, result.smList.size());
+        assertEquals("06302_B_1", result.smList.get(0).getIgoId());
+        assertEquals("06302_B_3", result.smList.get(1).getIgoId());
+        assertEquals("LIMS query failed", result.sampleErrors.get("06302_B_2"));
+    }
+
     @Test
     public void filterMultipleDemuxes() {
         List<ArchivedFastq> passedQCList = new ArrayList<>();
@@ -0,0 +1,171 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Before;
+import org.junit.Test;
+import org.mskcc.limsrest.util.RecordSnapshot;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GetWESSampleDataTaskTest {
+    private final DataRecordManager dataRecordManager = mock(DataRecordManager.class);
+    private final User user = mock(User.class);
+    private final Map<DataRecord, Map<String, Object>> fieldsByRecord = new IdentityHashMap<>();
+    // child -> parents and parent -> descendants by data type, answered to the per-record and the bulk calls alike
+    private final Map<DataRecord, Map<String, List<DataRecord>>> parentsByRecord = new IdentityHashMap<>();
+    private final Map<DataRecord, List<DataRecord>> descendantsByRecord = new IdentityHashMap<>();
+    private GetWESSampleDataTask task;
+
+    @Before
+    public void setup() throws Exception {
+        task = new GetWESSampleDataTask("0", null, null, null, null, null);
+        task.dataRecordManager = dataRecordManager;
+        task.user = user;
+        when(dataRecordManager.getFieldsForRecords(anyList(), any(User.class))).thenAnswer(invocation -> {
+            List<Map<String, Object>> fields = new ArrayList<>();
+            for (Object record : (List<?>) invocation.getArguments()[0]) {
+                fields.add(fieldsByRecord.get(record));
+            }
+            return fields;
+        });
+        when(dataRecordManager.getParentsOfType(anyList(), anyString(), any(User.class))).thenAnswer(invocation -> {
+            List<List<DataRecord>> parents = new ArrayList<>();
+            for (Object record : (List<?>) invocation.getArguments()[0]) {
+                parents.add(getParents((DataRecord) record, (String) invocation.getArguments()[1]));
+            }
+            return parents;
+        });
+        when(dataRecordManager.getDescendantsOfType(anyList(), eq("Sample"), any(User.class))).thenAnswer(invocation -> {
+            List<List<DataRecord>> descendants = new ArrayList<>();
+            for (Object record : (List<?>) invocation.getArguments()[0]) {
+                descendants.add(getDescendants((DataRecord) record));
+            }
+            return descendants;
+        });
+    }
+
+    private DataRecord record(long recordId, String field, String value) throws Exception {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        Map<String, Object> fields = new HashMap<>();
+        fields.put(field, value);
+        fieldsByRecord.put(record, fields);
+        when(record.getParentsOfType(anyString(), any(User.class)))
+                .thenAnswer(invocation -> getParents(record, (String) invocation.getArguments()[0]));
+        when(record.getDescendantsOfType(eq("Sample"), any(User.class))).thenAnswer(invocation -> getDescendants(record));
+        return record;
+    }
+
+    private List<DataRecord> getParents(DataRecord record, String dataType) {
+        return new ArrayList<>(parentsByRecord.getOrDefault(record, Collections.emptyMap())
+                .getOrDefault(dataType, Collections.emptyList()));
+    }
+
+    private List<DataRecord> getDescendants(DataRecord record) {
+        return new ArrayList<>(descendantsByRecord.getOrDefault(record, Collections.emptyList()));
+    }
+
+    private void link(DataRecord parent, String parentType, DataRecord child) {
+        parentsByRecord.computeIfAbsent(child, c -> new HashMap<>())
+                .computeIfAbsent(parentType, t -> new ArrayList<>()).add(parent);
+    }
+
+    private List<RecordSnapshot> trackers(int count) throws Exception {
+        List<DataRecord> trackers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            trackers.add(record(1000 + i, "i_StudySampleIdentifierInvesti", String.format("P-%07d-T01-WES", i)));
+        }
+        return RecordSnapshot.of(trackers, dataRecordManager, user);
+    }
+
+    @Test
+    public void getCmoInfoRecords_queriesOnceForExactlyOneChunk() throws Exception {
+        when(dataRecordManager.queryDataRecords(eq("SampleCMOInfoRecords"), anyString(), any(User.class)))
+                .thenReturn(new ArrayList<>());
+
+        task.getCmoInfoRecords(trackers(GetWESSampleDataTask.USER_SAMPLE_ID_CHUNK_SIZE));
+
+        verify(dataRecordManager, times(1)).queryDataRecords(eq("SampleCMOInfoRecords"), anyString(), any(User.class));
+    }
+
+    @Test
+    public void getCmoInfoRecords_queriesIdAfterChunkAlone() throws Exception {
+        int count = GetWESSampleDataTask.USER_SAMPLE_ID_CHUNK_SIZE + 1;
+        String lastId = String.format("P-%07d-T01-WES", count - 1);
+        DataRecord cmoInfo = record(10, "UserSampleID", lastId.toLowerCase());
+        when(dataRecordManager.queryDataRecords(eq("SampleCMOInfoRecords"), anyString(), any(User.class)))
+                .thenReturn(new ArrayList<>());
+        when(dataRecordManager.queryDataRecords("SampleCMOInfoRecords", "UserSampleID IN ('" + lastId + "')", user))
+                .thenReturn(Collections.singletonList(cmoInfo));
+
+        Map<String, List<RecordSnapshot>> cmoInfoByUserSampleId = task.getCmoInfoRecords(trackers(count));
+
+        verify(dataRecordManager, times(2)).queryDataRecords(eq("SampleCMOInfoRecords"), anyString(), any(User.class));
+        // matched ignoring case as the LIMS compares them
+        assertEquals(10L, cmoInfoByUserSampleId.get(lastId).get(0).getRecordId());
+        assertEquals(1, cmoInfoByUserSampleId.size());
+    }
+
+    @Test
+    public void getSamplesSharingCmoInfoRecs_matchesPerRecordWalk() throws Exception {
+        DataRecord request = record(100, "RequestId", "08822_B");
+        // CMO info of a sample received in a request with an aliquot in the request and one outside of it
+        DataRecord received = record(1, "SampleId", "08822_B_1");
+        DataRecord inRequest = record(2, "SampleId", "08822_B_1_1");
+        DataRecord noRequest = record(3, "SampleId", "08822_B_1_1_1");
+        link(request, "Request", received);
+        link(request, "Request", inRequest);
+        descendantsByRecord.put(received, Arrays.asList(inRequest, noRequest));
+        DataRecord cmoInfo = record(10, "UserSampleID", "P-0000001-T01-WES");
+        link(received, "Sample", cmoInfo);
+        // another CMO info of the same sample
+        DataRecord sharingCmoInfo = record(11, "UserSampleID", "P-0000001-T01-WES");
+        link(received, "Sample", sharingCmoInfo);
+        // CMO info without a parent sample
+        DataRecord orphanCmoInfo = record(12, "UserSampleID", "P-0000002-T01-WES");
+        // CMO info of a sample without request and without descendants
+        DataRecord withoutRequest = record(4, "SampleId", "08822_C_1");
+        DataRecord leafCmoInfo = record(13, "UserSampleID", "P-0000003-T01-WES");
+        link(withoutRequest, "Sample", leafCmoInfo);
+        List<DataRecord> cmoInfos = Arrays.asList(cmoInfo, sharingCmoInfo, orphanCmoInfo, leafCmoInfo);
+
+        Map<Long, List<DataRecord>> samplesByCmoInfoRec = task.getSamplesSharingCmoInfoRecs(
+                Collections.singletonList(RecordSnapshot.of(cmoInfos, dataRecordManager, user)));
+
+        assertEquals(Arrays.asList(received, inRequest), samplesByCmoInfoRec.get(10L));
+        assertEquals(Arrays.asList(received, inRequest), samplesByCmoInfoRec.get(11L));
+        assertTrue(samplesByCmoInfoRec.get(12L).isEmpty());
+        assertTrue(samplesByCmoInfoRec.get(13L).isEmpty());
+        for (DataRecord record : cmoInfos) {
+            assertEquals(getSamplesPerRecord(record), samplesByCmoInfoRec.get(record.getRecordId()));
+        }
+        verify(dataRecordManager, times(1)).getDescendantsOfType(anyList(), eq("Sample"), any(User.class));
+    }
+
+    /**
+     * Samples found for a CMO info record by the per-record walk the task used before the bulk join.
+     */
+    private List<DataRecord> getSamplesPerRecord(DataRecord cmoInfoRec) throws Exception {
+        List<DataRecord> parentSamps = cmoInfoRec.getParentsOfType("Sample", user);
+        List<DataRecord> sampleList = new ArrayList<>();
+        if (parentSamps.isEmpty())
+            return sampleList;
+        DataRecord sample = parentSamps.get(0);
+        if (sample.getParentsOfType("Request", user).size() > 0)
+            sampleList.add(sample);
+        for (DataRecord rec : sample.getDescendantsOfType("Sample", user)) {
+            if (rec.getParentsOfType("Request", user).size() > 0)
+                sampleList.add(rec);
+        }
+        return sampleList;
+    }
+}
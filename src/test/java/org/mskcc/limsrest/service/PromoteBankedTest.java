@@ -18,6 +18,7 @@ import org.mskcc.domain.sample.BankedSample;
 import org.mskcc.domain.sample.CmoSampleInfo;
 import org.mskcc.limsrest.ConnectionLIMS;
 import org.mskcc.limsrest.service.cmoinfo.CorrectedCmoSampleIdGenerator;
+import org.mskcc.limsrest.service.cmoinfo.GeneratedCmoIdMetrics;
 
 import java.rmi.RemoteException;
 import java.util.*;
@@ -55,7 +56,7 @@ public class PromoteBankedTest {
                 HEME_PACT_V_4.getValue(),
                 MSK_ACCESS_V1.getValue()
         );
-        promoteBanked = new PromoteBanked();
+        promoteBanked = new PromoteBanked(new GeneratedCmoIdMetrics());
     }
 
     @Test
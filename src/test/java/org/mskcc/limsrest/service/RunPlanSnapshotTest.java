@@ -0,0 +1,45 @@
+package org.mskcc.limsrest.service;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RunPlanSnapshotTest {
+    private final AtomicInteger computations = new AtomicInteger();
+
+    private RunPlanSnapshot snapshot(long ttlMillis) {
+        return new RunPlanSnapshot(() -> {
+            computations.incrementAndGet();
+            return Collections.singletonList(new RunSummary("DEFAULT", "DEFAULT"));
+        }, ttlMillis);
+    }
+
+    @Test
+    public void get_sharesSnapshotUntilInvalidated() {
+        RunPlanSnapshot snapshot = snapshot(TimeUnit.MINUTES.toMillis(1));
+
+        assertEquals(1, snapshot.get().getRunSummaries().size());
+        snapshot.get();
+        assertEquals(1, computations.get());
+
+        snapshot.invalidate();
+        snapshot.get();
+        assertEquals(2, computations.get());
+        assertEquals(1L, snapshot.getMetrics().get("hits"));
+    }
+
+    @Test
+    public void get_recomputesExpiredSnapshot() throws Exception {
+        RunPlanSnapshot snapshot = snapshot(0);
+
+        snapshot.get();
+        Thread.sleep(5);
+        snapshot.get();
+
+        assertEquals(2, computations.get());
+    }
+}
@@ -0,0 +1,69 @@
+package org.mskcc.limsrest.service;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+public class SampleLineageTest {
+    private final DataRecordManager dataRecordManager = mock(DataRecordManager.class);
+    private final User user = mock(User.class);
+
+    private DataRecord record(long recordId, String field, String value) throws Exception {
+        DataRecord record = mock(DataRecord.class);
+        when(record.getRecordId()).thenReturn(recordId);
+        when(record.getStringVal(eq(field), any(User.class))).thenReturn(value);
+        return record;
+    }
+
+    @Test
+    public void resolve_walksSamplesTogetherAndRemembersPassedSamples() throws Exception {
+        DataRecord origin = record(1, "SampleId", "09687_N_1");
+        DataRecord aliquot1 = record(2, "SampleId", "09687_N_1_1");
+        DataRecord aliquot2 = record(3, "SampleId", "09687_N_1_2");
+        DataRecord request = record(100, "RequestId", "09687_N");
+        when(dataRecordManager.getParentsOfType(anyList(), eq("Request"), any(User.class))).thenReturn(
+                Arrays.asList(Collections.emptyList(), Collections.emptyList()),
+                Arrays.asList(Collections.singletonList(request), Collections.singletonList(request)));
+        when(dataRecordManager.getParentsOfType(anyList(), eq("Sample"), any(User.class))).thenReturn(
+                Arrays.asList(Collections.singletonList(origin), Collections.singletonList(origin)));
+
+        SampleLineage sampleLineage = new SampleLineage(10, TimeUnit.HOURS.toMillis(1));
+        Map<Long, SampleLineage.Lineage> lineages = sampleLineage.resolve(Arrays.asList(aliquot1, aliquot2), dataRecordManager, user);
+
+        assertEquals("09687_N_1", lineages.get(2L).getOriginSampleId());
+        assertEquals("09687_N", lineages.get(3L).getRequestId());
+        assertEquals(Long.valueOf(100), lineages.get(3L).getRequestRecordId());
+        verify(dataRecordManager, times(2)).getParentsOfType(anyList(), eq("Request"), any(User.class));
+        verify(dataRecordManager, times(1)).getParentsOfType(anyList(), eq("Sample"), any(User.class));
+
+        assertEquals("09687_N_1", sampleLineage.resolve(origin, dataRecordManager, user).getOriginSampleId());
+        assertEquals(1L, sampleLineage.getMetrics().get("hits"));
+        verify(dataRecordManager, times(2)).getParentsOfType(anyList(), eq("Request"), any(User.class));
+    }
+
+    @Test
+    public void resolve_sampleWithoutRequestHasNoRequest() throws Exception {
+        DataRecord sample = record(1, "SampleId", "09687_N_1");
+        when(dataRecordManager.getParentsOfType(anyList(), eq("Request"), any(User.class)))
+                .thenReturn(Collections.singletonList(Collections.emptyList()));
+        when(dataRecordManager.getParentsOfType(anyList(), eq("Sample"), any(User.class)))
+                .thenReturn(Collections.singletonList(Collections.emptyList()));
+
+        SampleLineage.Lineage lineage = new SampleLineage(10, TimeUnit.HOURS.toMillis(1)).resolve(sample, dataRecordManager, user);
+
+        assertEquals("09687_N_1", lineage.getOriginSampleId());
+        assertNull(lineage.getRequestRecordId());
+    }
+}
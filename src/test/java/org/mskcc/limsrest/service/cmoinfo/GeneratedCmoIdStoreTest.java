@@ -0,0 +1,55 @@
+package org.mskcc.limsrest.service.cmoinfo;
+
+import org.junit.Test;
+import org.mskcc.domain.sample.CorrectedCmoSampleView;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class GeneratedCmoIdStoreTest {
+    private final GeneratedCmoIdMetrics metrics = new GeneratedCmoIdMetrics();
+
+    private CorrectedCmoSampleView sample(String id, String correctedCmoId) {
+        CorrectedCmoSampleView sample = new CorrectedCmoSampleView(id);
+        sample.setCorrectedCmoId(correctedCmoId);
+        return sample;
+    }
+
+    @Test
+    public void get_returnsIdsGeneratedForPatient() {
+        GeneratedCmoIdStore store = new GeneratedCmoIdStore(metrics);
+        store.add("C-1235", sample("4324_1", "C-1235-X001-d"));
+        store.add("C-1235", sample("4324_2", "C-1235-X002-d"));
+
+        assertEquals(2, store.get("C-1235").size());
+        assertTrue(store.get("C-9999").isEmpty());
+        assertEquals(1L, metrics.getMetrics().get("hits"));
+        assertEquals(1L, metrics.getMetrics().get("misses"));
+    }
+
+    @Test
+    public void removePersisted_dropsIdsReturnedByLims() {
+        GeneratedCmoIdStore store = new GeneratedCmoIdStore(metrics);
+        store.add("C-1235", sample("4324_1", "C-1235-X001-d"));
+        store.add("C-1235", sample("4324_2", "C-1235-X002-d"));
+
+        store.removePersisted("C-1235", Collections.singletonList(sample("4324_1", "C-1235-X001-d")));
+
+        assertEquals(1, store.size());
+        assertEquals("4324_2", store.get("C-1235").get(0).getId());
+        assertEquals(1L, metrics.getMetrics().get("size"));
+        assertEquals(1L, metrics.getMetrics().get("persisted"));
+    }
+
+    @Test
+    public void removePersisted_keepsIdWhenLimsHoldsAnotherCmoId() {
+        GeneratedCmoIdStore store = new GeneratedCmoIdStore(metrics);
+        store.add("C-1235", sample("4324_1", "C-1235-X002-d"));
+
+        store.removePersisted("C-1235", Collections.singletonList(sample("4324_1", "C-1235-X001-d")));
+
+        assertEquals(1, store.size());
+        assertEquals(0L, metrics.getMetrics().get("persisted"));
+    }
+}
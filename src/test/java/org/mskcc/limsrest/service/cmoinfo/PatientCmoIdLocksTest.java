@@ -0,0 +1,61 @@
+package org.mskcc.limsrest.service.cmoinfo;
+
+import org.junit.Test;
+import org.mskcc.domain.sample.CorrectedCmoSampleView;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PatientCmoIdLocksTest {
+    @Test
+    public void getLock_isSharedForOnePatient() {
+        assertSame(PatientCmoIdLocks.getLock("C-1235"), PatientCmoIdLocks.getLock("C-1235"));
+    }
+
+    @Test
+    public void lockAll_blocksGenerationsForLockedPatientsUntilClosed() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            try (PatientCmoIdLocks.Held held = PatientCmoIdLocks.lockAll(Arrays.asList("C-1235", "C-9876", "C-1235"))) {
+                assertFalse(executor.submit(() -> PatientCmoIdLocks.getLock("C-9876").tryLock()).get());
+                // held by this thread, a generation while saving doesn't wait for itself
+                assertTrue(PatientCmoIdLocks.getLock("C-1235").tryLock());
+                PatientCmoIdLocks.getLock("C-1235").unlock();
+            }
+            assertTrue(executor.submit(() -> {
+                boolean locked = PatientCmoIdLocks.getLock("C-9876").tryLock();
+                if (locked)
+                    PatientCmoIdLocks.getLock("C-9876").unlock();
+                return locked;
+            }).get());
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void getHeld_readsPatientSamplesOncePerTask() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        PatientCmoIdLocks.Loader loader = () -> {
+            reads.incrementAndGet();
+            return Collections.singletonList(new CorrectedCmoSampleView("4324_1"));
+        };
+
+        try (PatientCmoIdLocks.Held held = PatientCmoIdLocks.lockAll(Collections.singletonList("C-1235"))) {
+            assertSame(held, PatientCmoIdLocks.getHeld("C-1235"));
+            assertNull(PatientCmoIdLocks.getHeld("C-9876"));
+
+            held.getSamples("C-1235", loader).add(new CorrectedCmoSampleView("4324_2"));
+            assertEquals(1, held.getSamples("C-1235", loader).size());
+            assertEquals(1, reads.get());
+        }
+        assertNull(PatientCmoIdLocks.getHeld("C-1235"));
+    }
+}
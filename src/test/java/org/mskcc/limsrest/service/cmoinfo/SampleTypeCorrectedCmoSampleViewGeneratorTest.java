@@ -49,7 +49,7 @@ public class SampleTypeCorrectedCmoSampleViewGeneratorTest {
         CmoSampleIdRetriever cellLineRetriever = new FormattedCmoSampleIdRetriever(cellLineResolver, cellLineFormatter);
         retrieverFactory = new CmoSampleIdRetrieverFactory(patientRetriever, cellLineRetriever);
 
-        sampleTypeCorrectedCmoSampleIdGenerator = new SampleTypeCorrectedCmoSampleIdGenerator();
+        sampleTypeCorrectedCmoSampleIdGenerator = new SampleTypeCorrectedCmoSampleIdGenerator(new GeneratedCmoIdMetrics());
     }
 
     @Test
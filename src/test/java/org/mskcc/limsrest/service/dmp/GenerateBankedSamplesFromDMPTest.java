@@ -10,6 +10,8 @@ import org.junit.Test;
 import org.mskcc.domain.sample.BankedSample;
 import org.mskcc.limsrest.service.promote.LimsDataRetriever;
 import org.mskcc.limsrest.service.promote.BankedSampleSaver;
+import org.mskcc.limsrest.service.promote.RecordSaver;
+import org.mskcc.limsrest.util.Messages;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -20,6 +22,8 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class GenerateBankedSamplesFromDMPTest {
@@ -32,8 +36,7 @@ public class GenerateBankedSamplesFromDMPTest {
     @Before
     public void setUp() throws Exception {
         recordSaverSpy = new RecordSaverSpy();
-        generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP();
-        generateBankedSamplesFromDMP.dmpSamplesRetriever = dmpSamplesRetriever;
+        generateBankedSamplesFromDMP = new GenerateBankedSamplesFromDMP(tumorTypeRetriever, dmpSamplesRetriever);
         generateBankedSamplesFromDMP.limsDataRetriever = limsDataRetriever;
         generateBankedSamplesFromDMP.recordSaver = recordSaverSpy;
     }
@@ -87,8 +90,9 @@ public class GenerateBankedSamplesFromDMPTest {
         List<String> trackingIds = Arrays.asList(trackingId1);
         when(dmpSamplesRetriever.retrieveTrackingIds(date)).thenReturn(trackingIds);
 
-        when(limsDataRetriever.getBankedSamples(any(), any(), any())).thenReturn(Arrays.asList(new BankedSample
-                ("someId")));
+        BankedSample processedBankedSample = new BankedSample("someId");
+        processedBankedSample.setDMPTrackingId(trackingId1);
+        when(limsDataRetriever.getBankedSamples(any(), any(), any())).thenReturn(Arrays.asList(processedBankedSample));
 
         List<DMPSample> tracking1DMPSamples = Arrays.asList(getDmpSample("id11", "i1"), getDmpSample("id12", "i2"),
                 getDmpSample("id13", "i3"));
@@ -133,8 +137,10 @@ public class GenerateBankedSamplesFromDMPTest {
         LocalDate date = LocalDate.of(2017, 11, 20);
         List<String> trackingIds = Arrays.asList(trackingId1, trackingId2);
         when(dmpSamplesRetriever.retrieveTrackingIds(date)).thenReturn(trackingIds);
-        when(limsDataRetriever.getBankedSamples(eq(String.format("%s = '%s'", BankedSample.DMP_TRACKING_ID, trackingId1)), any(), any())).thenReturn(Collections.emptyList());
-        when(limsDataRetriever.getBankedSamples(eq(String.format("%s = '%s'", BankedSample.DMP_TRACKING_ID, trackingId2)), any(), any())).thenReturn(Arrays.asList(new BankedSample("id")));
+        BankedSample processedBankedSample = new BankedSample("id");
+        processedBankedSample.setDMPTrackingId(trackingId2);
+        when(limsDataRetriever.getBankedSamples(eq(String.format("%s in ('%s','%s')", BankedSample.DMP_TRACKING_ID,
+                trackingId1, trackingId2)), any(), any())).thenReturn(Arrays.asList(processedBankedSample));
 
         List<DMPSample> tracking1DMPSamples = Arrays.asList(
                 getDmpSample("id11", "i11"),
@@ -157,6 +163,58 @@ public class GenerateBankedSamplesFromDMPTest {
         }
     }
 
+    @Test
+    public void whenCommitChunkSizeSet_shouldSaveInChunksAndReportFailedSamples() throws Exception {
+        //given
+        String trackingId1 = "1";
+        LocalDate date = LocalDate.of(2017, 11, 20);
+        when(dmpSamplesRetriever.retrieveTrackingIds(date)).thenReturn(Arrays.asList(trackingId1));
+        when(limsDataRetriever.getBankedSamples(any(), any(), any())).thenReturn(Collections.emptyList());
+        when(dmpSamplesRetriever.getDMPSamples(trackingId1)).thenReturn(Arrays.asList(getDmpSample("id11", "i11"),
+                getDmpSample("id12", "i12"), getDmpSample("id13", "i13")));
+
+        RecordSaver recordSaver = mock(RecordSaver.class);
+        when(recordSaver.saveAll(any(), any(), any())).thenReturn(Collections.emptyList())
+                .thenReturn(Arrays.asList("i13"));
+        generateBankedSamplesFromDMP.recordSaver = recordSaver;
+        generateBankedSamplesFromDMP.setCommitChunkSize(2);
+        generateBankedSamplesFromDMP.setDate(date);
+
+        //when
+        String result = generateBankedSamplesFromDMP.execute(mock(VeloxConnection.class));
+
+        //then
+        verify(recordSaver, times(2)).saveAll(any(), any(), any());
+        assertTrue(result.startsWith(Messages.FAILURE_IN));
+        assertTrue(result.contains("i13"));
+    }
+
+    @Test
+    public void whenRetrievingOneTrackingIdFails_shouldSaveOtherTrackingIdsAndReportFailedOne() throws Exception {
+        //given
+        String trackingId1 = "1";
+        String trackingId2 = "2";
+        String trackingId3 = "3";
+        LocalDate date = LocalDate.of(2017, 11, 20);
+        when(dmpSamplesRetriever.retrieveTrackingIds(date)).thenReturn(Arrays.asList(trackingId1, trackingId2,
+                trackingId3));
+        when(limsDataRetriever.getBankedSamples(any(), any(), any())).thenReturn(Collections.emptyList());
+        when(dmpSamplesRetriever.getDMPSamples(trackingId1)).thenReturn(Arrays.asList(getDmpSample("id11", "i11")));
+        when(dmpSamplesRetriever.getDMPSamples(trackingId2)).thenThrow(new IllegalStateException("DMP down"));
+        when(dmpSamplesRetriever.getDMPSamples(trackingId3)).thenReturn(Arrays.asList(getDmpSample("id31", "i31"),
+                getDmpSample("id32", "i32")));
+        generateBankedSamplesFromDMP.setFetchThreads(2);
+        generateBankedSamplesFromDMP.setDate(date);
+
+        //when
+        String result = generateBankedSamplesFromDMP.execute(mock(VeloxConnection.class));
+
+        //then
+        assertThat(recordSaverSpy.createdBankedSamples.values().size(), is(3));
+        assertTrue(result.startsWith(Messages.FAILURE_IN));
+        assertTrue(result.contains("tracking ids: [2]"));
+    }
+
     private DMPSample getDmpSample(String studySampleId, String investigatorSampleId) {
         DMPSample dmpSample = new DMPSample(studySampleId);
         dmpSample.setInvestigatorSampleId(investigatorSampleId);
@@ -216,5 +274,13 @@ public class GenerateBankedSamplesFromDMPTest {
         public void save(BankedSample bankedSample, DataRecordManager dataRecordManager, User user) {
             createdBankedSamples.put(bankedSample.getTransactionId(), bankedSample);
         }
+
+        @Override
+        public List<String> saveAll(List<BankedSample> bankedSamples, DataRecordManager dataRecordManager, User user) {
+            for (BankedSample bankedSample : bankedSamples) {
+                save(bankedSample, dataRecordManager, user);
+            }
+            return Collections.emptyList();
+        }
     }
 }
\ No newline at end of file
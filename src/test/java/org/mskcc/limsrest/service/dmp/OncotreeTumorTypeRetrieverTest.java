@@ -1,6 +1,8 @@
 package org.mskcc.limsrest.service.dmp;
 
 import org.junit.Test;
+import org.mskcc.limsrest.HttpClientPool;
+import org.mskcc.limsrest.LatencyMetrics;
 
 import java.util.Set;
 
@@ -10,7 +12,7 @@ public class OncotreeTumorTypeRetrieverTest {
 
     @Test
     public void retrieve() {
-        OncotreeTumorTypeRetriever r = new OncotreeTumorTypeRetriever();
+        OncotreeTumorTypeRetriever r = new OncotreeTumorTypeRetriever(new HttpClientPool(new LatencyMetrics()));
         Set<TumorType> tumorTypes = r.retrieve();
         assertTrue(tumorTypes.contains(new TumorType("GB", "Brain_CNS", "Glioblastoma")));
     }
@@ -0,0 +1,60 @@
+package org.mskcc.limsrest.util;
+
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ConsentStatusCacheTest {
+    private static final String PART_A = "{\"cases\":{\"P-0000001\":true,\"P-0000002\":false}}";
+
+    @Test
+    public void getConsentedPatients_keepsConsentedPatientsFromOneDownload() {
+        List<String> urls = new ArrayList<>();
+        ConsentStatusCache cache = new ConsentStatusCache((url, headers) -> {
+            urls.add(url);
+            return ResponseEntity.ok(PART_A);
+        }, 60_000);
+
+        Set<String> consented = cache.getConsentedPatients("PartA");
+
+        assertTrue(consented.contains("P-0000001"));
+        assertFalse(consented.contains("P-0000002"));
+        assertSame(consented, cache.getConsentedPatients("parta"));
+        assertEquals(1, urls.size());
+        assertEquals(ConsentStatusCache.PART_A_URL, urls.get(0));
+    }
+
+    @Test
+    public void refresh_sendsValidatorsAndKeepsListWhenNotModified() {
+        List<HttpHeaders> sent = new ArrayList<>();
+        ConsentStatusCache cache = new ConsentStatusCache((url, headers) -> {
+            sent.add(headers);
+            if (sent.size() > 1)
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).build();
+            return ResponseEntity.ok().eTag("\"v1\"").body(PART_A);
+        }, 60_000);
+        Set<String> consented = cache.getConsentedPatients("parta");
+
+        assertTrue(cache.refresh(ConsentStatusCache.PART_A_URL));
+
+        assertEquals("\"v1\"", sent.get(1).getIfNoneMatch().get(0));
+        assertSame(consented, cache.getConsentedPatients("parta"));
+        assertEquals(1L, cache.getMetrics().get("notModified"));
+    }
+
+    @Test
+    public void getConsentedPatients_returnsNullWhenNotLoaded() {
+        ConsentStatusCache cache = new ConsentStatusCache((url, headers) -> {
+            throw new IllegalStateException("draco down");
+        }, 60_000);
+
+        assertNull(cache.getConsentedPatients("partc"));
+    }
+}
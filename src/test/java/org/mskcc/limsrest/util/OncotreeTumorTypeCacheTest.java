@@ -0,0 +1,117 @@
+package org.mskcc.limsrest.util;
+
+import org.json.JSONArray;
+import org.junit.Test;
+import org.mskcc.limsrest.HttpClientPool;
+import org.mskcc.limsrest.LatencyMetrics;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OncotreeTumorTypeCacheTest {
+    private static final String TUMOR_TYPES = "[" +
+            "{\"code\":\"BREAST\",\"name\":\"Breast\",\"mainType\":\"Breast Cancer, NOS\"}," +
+            "{\"code\":\"IDC\",\"name\":\"Breast Invasive Ductal Carcinoma\",\"mainType\":\"Breast Cancer\"}," +
+            "{\"code\":\"THAP\",\"name\":\"Anaplastic Thyroid Cancer\",\"mainType\":\"Thyroid Cancer\"}]";
+
+    @Test
+    public void getMainType_resolvesNamesAndCodesFromOneLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(() -> {
+            loads.incrementAndGet();
+            return new JSONArray(TUMOR_TYPES);
+        }, url -> new JSONArray(), TimeUnit.HOURS.toMillis(1));
+
+        assertEquals("Breast Cancer, NOS", cache.getMainType("Breast"));
+        assertEquals("Breast Cancer", cache.getMainType("invasive ductal"));
+        assertEquals("Thyroid Cancer", cache.getMainType("THAP"));
+        assertEquals("", cache.getMainType("Unknown"));
+        assertEquals("", cache.getMainType(null));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void getMainType_returnsEmptyWithoutName() {
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(() -> new JSONArray(TUMOR_TYPES),
+                url -> new JSONArray(TUMOR_TYPES), TimeUnit.HOURS.toMillis(1));
+
+        assertEquals("", cache.getMainType("/"));
+        assertEquals("", cache.getMainType(" /IDC"));
+
+        OncotreeTumorTypeCache notLoaded = new OncotreeTumorTypeCache(() -> {
+            throw new IllegalStateException("oncotree down");
+        }, url -> new JSONArray(TUMOR_TYPES), TimeUnit.HOURS.toMillis(1));
+        assertEquals("", notLoaded.resolveMainType("/"));
+        assertEquals("", notLoaded.resolveMainType(null));
+    }
+
+    @Test
+    public void getMainType_returnsNullWhenNotLoaded() {
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(() -> {
+            throw new IllegalStateException("oncotree down");
+        }, url -> new JSONArray(), TimeUnit.HOURS.toMillis(1));
+
+        assertNull(cache.getMainType("Breast"));
+    }
+
+    @Test
+    public void getMainType_waitsBeforeLoadingAgainAfterFailure() {
+        AtomicInteger loads = new AtomicInteger();
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(() -> {
+            loads.incrementAndGet();
+            throw new IllegalStateException("oncotree down");
+        }, url -> new JSONArray(), TimeUnit.HOURS.toMillis(1));
+
+        assertNull(cache.getMainType("Breast"));
+        assertNull(cache.getMainType("THAP"));
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void getMainType_doesNotWaitForLoadOfOtherLookup() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(() -> {
+            loading.countDown();
+            release.await();
+            return new JSONArray(TUMOR_TYPES);
+        }, url -> new JSONArray(), TimeUnit.HOURS.toMillis(1));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = executor.submit(() -> cache.getMainType("Breast"));
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+
+            assertNull(cache.getMainType("THAP"));
+
+            release.countDown();
+            assertEquals("Breast Cancer, NOS", first.get(10, TimeUnit.SECONDS));
+            assertEquals("Thyroid Cancer", cache.getMainType("THAP"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void resolveMainType_searchesWhenNotLoaded() {
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(() -> {
+            throw new IllegalStateException("oncotree down");
+        }, url -> url.contains("/search/code/") ? new JSONArray(TUMOR_TYPES) : new JSONArray(), TimeUnit.HOURS.toMillis(1));
+
+        assertEquals("Thyroid Cancer", cache.resolveMainType("THAP"));
+        assertEquals("", cache.resolveMainType("Unknown"));
+    }
+
+    @Test
+    public void resolveMainType_usesOncotree() {
+        OncotreeTumorTypeCache cache = new OncotreeTumorTypeCache(new HttpClientPool(new LatencyMetrics()), TimeUnit.HOURS.toMillis(1));
+
+        assertEquals("Thyroid Cancer", cache.resolveMainType("THAP"));
+        assertEquals("Breast Cancer, NOS", cache.resolveMainType("Breast"));
+    }
+}
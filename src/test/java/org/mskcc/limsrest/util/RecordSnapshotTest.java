@@ -0,0 +1,49 @@
+package org.mskcc.limsrest.util;
+
+import com.velox.api.datarecord.DataRecord;
+import com.velox.api.datarecord.DataRecordManager;
+import com.velox.api.user.User;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class RecordSnapshotTest {
+    private final DataRecordManager dataRecordManager = mock(DataRecordManager.class);
+    private final User user = mock(User.class);
+
+    @Test
+    public void of_readsTheFieldsOfAllRecordsInOneCall() throws Exception {
+        DataRecord sample = mock(DataRecord.class);
+        DataRecord request = mock(DataRecord.class);
+        Map<String, Object> sampleFields = new HashMap<>();
+        sampleFields.put("SampleId", "09687_N_1");
+        sampleFields.put("Volume", 12.5);
+        Map<String, Object> requestFields = new HashMap<>();
+        requestFields.put("RequestId", "09687_N");
+        requestFields.put("IsCmoRequest", true);
+        requestFields.put("RecentDeliveryDate", 1571400000000L);
+        when(dataRecordManager.getFieldsForRecords(anyList(), any(User.class)))
+                .thenReturn(Arrays.asList(sampleFields, requestFields));
+
+        List<RecordSnapshot> snapshots = RecordSnapshot.of(Arrays.asList(sample, request), dataRecordManager, user);
+
+        assertSame(sample, snapshots.get(0).getRecord());
+        assertEquals("09687_N_1", snapshots.get(0).getStringVal("SampleId"));
+        assertEquals(Double.valueOf(12.5), snapshots.get(0).getDoubleVal("Volume"));
+        assertNull(snapshots.get(0).getDoubleVal("Concentration"));
+        assertEquals("", snapshots.get(0).getStringValue("ConcentrationUnits"));
+        assertEquals(Boolean.TRUE, snapshots.get(1).getBooleanVal("IsCmoRequest"));
+        assertEquals("10-18-2019", snapshots.get(1).getValue("RecentDeliveryDate", "Date"));
+        assertEquals("", snapshots.get(1).getValue("LaboratoryHead", "String"));
+        verify(dataRecordManager, times(1)).getFieldsForRecords(anyList(), any(User.class));
+        verifyZeroInteractions(sample, request);
+    }
+}